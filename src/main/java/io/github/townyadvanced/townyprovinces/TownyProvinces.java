@@ -8,6 +8,7 @@ import com.palmergames.bukkit.util.Colors;
 import com.palmergames.bukkit.util.Version;
 import io.github.townyadvanced.townyprovinces.commands.TownyProvincesAdminCommand;
 import io.github.townyadvanced.townyprovinces.data.DataHandlerUtil;
+import io.github.townyadvanced.townyprovinces.data.ProvinceSaveQueue;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.jobs.map_display.*;
 import io.github.townyadvanced.townyprovinces.listeners.TownyListener;
@@ -54,10 +55,12 @@ public class TownyProvinces extends JavaPlugin {
 				|| !loadLocalization(false)
 				|| !validateWorld()
 				|| !TownyProvincesSettings.isTownyProvincesEnabled() 
-				|| !TownyProvincesDataHolder.initialize()
 				|| !FileUtil.setupPluginDataFoldersIfRequired()
 				|| !FileUtil.createRegionDefinitionsFolderAndSampleFiles()
+				|| !TownyProvincesSettings.loadRegionsDefinitions()
+				|| !TownyProvincesDataHolder.initialize()
 				|| !DataHandlerUtil.loadAllData()
+				|| !ProvinceSaveQueue.start()
 				|| !registerListeners()
 				|| !registerAdminCommands()
 			) {
@@ -86,13 +89,23 @@ public class TownyProvinces extends JavaPlugin {
 		Bukkit.getConsoleSender().sendMessage(Colors.translateColorCodes(art));
 	}
 	
+	@Override
+	public void onDisable() {
+		//Write any queued province saves
+		ProvinceSaveQueue.stop();
+	}
+	
 	public void reloadConfigsAndData() {
+		//Write any queued province saves before the data is reloaded
+		ProvinceSaveQueue.stop();
 		if(!loadConfig()
 			|| !loadLocalization(false)
-			|| !TownyProvincesDataHolder.initialize()
 			|| !FileUtil.setupPluginDataFoldersIfRequired()
 			|| !FileUtil.createRegionDefinitionsFolderAndSampleFiles()
+			|| !TownyProvincesSettings.loadRegionsDefinitions()
+			|| !TownyProvincesDataHolder.initialize()
 			|| !DataHandlerUtil.loadAllData()
+			|| !ProvinceSaveQueue.start()
 		) {
 			severe("TownyProvinces Did Not Reload Successfully.");
 			onDisable();
@@ -257,10 +270,17 @@ public class TownyProvinces extends JavaPlugin {
 	}
 
 	public static void info(String message) {
-		plugin.getLogger().info(message);
+		getPluginLogger().info(message);
 	}
 	
 	public static void severe(String message) {
-		plugin.getLogger().severe(message);
+		getPluginLogger().severe(message);
+	}
+
+	/**
+	 * @return the plugin logger, or a plain logger if the plugin is not enabled, e.g. in unit tests
+	 */
+	private static java.util.logging.Logger getPluginLogger() {
+		return plugin != null ? plugin.getLogger() : java.util.logging.Logger.getLogger("TownyProvinces");
 	}
 }
@@ -9,6 +9,8 @@ import com.palmergames.bukkit.towny.utils.NameUtil;
 import com.palmergames.bukkit.util.ChatTools;
 import com.palmergames.util.StringMgmt;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.DataHandlerUtil;
+import io.github.townyadvanced.townyprovinces.data.ProvinceGenerations;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.jobs.land_validation.LandValidationJobStatus;
 import io.github.townyadvanced.townyprovinces.jobs.land_validation.LandValidationTaskController;
@@ -28,6 +30,9 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 import org.bukkit.entity.Player;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,11 +41,12 @@ import java.util.Set;
 
 public class TownyProvincesAdminCommand implements TabExecutor {
 
-	private static final List<String> adminTabCompletes = Arrays.asList("province","region","landvalidationjob", "reload");
+	private static final List<String> adminTabCompletes = Arrays.asList("province","region","landvalidationjob", "generation", "reload");
 	private static final List<String> adminTabCompletesProvince = Arrays.asList("settype");
 	private static final List<String> adminTabCompletesProvinceSetType = Arrays.asList("civilized","sea","wasteland");
 	private static final List<String> adminTabCompletesRegion = Arrays.asList("regenerate", "newtowncostperchunk", "upkeeptowncostperchunk");
 	private static final List<String> adminTabCompletesSeaProvincesJob = Arrays.asList("status", "start", "stop", "restart", "pause");
+	private static final List<String> adminTabCompletesGeneration = Arrays.asList("list", "rollback");
 
 	public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
 
@@ -74,6 +80,17 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 				if (args.length == 2)
 					return NameUtil.filterByStart(adminTabCompletesSeaProvincesJob, args[1]);
 				break;
+			case "generation":
+				if (args.length == 2)
+					return NameUtil.filterByStart(adminTabCompletesGeneration, args[1]);
+				if (args.length == 3 && args[1].equalsIgnoreCase("rollback")) {
+					List<String> generationNumbers = new ArrayList<>();
+					for (int generationNumber : ProvinceGenerations.getGenerationNumbers()) {
+						generationNumbers.add(Integer.toString(generationNumber));
+					}
+					return NameUtil.filterByStart(generationNumbers, args[2]);
+				}
+				break;
 			default:
 				if (args.length == 1)
 					return NameUtil.filterByStart(adminTabCompletes, args[0]);
@@ -105,6 +122,9 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 				case "landvalidationjob":
 					parseLandValidationJobCommand(sender, StringMgmt.remFirstArg(args));
 					break;
+				case "generation":
+					parseGenerationCommand(sender, StringMgmt.remFirstArg(args));
+					break;
 				case "reload":
 					parseReloadCommand(sender, StringMgmt.remFirstArg(args));
 					break;
@@ -132,6 +152,8 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 		TownyMessaging.sendMessage(sender, ChatTools.formatCommand("Eg", "/tpra", "region [newtowncostperchunk] [<Region Name>] [amount]", ""));
 		TownyMessaging.sendMessage(sender, ChatTools.formatCommand("Eg", "/tpra", "region [upkeeptowncostperchunk] [<Region Name>] [amount]", ""));
 		TownyMessaging.sendMessage(sender, ChatTools.formatCommand("Eg", "/tpra", "landvalidationjob [status|start|stop|restart|pause]", ""));
+		TownyMessaging.sendMessage(sender, ChatTools.formatCommand("Eg", "/tpra", "generation list", ""));
+		TownyMessaging.sendMessage(sender, ChatTools.formatCommand("Eg", "/tpra", "generation rollback [<number>]", ""));
 		TownyMessaging.sendMessage(sender, ChatTools.formatCommand("Eg", "/tpra", "reload", ""));
 	}
 
@@ -214,6 +236,49 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 		}
 	}
 	
+	private void parseGenerationCommand(CommandSender sender, String[] args) {
+		if (args.length < 1) {
+			showHelp(sender);
+			return;
+		}
+		if (args[0].equalsIgnoreCase("list")) {
+			parseGenerationListCommand(sender);
+		} else if (args[0].equalsIgnoreCase("rollback") && args.length == 2) {
+			parseGenerationRollbackCommand(sender, args);
+		} else {
+			showHelp(sender);
+		}
+	}
+
+	private void parseGenerationListCommand(CommandSender sender) {
+		List<ProvinceGenerations.GenerationInfo> generations = ProvinceGenerations.getGenerations();
+		if (generations.isEmpty()) {
+			Messaging.sendMsg(sender, Translatable.of("msg_no_province_generations"));
+			return;
+		}
+		Messaging.sendMsg(sender, Translatable.of("msg_province_generations_list_header"));
+		DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+		for (ProvinceGenerations.GenerationInfo generation : generations) {
+			String created = dateFormatter.format(Instant.ofEpochMilli(generation.getCreatedMillis()));
+			Messaging.sendMsg(sender, Translatable.of("msg_province_generation_list_entry", generation.getNumber(), created, generation.getDescription(), generation.getNumProvinces()));
+		}
+	}
+
+	private void parseGenerationRollbackCommand(CommandSender sender, String[] args) {
+		int generationNumber;
+		try {
+			generationNumber = Integer.parseInt(args[1]);
+		} catch (NumberFormatException nfe) {
+			Messaging.sendMsg(sender, Translatable.of("msg_err_unknown_generation"));
+			return;
+		}
+		if (!ProvinceGenerations.hasGeneration(generationNumber)) {
+			Messaging.sendMsg(sender, Translatable.of("msg_err_unknown_generation"));
+			return;
+		}
+		RegenerateRegionTaskController.startRollbackTask(sender, generationNumber);
+	}
+
 	private void parseProvinceSetTypeCommand(CommandSender sender, String[] args) {
 		try {
 			ProvinceType provinceType;
@@ -269,6 +334,7 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 		//Set province type
 		province.setType(provinceType);
 		province.saveData();
+		TownyProvincesDataHolder.getInstance().publishMetadataChanges();
 		MapDisplayTaskController.requestHomeBlocksRefresh();
 		Messaging.sendMsg(sender, Translatable.of("msg_province_type_successfully_set", typeTranslated));
 	}
@@ -296,10 +362,11 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 		for(Province province: provinces) {
 			if(province.getType() != provinceType) {
 				province.setType(provinceType);
-				province.saveData();
 			}
 		}
 		
+		TownyProvincesDataHolder.getInstance().publishMetadataChanges();
+		DataHandlerUtil.saveAllData();
 		MapDisplayTaskController.requestHomeBlocksRefresh();
 		String typeTranslated = Translation.of("word_" + provinceType.name().toLowerCase());
 		Messaging.sendMsg(sender, Translatable.of("msg_province_types_in_area_successfully_set", typeTranslated));
@@ -342,9 +409,8 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 							if (givenRegionName.equalsIgnoreCase("all")) {
 								//Set cost for all provinces, regardless of region
 								for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
-									townCost = townCostPerChunk * province.getListOfCoordsInProvince().size();
+									townCost = townCostPerChunk * province.getCoordsInProvince().size();
 									province.setNewTownCost(townCost);
-									province.saveData();
 								}
 								MoneyUtil.recalculateProvincePrices();
 								MapDisplayTaskController.requestHomeBlocksRefresh();
@@ -355,9 +421,8 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 								Region region = TownyProvincesSettings.getRegion(caseCorrectRegionName);
 								for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
 									if (TownyProvincesSettings.isProvinceInRegion(province, region)) {
-										townCost = townCostPerChunk * province.getListOfCoordsInProvince().size();
+										townCost = townCostPerChunk * province.getCoordsInProvince().size();
 										province.setNewTownCost(townCost);
-										province.saveData();
 									}
 								}
 								MoneyUtil.recalculateProvincePrices();
@@ -394,9 +459,8 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 							if (givenRegionName.equalsIgnoreCase("all")) {
 								//Set cost for all provinces, regardless of region
 								for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
-									townCost = townCostPerChunk * province.getListOfCoordsInProvince().size();
+									townCost = townCostPerChunk * province.getCoordsInProvince().size();
 									province.setUpkeepTownCost(townCost);
-									province.saveData();
 								}
 								//Recalculated all prices
 								MoneyUtil.recalculateProvincePrices();
@@ -408,9 +472,8 @@ public class TownyProvincesAdminCommand implements TabExecutor {
 								Region region = TownyProvincesSettings.getRegion(caseCorrectRegionName);
 								for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
 									if (TownyProvincesSettings.isProvinceInRegion(province, region)) {
-										townCost = townCostPerChunk * province.getListOfCoordsInProvince().size();
+										townCost = townCostPerChunk * province.getCoordsInProvince().size();
 										province.setUpkeepTownCost(townCost);
-										province.saveData();
 									}
 								}
 								MoneyUtil.recalculateProvincePrices();
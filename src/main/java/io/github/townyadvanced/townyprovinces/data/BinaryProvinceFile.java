@@ -0,0 +1,668 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.ProvinceType;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import io.github.townyadvanced.townyprovinces.util.FileUtil;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Binary province storage
+ *
+ * All provinces are stored in a single file:
+ *
+ * Header:
+ * - int: magic number
+ * - int: format version
+ * - long: geometry id (version 2+). Changes whenever the province coords change. Used to match the grid file
+ * - long: file id (version 4+). Changes whenever the file is rewritten in full. Used to match the journal
+ * - int: number of provinces
+ *
+ * Version 3+: A table of fixed-size province records, then the coords sections, in any order:
+ * - Record:
+ *   - int, int: home block x,z
+ *   - byte: type code
+ *   - boolean: is land validation requested
+ *   - double x 6: new town cost, upkeep town cost, estimated proportions of good land, water, hot land, cold land
+ *   - long, int: offset and length in bytes of the coords section
+ *
+ * Versions 1-2: For each province, the same fields, but the type is a UTF string,
+ * and the coords section follows the province (prefixed by its length in version 2).
+ *
+ * Coords section:
+ * - varint: number of coord runs
+ * - Coord runs, in sorted order. A run is a column of consecutive z values with the same x:
+ *   - zigzag varint: x, minus the x of the previous run
+ *   - zigzag varint: first z, minus the first z of the previous run
+ *   - varint: length of the run
+ *
+ * Provinces are mostly solid shapes, so most columns are a single run,
+ * and a province of thousands of chunks typically takes a few hundred bytes.
+ *
+ * Because the records are fixed-size, a metadata change is saved by rewriting one record in place.
+ * A coords change is saved by appending a new coords section, and pointing the record at it.
+ * The file is compacted by a full rewrite when too much of it is replaced sections.
+ *
+ * Full rewrites go to a temporary file, which then replaces the old file in one atomic rename.
+ * In-place updates go through the journal (see ProvinceJournal).
+ * So a crash never leaves a partly written province file.
+ */
+public class BinaryProvinceFile {
+
+	public static final String FILE_NAME = "provinces.dat";
+	private static final int MAGIC_NUMBER = 0x54505256;  //"TPRV"
+	private static final int FORMAT_VERSION = 4;
+	public static final long NO_GEOMETRY_ID = 0;
+	public static final long NO_FILE_ID = 0;
+	private static final int HEADER_SIZE_IN_BYTES = 4 + 4 + 8 + 8 + 4;
+	private static final int VERSION_3_HEADER_SIZE_IN_BYTES = 4 + 4 + 8 + 4;
+	private static final int GEOMETRY_ID_POSITION = 4 + 4;
+	private static final int RECORD_SIZE_IN_BYTES = 4 + 4 + 1 + 1 + (8 * 6) + 8 + 4;
+	//Type codes are stored in the file. Add new types at the end
+	private static final ProvinceType[] TYPES_BY_CODE = new ProvinceType[]{ProvinceType.CIVILIZED, ProvinceType.SEA, ProvinceType.WASTELAND};
+
+	/**
+	 * The result of reading a province file
+	 */
+	static class ReadResult {
+		final List<Province> provinces = new ArrayList<>();  //In file order
+		long geometryId = NO_GEOMETRY_ID;
+		int numCoordsOutsideMap = 0;
+		boolean coordsLoaded = true;
+		boolean gridFileUpToDate = false;  //Set by the loader if the coords were loaded from the grid file
+		@Nullable Layout layout = null;  //Null if the file is an older version, which cannot be updated in place
+	}
+
+	/**
+	 * Where each province is in a version 3 file, and what was last saved for it
+	 */
+	static class Layout {
+		final long fileId;
+		private long geometryId;
+		final List<Province> provinces;  //In file order
+		private final Map<Province, Integer> fileIndexes = new IdentityHashMap<>();
+		private final long[] coordsOffsets;
+		private final int[] coordsLengths;
+		private final ProvinceCoords[] savedCoords;  //The frozen coords which were saved. Compared by identity
+		private ProvinceMapSnapshot snapshotWithSavedCoords;  //If set, holds the saved coords not yet copied into savedCoords
+		private long fileLength;
+		private long numReplacedBytes;  //Bytes taken up by coords sections which have been replaced
+
+		private Layout(long fileId, long geometryId, List<Province> provinces) {
+			this.fileId = fileId;
+			this.geometryId = geometryId;
+			this.provinces = provinces;
+			for (int i = 0; i < provinces.size(); i++) {
+				fileIndexes.put(provinces.get(i), i);
+			}
+			this.coordsOffsets = new long[provinces.size()];
+			this.coordsLengths = new int[provinces.size()];
+			this.savedCoords = new ProvinceCoords[provinces.size()];
+			this.fileLength = HEADER_SIZE_IN_BYTES + ((long) RECORD_SIZE_IN_BYTES * provinces.size());
+			this.numReplacedBytes = 0;
+		}
+
+		/**
+		 * @return true if the file contains exactly the given provinces (the same objects)
+		 */
+		boolean hasSameProvinces(Set<Province> provincesToCheck) {
+			if (provincesToCheck.size() != provinces.size())
+				return false;
+			for (Province province : provincesToCheck) {
+				if (!fileIndexes.containsKey(province))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Record the coords in the given snapshot as the saved coords
+		 * Used after loading, when the coords are published
+		 */
+		void setSavedCoords(ProvinceMapSnapshot snapshot) {
+			//Taken from the snapshot when first needed, as its coords may not be loaded yet
+			snapshotWithSavedCoords = snapshot;
+		}
+
+		private void resolveSavedCoords() {
+			if (snapshotWithSavedCoords == null)
+				return;
+			for (int i = 0; i < provinces.size(); i++) {
+				if (savedCoords[i] == null) {
+					savedCoords[i] = snapshotWithSavedCoords.getCoordsInProvince(provinces.get(i));
+				}
+			}
+			snapshotWithSavedCoords = null;
+		}
+
+		ProvinceCoords getSavedCoords(int fileIndex) {
+			resolveSavedCoords();
+			return savedCoords[fileIndex] == null ? ProvinceCoords.EMPTY : savedCoords[fileIndex];
+		}
+
+		/**
+		 * @return the file indexes of the provinces whose coords in the snapshot are different from the saved coords
+		 */
+		List<Integer> findProvincesWithChangedCoords(ProvinceMapSnapshot snapshot) {
+			resolveSavedCoords();
+			List<Integer> result = new ArrayList<>();
+			for (int i = 0; i < provinces.size(); i++) {
+				if (snapshot.getCoordsInProvince(provinces.get(i)) != getSavedCoords(i)) {
+					result.add(i);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @return true if appending the given number of bytes would leave the file mostly replaced sections,
+		 *         in which case it should be rewritten instead
+		 */
+		boolean isRewriteDue(long numBytesToReplace) {
+			return (numReplacedBytes + numBytesToReplace) * 2 > fileLength;
+		}
+
+		long getNumBytesInCoordsSections(List<Integer> fileIndexList) {
+			long result = 0;
+			for (int fileIndex : fileIndexList) {
+				result += coordsLengths[fileIndex];
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @return a random id, which is never 0
+	 */
+	static long generateId() {
+		long result;
+		do {
+			result = ThreadLocalRandom.current().nextLong();
+		} while (result == 0);
+		return result;
+	}
+
+	/**
+	 * Write the given provinces into the given file, replacing it
+	 * 
+	 * The provinces are written to a temporary file, which is synced to disk,
+	 * and then atomically renamed over the old file.
+	 *
+	 * @param file the file
+	 * @param provinces the provinces
+	 * @param snapshot the snapshot to take the coords from
+	 * @param geometryId the geometry id
+	 * @return the layout of the new file
+	 * @throws IOException if there was a problem writing the file
+	 */
+	static Layout writeProvinces(File file, List<Province> provinces, ProvinceMapSnapshot snapshot, long geometryId) throws IOException {
+		Layout layout = new Layout(generateId(), geometryId, provinces);
+		//Encode coords sections, so the offsets are known before the records are written
+		List<byte[]> coordsSections = new ArrayList<>(provinces.size());
+		for (int i = 0; i < provinces.size(); i++) {
+			layout.savedCoords[i] = snapshot.getCoordsInProvince(provinces.get(i));
+			byte[] coordsSection = encodeCoordRuns(layout.savedCoords[i]);
+			coordsSections.add(coordsSection);
+			layout.coordsOffsets[i] = layout.fileLength;
+			layout.coordsLengths[i] = coordsSection.length;
+			layout.fileLength += coordsSection.length;
+		}
+		File tempFile = FileUtil.getTempFile(file);
+		FileOutputStream fileOutput = new FileOutputStream(tempFile);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput, 65536))) {
+			output.writeInt(MAGIC_NUMBER);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(geometryId);
+			output.writeLong(layout.fileId);
+			output.writeInt(provinces.size());
+			ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE_IN_BYTES);
+			for (int i = 0; i < provinces.size(); i++) {
+				fillRecord(recordBuffer, provinces.get(i), layout.coordsOffsets[i], layout.coordsLengths[i]);
+				output.write(recordBuffer.array());
+			}
+			for (byte[] coordsSection : coordsSections) {
+				output.write(coordsSection);
+			}
+			output.flush();
+			fileOutput.getFD().sync();
+		}
+		FileUtil.replaceFileAtomically(tempFile, file);
+		return layout;
+	}
+
+	/**
+	 * Create the batch of writes which updates the file in place
+	 * 
+	 * Only the records of provinces with changed metadata or coords are rewritten.
+	 * Only the coords sections of provinces with changed coords are written, at the end of the file.
+	 * The batch must then be applied via the journal.
+	 * If nothing has changed, the batch is empty.
+	 *
+	 * @param layout the layout of the file. Updated to match the new contents
+	 * @param snapshot the snapshot to take the coords from
+	 * @param provincesWithChangedCoords file indexes of the provinces whose coords have changed
+	 * @param geometryId the geometry id
+	 * @return the batch
+	 * @throws IOException if there was a problem encoding the coords
+	 */
+	static ProvinceJournal.Batch createUpdateBatch(Layout layout, ProvinceMapSnapshot snapshot, List<Integer> provincesWithChangedCoords, long geometryId) throws IOException {
+		ProvinceJournal.Batch batch = new ProvinceJournal.Batch();
+		Set<Integer> recordsToWrite = new TreeSet<>(provincesWithChangedCoords);
+		for (int i = 0; i < layout.provinces.size(); i++) {
+			if (layout.provinces.get(i).isMetadataDirty()) {
+				recordsToWrite.add(i);
+			}
+		}
+		//Append new coords sections
+		ProvinceCoords coords;
+		byte[] coordsSection;
+		for (int fileIndex : provincesWithChangedCoords) {
+			coords = snapshot.getCoordsInProvince(layout.provinces.get(fileIndex));
+			coordsSection = encodeCoordRuns(coords);
+			batch.add(layout.fileLength, coordsSection);
+			layout.numReplacedBytes += layout.coordsLengths[fileIndex];
+			layout.coordsOffsets[fileIndex] = layout.fileLength;
+			layout.coordsLengths[fileIndex] = coordsSection.length;
+			layout.savedCoords[fileIndex] = coords;
+			layout.fileLength += coordsSection.length;
+		}
+		//Rewrite records
+		ByteBuffer recordBuffer;
+		for (int fileIndex : recordsToWrite) {
+			recordBuffer = ByteBuffer.allocate(RECORD_SIZE_IN_BYTES);
+			fillRecord(recordBuffer, layout.provinces.get(fileIndex), layout.coordsOffsets[fileIndex], layout.coordsLengths[fileIndex]);
+			batch.add(HEADER_SIZE_IN_BYTES + ((long) RECORD_SIZE_IN_BYTES * fileIndex), recordBuffer.array());
+		}
+		//Update geometry id
+		if (geometryId != layout.geometryId) {
+			ByteBuffer geometryIdBuffer = ByteBuffer.allocate(8);
+			geometryIdBuffer.putLong(geometryId);
+			batch.add(GEOMETRY_ID_POSITION, geometryIdBuffer.array());
+			layout.geometryId = geometryId;
+		}
+		return batch;
+	}
+
+	/**
+	 * Read the file id of the given file
+	 * 
+	 * @return the file id, or NO_FILE_ID if the file is an older version, or not a province file
+	 */
+	static long readFileId(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), HEADER_SIZE_IN_BYTES))) {
+			if (input.readInt() != MAGIC_NUMBER || input.readInt() < 4)
+				return NO_FILE_ID;
+			input.readLong();
+			return input.readLong();
+		} catch (EOFException e) {
+			return NO_FILE_ID;
+		}
+	}
+
+	/**
+	 * Fill the buffer with the record of the given province, ready to be written
+	 * 
+	 * The dirty flag of the province is cleared before the metadata is read,
+	 * so a change made while saving is saved next time.
+	 */
+	private static void fillRecord(ByteBuffer buffer, Province province, long coordsOffset, int coordsLength) {
+		province.setMetadataDirty(false);
+		buffer.clear();
+		buffer.putInt(province.getHomeBlock().getX());
+		buffer.putInt(province.getHomeBlock().getZ());
+		buffer.put(getTypeCode(province.getType()));
+		buffer.put((byte) (province.isLandValidationRequested() ? 1 : 0));
+		buffer.putDouble(province.getNewTownCost());
+		buffer.putDouble(province.getUpkeepTownCost());
+		buffer.putDouble(province.getEstimatedProportionOfGoodLand());
+		buffer.putDouble(province.getEstimatedProportionOfWater());
+		buffer.putDouble(province.getEstimatedProportionOfHotLand());
+		buffer.putDouble(province.getEstimatedProportionOfColdLand());
+		buffer.putLong(coordsOffset);
+		buffer.putInt(coordsLength);
+		buffer.flip();
+	}
+
+	/**
+	 * Write the home block, type and metadata of the given province, in the same form as a record
+	 * Does not touch the dirty flag
+	 */
+	static void writeProvinceMetadata(DataOutputStream output, Province province) throws IOException {
+		output.writeInt(province.getHomeBlock().getX());
+		output.writeInt(province.getHomeBlock().getZ());
+		output.writeByte(getTypeCode(province.getType()));
+		output.writeBoolean(province.isLandValidationRequested());
+		output.writeDouble(province.getNewTownCost());
+		output.writeDouble(province.getUpkeepTownCost());
+		output.writeDouble(province.getEstimatedProportionOfGoodLand());
+		output.writeDouble(province.getEstimatedProportionOfWater());
+		output.writeDouble(province.getEstimatedProportionOfHotLand());
+		output.writeDouble(province.getEstimatedProportionOfColdLand());
+	}
+
+	/**
+	 * Read a province written by writeProvinceMetadata
+	 * The province is not added to the data holder
+	 */
+	static Province readProvinceMetadata(DataInputStream input) throws IOException {
+		Province province = new Province(TPFinalCoord.of(input.readInt(), input.readInt()));
+		int typeCode = input.readUnsignedByte();
+		if (typeCode >= TYPES_BY_CODE.length)
+			throw new IOException("Unknown province type code: " + typeCode);
+		province.setType(TYPES_BY_CODE[typeCode]);
+		readMetadata(input, province);
+		return province;
+	}
+
+	private static byte getTypeCode(ProvinceType type) {
+		for (int i = 0; i < TYPES_BY_CODE.length; i++) {
+			if (TYPES_BY_CODE[i] == type)
+				return (byte) i;
+		}
+		throw new RuntimeException("Unknown province type");
+	}
+
+	static byte[] encodeCoordRuns(ProvinceCoords coords) throws IOException {
+		ByteArrayOutputStream coordsBuffer = new ByteArrayOutputStream();
+		DataOutputStream coordsOutput = new DataOutputStream(coordsBuffer);
+		writeCoordRuns(coordsOutput, coords);
+		return coordsBuffer.toByteArray();
+	}
+
+	/**
+	 * @param coords sorted coords
+	 */
+	private static void writeCoordRuns(DataOutputStream output, ProvinceCoords coords) throws IOException {
+		//Count runs
+		int numRuns = 0;
+		for (int i = 0; i < coords.size(); i++) {
+			if (!isRunContinued(coords, i)) {
+				numRuns++;
+			}
+		}
+		writeVarInt(output, numRuns);
+		//Write runs
+		int previousRunX = 0;
+		int previousRunZ = 0;
+		int runStart = 0;
+		for (int i = 0; i < coords.size(); i++) {
+			if (i + 1 < coords.size() && isRunContinued(coords, i + 1))
+				continue;
+			//Coord i is the end of a run
+			writeVarInt(output, zigzagEncode(coords.getX(runStart) - previousRunX));
+			writeVarInt(output, zigzagEncode(coords.getZ(runStart) - previousRunZ));
+			writeVarInt(output, i - runStart + 1);
+			previousRunX = coords.getX(runStart);
+			previousRunZ = coords.getZ(runStart);
+			runStart = i + 1;
+		}
+	}
+
+	/**
+	 * @return true if the coord at the given index continues the run of the previous coord
+	 */
+	private static boolean isRunContinued(ProvinceCoords coords, int index) {
+		return index > 0
+			&& coords.getX(index) == coords.getX(index - 1)
+			&& coords.getZ(index) == coords.getZ(index - 1) + 1;
+	}
+
+	/**
+	 * Read all provinces from the given file into the data holder
+	 *
+	 * @param file the file
+	 * @param loadCoords if false, the coords are skipped if possible (e.g. because they will be loaded from the grid file)
+	 * @return the result
+	 * @throws IOException if the file could not be read, or is not a valid province file
+	 */
+	static ReadResult readProvinces(File file, boolean loadCoords) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+			if (input.readInt() != MAGIC_NUMBER)
+				throw new IOException("File is not a province data file: " + file.getName());
+			int formatVersion = input.readInt();
+			if (formatVersion < 1 || formatVersion > FORMAT_VERSION)
+				throw new IOException("Unsupported province data file version: " + formatVersion);
+			ReadResult result = new ReadResult();
+			if (formatVersion >= 2) {
+				result.geometryId = input.readLong();
+			}
+			long fileId = NO_FILE_ID;
+			if (formatVersion >= 4) {
+				fileId = input.readLong();
+			}
+			result.coordsLoaded = loadCoords || formatVersion < 2;
+			int numProvinces = input.readInt();
+			if (formatVersion >= 3) {
+				readRecordsAndCoordsSections(input, formatVersion, fileId, numProvinces, result);
+			} else {
+				for (int i = 0; i < numProvinces; i++) {
+					result.numCoordsOutsideMap += readLegacyProvince(input, formatVersion, result.coordsLoaded, result);
+				}
+			}
+			return result;
+		}
+	}
+
+	private static void readRecordsAndCoordsSections(DataInputStream input, int formatVersion, long fileId, int numProvinces, ReadResult result) throws IOException {
+		int headerSize = formatVersion >= 4 ? HEADER_SIZE_IN_BYTES : VERSION_3_HEADER_SIZE_IN_BYTES;
+		//Read records
+		long[] coordsOffsets = new long[numProvinces];
+		int[] coordsLengths = new int[numProvinces];
+		Province province;
+		for (int i = 0; i < numProvinces; i++) {
+			province = readProvinceMetadata(input);
+			coordsOffsets[i] = input.readLong();
+			coordsLengths[i] = input.readInt();
+			TownyProvincesDataHolder.getInstance().addProvince(province);
+			result.provinces.add(province);
+		}
+		//Record layout, so the file can be updated in place. Older versions have no file id, so are rewritten instead
+		if (formatVersion >= 4) {
+			Layout layout = new Layout(fileId, result.geometryId, result.provinces);
+			for (int i = 0; i < numProvinces; i++) {
+				layout.coordsOffsets[i] = coordsOffsets[i];
+				layout.coordsLengths[i] = coordsLengths[i];
+				layout.fileLength = Math.max(layout.fileLength, coordsOffsets[i] + coordsLengths[i]);
+			}
+			long numLiveBytes = HEADER_SIZE_IN_BYTES + ((long) RECORD_SIZE_IN_BYTES * numProvinces) + layout.getNumBytesInCoordsSections(indexRange(numProvinces));
+			layout.numReplacedBytes = layout.fileLength - numLiveBytes;
+			result.layout = layout;
+		}
+		if (!result.coordsLoaded)
+			return;
+		//Read coords sections, in file order
+		List<Integer> fileIndexesInOffsetOrder = indexRange(numProvinces);
+		fileIndexesInOffsetOrder.sort(Comparator.comparingLong(fileIndex -> coordsOffsets[fileIndex]));
+		long position = headerSize + ((long) RECORD_SIZE_IN_BYTES * numProvinces);
+		byte[][] coordsSections = new byte[numProvinces][];
+		for (int fileIndex : fileIndexesInOffsetOrder) {
+			skipFully(input, coordsOffsets[fileIndex] - position);
+			coordsSections[fileIndex] = new byte[coordsLengths[fileIndex]];
+			input.readFully(coordsSections[fileIndex]);
+			position = coordsOffsets[fileIndex] + coordsLengths[fileIndex];
+		}
+		//Decode coords sections in parallel, then claim the coords on this thread
+		int[][] coordRuns = decodeCoordRunsInParallel(coordsSections);
+		for (int i = 0; i < numProvinces; i++) {
+			result.numCoordsOutsideMap += claimCoordRuns(coordRuns[i], result.provinces.get(i));
+		}
+	}
+
+	/**
+	 * Decode the given coords sections, using all available cores
+	 * 
+	 * Decoding only reads the given bytes, so the sections can be decoded at the same time.
+	 * Nothing is written to the data holder here.
+	 *
+	 * @return the decoded runs of each section
+	 * @throws IOException if any section is malformed
+	 */
+	static int[][] decodeCoordRunsInParallel(byte[][] coordsSections) throws IOException {
+		int[][] result = new int[coordsSections.length][];
+		try {
+			IntStream.range(0, coordsSections.length).parallel().forEach(i -> {
+				try {
+					DataInputStream sectionInput = new DataInputStream(new ByteArrayInputStream(coordsSections[i]));
+					result[i] = decodeCoordRuns(sectionInput, coordsSections[i].length);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return result;
+	}
+
+	private static List<Integer> indexRange(int size) {
+		List<Integer> result = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(i);
+		}
+		return result;
+	}
+
+	private static void skipFully(DataInputStream input, long numBytes) throws IOException {
+		if (numBytes < 0)
+			throw new IOException("Overlapping coords sections in province data file");
+		while (numBytes > 0) {
+			int numSkipped = input.skipBytes((int) Math.min(numBytes, Integer.MAX_VALUE));
+			if (numSkipped <= 0)
+				throw new EOFException("Unexpected end of province data file");
+			numBytes -= numSkipped;
+		}
+	}
+
+	/**
+	 * Read the metadata which comes after the type, in all versions
+	 * The dirty flag is cleared, because the province matches the file
+	 */
+	private static void readMetadata(DataInputStream input, Province province) throws IOException {
+		province.setLandValidationRequested(input.readBoolean());
+		province.setNewTownCost(input.readDouble());
+		province.setUpkeepTownCost(input.readDouble());
+		province.setEstimatedProportionOfGoodLand(input.readDouble());
+		province.setEstimatedProportionOfWater(input.readDouble());
+		province.setEstimatedProportionOfHotLand(input.readDouble());
+		province.setEstimatedProportionOfColdLand(input.readDouble());
+		province.setMetadataDirty(false);
+	}
+
+	private static int readLegacyProvince(DataInputStream input, int formatVersion, boolean loadCoords, ReadResult result) throws IOException {
+		int homeBlockX = input.readInt();
+		int homeBlockZ = input.readInt();
+		Province province = new Province(TPFinalCoord.of(homeBlockX, homeBlockZ));
+		province.setType(ProvinceType.parseProvinceType(input.readUTF()));
+		readMetadata(input, province);
+		//Add province to provinces set
+		TownyProvincesDataHolder.getInstance().addProvince(province);
+		result.provinces.add(province);
+		//Add coords to coord-province index
+		if (formatVersion >= 2) {
+			int coordsSectionLength = input.readInt();
+			if (!loadCoords) {
+				skipFully(input, coordsSectionLength);
+				return 0;
+			}
+		}
+		return claimCoordRuns(decodeCoordRuns(input, Integer.MAX_VALUE), province);
+	}
+
+	/**
+	 * Decode a coords section
+	 * 
+	 * @param input the input, positioned at the start of the section
+	 * @param maxSectionLength the most bytes the section can have
+	 * @return the runs, as (x, first z, length) triples
+	 */
+	private static int[] decodeCoordRuns(DataInputStream input, int maxSectionLength) throws IOException {
+		int numRuns = readVarInt(input);
+		if (numRuns < 0 || numRuns > maxSectionLength / 3)
+			throw new IOException("Malformed coords section in province data file");
+		int[] result = new int[numRuns * 3];
+		int runX = 0;
+		int runZ = 0;
+		for (int i = 0; i < numRuns; i++) {
+			runX += zigzagDecode(readVarInt(input));
+			runZ += zigzagDecode(readVarInt(input));
+			result[i * 3] = runX;
+			result[(i * 3) + 1] = runZ;
+			result[(i * 3) + 2] = readVarInt(input);
+		}
+		return result;
+	}
+
+	/**
+	 * Claim the coords in the given runs for the given province
+	 * 
+	 * @param coordRuns runs, as (x, first z, length) triples
+	 * @return the number of coords which could not be claimed because they were outside the map
+	 */
+	static int claimCoordRuns(int[] coordRuns, Province province) {
+		int numCoordsOutsideMap = 0;
+		int runX;
+		int runZ;
+		int runLength;
+		for (int i = 0; i < coordRuns.length; i += 3) {
+			runX = coordRuns[i];
+			runZ = coordRuns[i + 1];
+			runLength = coordRuns[i + 2];
+			for (int z = runZ; z < runZ + runLength; z++) {
+				if (!TownyProvincesDataHolder.getInstance().claimCoordForProvince(runX, z, province)) {
+					numCoordsOutsideMap++;
+				}
+			}
+		}
+		return numCoordsOutsideMap;
+	}
+
+	private static int zigzagEncode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int zigzagDecode(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream input) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+		throw new IOException("Malformed varint in province data file");
+	}
+}
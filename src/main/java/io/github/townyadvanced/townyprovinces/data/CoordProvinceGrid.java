@@ -0,0 +1,99 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Dense coord-province index
+ *
+ * One int cell per chunk on the map, stored in one array per row.
+ * Lookups are simple array reads.
+ *
+ * A copy shares its rows with the source, so copying only costs one reference per row.
+ * A shared row is copied the first time either grid writes to it (copy on write).
+ */
+public class CoordProvinceGrid extends CoordProvinceIndex {
+
+	private final int width;
+	private final AtomicReferenceArray<AtomicIntegerArray> rows;
+	private volatile AtomicIntegerArray[] sharedRows;  //The rows as they were when last shared with a copy. Null if never shared
+
+	public CoordProvinceGrid(int minX, int maxX, int minZ, int maxZ, ProvinceRegistry provinceRegistry) {
+		super(minX, maxX, minZ, maxZ, provinceRegistry);
+		this.width = maxX - minX + 1;
+		int height = maxZ - minZ + 1;
+		this.rows = new AtomicReferenceArray<>(height);
+		for (int rowIndex = 0; rowIndex < height; rowIndex++) {
+			rows.set(rowIndex, new AtomicIntegerArray(width));
+		}
+		this.sharedRows = null;
+	}
+
+	/**
+	 * Create a grid from existing cell values, e.g. bulk-loaded from a file
+	 *
+	 * @param cells province handles, in row-major order. 0 means unclaimed
+	 * @param numClaimedCells the number of non-zero cells
+	 */
+	CoordProvinceGrid(int minX, int maxX, int minZ, int maxZ, ProvinceRegistry provinceRegistry, int[] cells, int numClaimedCells) {
+		super(minX, maxX, minZ, maxZ, provinceRegistry);
+		this.width = maxX - minX + 1;
+		int height = maxZ - minZ + 1;
+		this.rows = new AtomicReferenceArray<>(height);
+		int[] rowCells = new int[width];
+		for (int rowIndex = 0; rowIndex < height; rowIndex++) {
+			System.arraycopy(cells, rowIndex * width, rowCells, 0, width);
+			rows.set(rowIndex, new AtomicIntegerArray(rowCells));
+		}
+		this.sharedRows = null;
+		setNumClaimedCells(numClaimedCells);
+	}
+
+	private CoordProvinceGrid(CoordProvinceGrid source, AtomicIntegerArray[] sourceRows) {
+		super(source);
+		this.width = source.width;
+		this.rows = new AtomicReferenceArray<>(sourceRows);
+		this.sharedRows = sourceRows;
+	}
+
+	/**
+	 * Create a copy which shares all rows with this grid.
+	 * Afterwards, both grids copy a row before writing to it.
+	 */
+	@Override
+	public CoordProvinceIndex copy() {
+		AtomicIntegerArray[] currentRows = new AtomicIntegerArray[rows.length()];
+		for (int rowIndex = 0; rowIndex < currentRows.length; rowIndex++) {
+			currentRows[rowIndex] = rows.get(rowIndex);
+		}
+		sharedRows = currentRows;
+		return new CoordProvinceGrid(this, currentRows);
+	}
+
+	/**
+	 * Get the given row, ready for writing.
+	 * If it is shared with another grid, it is copied first.
+	 * Safe to call from several writing threads at once: if two threads copy the same row, one copy wins.
+	 */
+	private AtomicIntegerArray getWritableRow(int rowIndex) {
+		AtomicIntegerArray row = rows.get(rowIndex);
+		AtomicIntegerArray[] currentSharedRows = sharedRows;
+		if (currentSharedRows == null || row != currentSharedRows[rowIndex])
+			return row;
+		AtomicIntegerArray rowCopy = new AtomicIntegerArray(width);
+		for (int i = 0; i < width; i++) {
+			rowCopy.lazySet(i, row.get(i));
+		}
+		return rows.compareAndSet(rowIndex, row, rowCopy) ? rowCopy : rows.get(rowIndex);
+	}
+
+	@Override
+	protected int getProvinceId(int x, int z) {
+		return rows.get(z - minZ).get(x - minX);
+	}
+
+	@Override
+	protected int swapProvinceId(int x, int z, int provinceId) {
+		return getWritableRow(z - minZ).getAndSet(x - minX, provinceId);
+	}
+}
@@ -0,0 +1,132 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sparse coord-province index
+ * 
+ * Open-addressing (linear probing) table, keyed by packed coord.
+ * Memory use follows the number of claimed coords rather than the area of the map,
+ * which suits maps where regions have large unpainted gaps.
+ * 
+ * To keep lookups lock-free:
+ * - Keys are never removed from a table. Unclaiming a coord just sets its id to UNCLAIMED.
+ * - When a key is added, its id is written before the key, so a reader which finds the key also finds the id.
+ * - When the table fills up, a new one is built with only the claimed coords, then published in one volatile write.
+ */
+public class CoordProvinceHashIndex extends CoordProvinceIndex {
+
+	private static final long EMPTY = Long.MIN_VALUE;  //Packed coord of x=Integer.MIN_VALUE,z=0, never in bounds
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static class Table {
+		private final AtomicLongArray keys;
+		private final AtomicIntegerArray provinceIds;
+		private final int mask;
+		private int numKeys;  //Only used by the writing thread
+
+		private Table(int capacity) {
+			keys = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				keys.set(i, EMPTY);
+			}
+			provinceIds = new AtomicIntegerArray(capacity);
+			mask = capacity - 1;
+			numKeys = 0;
+		}
+
+		private int findSlot(long packedCoord) {
+			int slot = CoordUtil.hashPackedCoord(packedCoord) & mask;
+			long key;
+			while ((key = keys.get(slot)) != EMPTY) {
+				if (key == packedCoord)
+					return slot;
+				slot = (slot + 1) & mask;
+			}
+			return ~slot;  //Not found. Return the empty slot where the key would go.
+		}
+
+		private void insert(int emptySlot, long packedCoord, int provinceId) {
+			provinceIds.set(emptySlot, provinceId);
+			keys.set(emptySlot, packedCoord);
+			numKeys++;
+		}
+	}
+
+	private volatile Table table;
+
+	public CoordProvinceHashIndex(int minX, int maxX, int minZ, int maxZ, ProvinceRegistry provinceRegistry) {
+		super(minX, maxX, minZ, maxZ, provinceRegistry);
+		this.table = new Table(INITIAL_CAPACITY);
+	}
+
+	private CoordProvinceHashIndex(CoordProvinceHashIndex source) {
+		super(source);
+		this.table = buildTableWithClaimedCoords(source.table);
+	}
+
+	@Override
+	public CoordProvinceIndex copy() {
+		return new CoordProvinceHashIndex(this);
+	}
+
+	@Override
+	protected int getProvinceId(int x, int z) {
+		Table currentTable = table;
+		int slot = currentTable.findSlot(CoordUtil.packCoord(x, z));
+		return slot < 0 ? UNCLAIMED : currentTable.provinceIds.get(slot);
+	}
+
+	@Override
+	protected int swapProvinceId(int x, int z, int provinceId) {
+		long packedCoord = CoordUtil.packCoord(x, z);
+		Table currentTable = table;
+		int slot = currentTable.findSlot(packedCoord);
+		if (slot >= 0)
+			return currentTable.provinceIds.getAndSet(slot, provinceId);
+		if (provinceId == UNCLAIMED)
+			return UNCLAIMED;
+		if ((currentTable.numKeys + 1) * 2 > currentTable.provinceIds.length()) {
+			currentTable = rebuildTable(currentTable);
+			slot = currentTable.findSlot(packedCoord);
+		}
+		currentTable.insert(~slot, packedCoord, provinceId);
+		return UNCLAIMED;
+	}
+
+	/**
+	 * Build and publish a new table containing only the claimed coords of the old one.
+	 */
+	private Table rebuildTable(Table oldTable) {
+		Table newTable = buildTableWithClaimedCoords(oldTable);
+		table = newTable;
+		return newTable;
+	}
+
+	private static Table buildTableWithClaimedCoords(Table oldTable) {
+		int numClaimed = 0;
+		for (int i = 0; i < oldTable.provinceIds.length(); i++) {
+			if (oldTable.keys.get(i) != EMPTY && oldTable.provinceIds.get(i) != UNCLAIMED) {
+				numClaimed++;
+			}
+		}
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < (numClaimed + 1) * 4L && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		Table newTable = new Table(capacity);
+		long key;
+		int provinceId;
+		for (int i = 0; i < oldTable.provinceIds.length(); i++) {
+			key = oldTable.keys.get(i);
+			provinceId = oldTable.provinceIds.get(i);
+			if (key != EMPTY && provinceId != UNCLAIMED) {
+				newTable.insert(~newTable.findSlot(key), key, provinceId);
+			}
+		}
+		return newTable;
+	}
+}
@@ -0,0 +1,184 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.Region;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+
+import javax.annotation.Nullable;
+
+/**
+ * Coord-province index, covering the area of the first region (which is the full map).
+ * 
+ * Each claimed coord maps to a compact province id:
+ * - 0 means the coord is unclaimed (i.e. a border, or not yet painted)
+ * - Any other value is the handle of the province in the province registry
+ * 
+ * Implementations decide how the ids are stored:
+ * - grid: One int cell per chunk on the map. Fastest, best for maps which are mostly painted.
+ * - hash: Open-addressing table keyed by packed coord. Uses less memory when the map has large unpainted gaps.
+ * 
+ * Lookups take primitive x,z args and create no objects.
+ * 
+ * Thread safety:
+ * - Any number of threads can read the index at the same time, without locking.
+ * - Only one thread may write to the index at a time (e.g. the regeneration job, or the loader).
+ * - Ids are read and written with volatile semantics,
+ *   and a province is registered before its id is written anywhere,
+ *   so a reader which sees a province id will always see the province in the registry.
+ */
+public abstract class CoordProvinceIndex {
+
+	protected static final int UNCLAIMED = 0;
+
+	public static final String TYPE_GRID = "grid";
+	public static final String TYPE_HASH = "hash";
+
+	protected final int minX;
+	protected final int maxX;
+	protected final int minZ;
+	protected final int maxZ;
+	protected final ProvinceRegistry provinceRegistry;
+	private volatile int numClaimedCells;
+
+	protected CoordProvinceIndex(int minX, int maxX, int minZ, int maxZ, ProvinceRegistry provinceRegistry) {
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minZ = minZ;
+		this.maxZ = maxZ;
+		this.provinceRegistry = provinceRegistry;
+		this.numClaimedCells = 0;
+	}
+
+	/**
+	 * Copy constructor. Copies the bounds, and shares the registry.
+	 */
+	protected CoordProvinceIndex(CoordProvinceIndex source) {
+		this.minX = source.minX;
+		this.maxX = source.maxX;
+		this.minZ = source.minZ;
+		this.maxZ = source.maxZ;
+		this.provinceRegistry = source.provinceRegistry;
+		this.numClaimedCells = source.numClaimedCells;
+	}
+
+	/**
+	 * Create an index covering the whole map,
+	 * assuming that region file 1 specifies the dimensions of the full map
+	 * 
+	 * The type of index is taken from the config.
+	 * 
+	 * @param provinceRegistry registry used to resolve province ids
+	 */
+	public static CoordProvinceIndex createForMap(ProvinceRegistry provinceRegistry) {
+		Region firstRegion = TownyProvincesSettings.getFirstRegion();
+		int minX = firstRegion.getTopLeftRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
+		int maxX = firstRegion.getBottomRightRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
+		int minZ = firstRegion.getTopLeftRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
+		int maxZ = firstRegion.getBottomRightRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
+		String indexType = TownyProvincesSettings.getCoordProvinceIndexType();
+		if (indexType.equalsIgnoreCase(TYPE_HASH)) {
+			return new CoordProvinceHashIndex(minX, maxX, minZ, maxZ, provinceRegistry);
+		}
+		if (!indexType.equalsIgnoreCase(TYPE_GRID)) {
+			TownyProvinces.severe("Unknown coord province index type: " + indexType + ". Using " + TYPE_GRID + ".");
+		}
+		return new CoordProvinceGrid(minX, maxX, minZ, maxZ, provinceRegistry);
+	}
+
+	/**
+	 * Create an independent copy of this index.
+	 * Must be called by the writing thread, or when there is no writing thread.
+	 */
+	public abstract CoordProvinceIndex copy();
+
+	/**
+	 * @return the province id stored for the coord, or UNCLAIMED. The coord is in bounds.
+	 */
+	protected abstract int getProvinceId(int x, int z);
+
+	/**
+	 * Store the province id for the coord. The coord is in bounds.
+	 * 
+	 * @return the province id which was previously stored, or UNCLAIMED
+	 */
+	protected abstract int swapProvinceId(int x, int z, int provinceId);
+
+	/**
+	 * @return the registry which resolves the province ids in this index
+	 */
+	public ProvinceRegistry getProvinceRegistry() {
+		return provinceRegistry;
+	}
+
+	public boolean isInBounds(int x, int z) {
+		return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+	}
+
+	public boolean hasSameBounds(CoordProvinceIndex otherIndex) {
+		return minX == otherIndex.minX
+			&& maxX == otherIndex.maxX
+			&& minZ == otherIndex.minZ
+			&& maxZ == otherIndex.maxZ;
+	}
+
+	public @Nullable Province getProvince(int x, int z) {
+		if (!isInBounds(x, z))
+			return null;
+		int provinceId = getProvinceId(x, z);
+		if (provinceId == UNCLAIMED)
+			return null;
+		return provinceRegistry.getProvince(provinceId);
+	}
+
+	public boolean isClaimed(int x, int z) {
+		return isInBounds(x, z) && getProvinceId(x, z) != UNCLAIMED;
+	}
+
+	/**
+	 * Assign the given coord to the given province
+	 *
+	 * @return false if the coord is outside the map
+	 */
+	public boolean setProvince(int x, int z, Province province) {
+		if (!isInBounds(x, z))
+			return false;
+		int provinceId = provinceRegistry.register(province);
+		if (swapProvinceId(x, z, provinceId) == UNCLAIMED) {
+			numClaimedCells++;
+		}
+		return true;
+	}
+
+	public void clearCell(int x, int z) {
+		if (!isInBounds(x, z))
+			return;
+		if (swapProvinceId(x, z, UNCLAIMED) != UNCLAIMED) {
+			numClaimedCells--;
+		}
+	}
+
+	public int getNumClaimedCells() {
+		return numClaimedCells;
+	}
+
+	protected void setNumClaimedCells(int numClaimedCells) {
+		this.numClaimedCells = numClaimedCells;
+	}
+
+	public int getMinX() {
+		return minX;
+	}
+
+	public int getMaxX() {
+		return maxX;
+	}
+
+	public int getMinZ() {
+		return minZ;
+	}
+
+	public int getMaxZ() {
+		return maxZ;
+	}
+}
@@ -0,0 +1,152 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+
+import java.util.Arrays;
+
+/**
+ * Set of coords, with no objects created per coord
+ * 
+ * Coords are packed into longs, and stored in an open-addressing (linear probing) hash table.
+ * Removal shifts later entries back, so no tombstones are left in the table.
+ * 
+ * Not thread safe.
+ */
+public class CoordSet {
+
+	private static final long EMPTY = Long.MIN_VALUE;  //Packed coord of x=Integer.MIN_VALUE,z=0, never a real chunk
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] slots;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	public CoordSet() {
+		this(MIN_CAPACITY);
+	}
+
+	public CoordSet(int expectedSize) {
+		allocateSlots(calculateCapacity(expectedSize));
+		this.size = 0;
+	}
+
+	private static int calculateCapacity(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2L && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocateSlots(int capacity) {
+		slots = new long[capacity];
+		Arrays.fill(slots, EMPTY);
+		mask = capacity - 1;
+		resizeThreshold = capacity / 2;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int x, int z) {
+		long packedCoord = CoordUtil.packCoord(x, z);
+		int slot = CoordUtil.hashPackedCoord(packedCoord) & mask;
+		while (slots[slot] != EMPTY) {
+			if (slots[slot] == packedCoord)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the coord was added, false if it was already in the set
+	 */
+	public boolean add(int x, int z) {
+		long packedCoord = CoordUtil.packCoord(x, z);
+		if (packedCoord == EMPTY)
+			throw new IllegalArgumentException("Coord cannot be stored: " + x + "," + z);
+		int slot = CoordUtil.hashPackedCoord(packedCoord) & mask;
+		while (slots[slot] != EMPTY) {
+			if (slots[slot] == packedCoord)
+				return false;
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = packedCoord;
+		size++;
+		if (size > resizeThreshold) {
+			resize(slots.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the coord was removed, false if it was not in the set
+	 */
+	public boolean remove(int x, int z) {
+		long packedCoord = CoordUtil.packCoord(x, z);
+		int slot = CoordUtil.hashPackedCoord(packedCoord) & mask;
+		while (slots[slot] != packedCoord) {
+			if (slots[slot] == EMPTY)
+				return false;
+			slot = (slot + 1) & mask;
+		}
+		//Shift back any later entries which would no longer be found after the gap
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (slots[next] != EMPTY) {
+			int idealSlot = CoordUtil.hashPackedCoord(slots[next]) & mask;
+			if (((next - idealSlot) & mask) >= ((next - gap) & mask)) {
+				slots[gap] = slots[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		slots[gap] = EMPTY;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * Copy all the packed coords into the given array
+	 * Use CoordUtil to unpack them.
+	 * 
+	 * @param destination the array to copy into. If it is too small, a new one is created
+	 * @return the array containing the coords. The first size() entries are valid
+	 */
+	public long[] toPackedArray(long[] destination) {
+		long[] result = destination.length >= size ? destination : new long[size];
+		int index = 0;
+		for (long packedCoord : slots) {
+			if (packedCoord != EMPTY) {
+				result[index++] = packedCoord;
+			}
+		}
+		return result;
+	}
+
+	private void resize(int newCapacity) {
+		long[] oldSlots = slots;
+		allocateSlots(newCapacity);
+		for (long packedCoord : oldSlots) {
+			if (packedCoord == EMPTY)
+				continue;
+			int slot = CoordUtil.hashPackedCoord(packedCoord) & mask;
+			while (slots[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = packedCoord;
+		}
+	}
+}
@@ -6,88 +6,423 @@ import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.ProvinceType;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
 import io.github.townyadvanced.townyprovinces.util.FileUtil;
+import org.bukkit.Bukkit;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.Collectors;
 
 public class 
 DataHandlerUtil {
 
+	private static long geometryId = BinaryProvinceFile.NO_GEOMETRY_ID;  //Geometry id of the saved files
+	private static CoordProvinceIndex savedCoordProvinceIndex = null;  //The index which was last saved or loaded
+	private static BinaryProvinceFile.Layout savedLayout = null;  //Null if the province file must be rewritten in full
+	private static Map<String, ProvinceShardFile.Shard> savedShards = null;  //Null until the shard files have been checked against the loaded provinces
+
 	public static boolean loadAllData() {
-		loadAllProvinces();
-		return true;
+		return loadAllProvinces();
 	}
 
-	public static boolean saveAllData() {
-		saveAllProvinces();
-		return true;
+	/**
+	 * Queue a save of all changed provinces
+	 * The save is written soon after, on the save writer thread
+	 */
+	public static void saveAllData() {
+		ProvinceSaveQueue.requestSave();
+	}
+
+	private static File getProvincesDataFile() {
+		return TownyProvinces.getPlugin().getDataFolder().toPath().resolve(FileUtil.DATA_FOLDER_PATH).resolve(BinaryProvinceFile.FILE_NAME).toFile();
 	}
-	
-	private static void saveAllProvinces() {
-		TownyProvinces.info("Now Saving Provinces");
-		//Delete existing files
-		List<File> provinceFiles = FileUtil.readListOfFiles(FileUtil.PROVINCES_FOLDER_PATH);
-		for (File file : provinceFiles) {
-			file.delete();
+
+	private static File getProvinceJournalFile() {
+		return TownyProvinces.getPlugin().getDataFolder().toPath().resolve(FileUtil.DATA_FOLDER_PATH).resolve(ProvinceJournal.FILE_NAME).toFile();
+	}
+
+	private static File getProvinceGridFile() {
+		return TownyProvinces.getPlugin().getDataFolder().toPath().resolve(FileUtil.DATA_FOLDER_PATH).resolve(ProvinceGridFile.FILE_NAME).toFile();
+	}
+
+	private static File getProvinceShardsFolder() {
+		return TownyProvinces.getPlugin().getDataFolder().toPath().resolve(FileUtil.PROVINCE_SHARDS_FOLDER_PATH).toFile();
+	}
+
+	/**
+	 * Save all provinces
+	 * 
+	 * Only the changes since the last save are written:
+	 * - Provinces with dirty metadata get their record rewritten in place.
+	 * - Provinces whose published coords are not the same object as last time get a new coords section.
+	 * - In the grid file, only the rows covered by those provinces are rewritten.
+	 * - Only the region shards containing changed provinces are rewritten.
+	 * If provinces were added or deleted, or most of the map changed, the province and grid files are rewritten in full.
+	 * 
+	 * Crash safety:
+	 * - Full rewrites are written to a temporary file, then atomically renamed.
+	 * - Incremental updates of the province file go through the journal.
+	 * - The grid file is invalidated while it is updated, so it is rebuilt if the update does not finish.
+	 * 
+	 * The published index is copied before every geometry change,
+	 * so if it is the same object as last time, the geometry has not changed.
+	 */
+	static synchronized boolean saveAllProvinces() {
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		File provincesDataFile = getProvincesDataFile();
+		File gridFile = getProvinceGridFile();
+		boolean gridFileEnabled = TownyProvincesSettings.isMemoryMappedGridLoadingEnabled();
+		BinaryProvinceFile.Layout layout = savedLayout;
+		savedLayout = null;  //If the save fails, the next save will be a full rewrite
+		try {
+			boolean geometryChanged = snapshot.getCoordProvinceIndex() != savedCoordProvinceIndex;
+			if(geometryChanged) {
+				geometryId = BinaryProvinceFile.generateId();
+			}
+			List<Integer> provincesWithChangedCoords = null;
+			if(layout != null && provincesDataFile.exists() && layout.hasSameProvinces(snapshot.getProvinces())) {
+				provincesWithChangedCoords = layout.findProvincesWithChangedCoords(snapshot);
+				if(layout.isRewriteDue(layout.getNumBytesInCoordsSections(provincesWithChangedCoords))) {
+					provincesWithChangedCoords = null;
+				}
+			}
+			if(provincesWithChangedCoords == null) {
+				//Full rewrite
+				TownyProvinces.info("Now Saving Provinces");
+				layout = BinaryProvinceFile.writeProvinces(provincesDataFile, new ArrayList<>(snapshot.getProvinces()), snapshot, geometryId);
+				ProvinceJournal.clear(getProvinceJournalFile());  //Any batches in it were for the old file
+				if(gridFileEnabled && (geometryChanged || !gridFile.exists())) {
+					ProvinceGridFile.writeGrid(gridFile, snapshot.getCoordProvinceIndex(), layout.provinces, geometryId);
+				}
+				TownyProvinces.info("All Provinces Saved");
+			} else {
+				//Incremental update. The old coords are needed to find the grid rows to update, so collect them first
+				List<ProvinceCoords> changedAreas = new ArrayList<>();
+				for(int fileIndex: provincesWithChangedCoords) {
+					changedAreas.add(layout.getSavedCoords(fileIndex));
+					changedAreas.add(snapshot.getCoordsInProvince(layout.provinces.get(fileIndex)));
+				}
+				ProvinceJournal.Batch batch = BinaryProvinceFile.createUpdateBatch(layout, snapshot, provincesWithChangedCoords, geometryId);
+				if(!batch.isEmpty()) {
+					ProvinceJournal.append(getProvinceJournalFile(), layout.fileId, batch);
+					batch.applyTo(provincesDataFile);
+					ProvinceJournal.clear(getProvinceJournalFile());
+				}
+				if(gridFileEnabled && (geometryChanged || !gridFile.exists())) {
+					if(!gridFile.exists() || !ProvinceGridFile.updateGrid(gridFile, snapshot.getCoordProvinceIndex(), layout.provinces, geometryId, changedAreas)) {
+						ProvinceGridFile.writeGrid(gridFile, snapshot.getCoordProvinceIndex(), layout.provinces, geometryId);
+					}
+				}
+			}
+			savedCoordProvinceIndex = snapshot.getCoordProvinceIndex();
+			savedLayout = layout;
+		} catch (IOException e) {
+			TownyProvinces.severe("Problem Saving Provinces. " + e.getMessage());
+			e.printStackTrace();
+			return false;
 		}
-		//Save all provinces
-		for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
-			saveProvince(province);
+		if(TownyProvincesSettings.isRegionShardFilesEnabled()) {
+			try {
+				saveShards(snapshot);
+			} catch (IOException e) {
+				TownyProvinces.severe("Problem Saving Province Shards. " + e.getMessage());
+				e.printStackTrace();
+				return false;
+			}
 		}
-		TownyProvinces.info("All Provinces Saved");
+		return true;
 	}
 
-	public static void saveProvince(Province province) {
-		String folderPath = TownyProvinces.getPlugin().getDataFolder().toPath().resolve(FileUtil.PROVINCES_FOLDER_PATH).toString();
-		String fileName = folderPath + "/" + province.getId() + ".yml";
-		Map<String, String> fileEntries = new HashMap<>();
-		fileEntries.put("home_block", "" + province.getHomeBlock().getX() + "," + province.getHomeBlock().getZ());
-		fileEntries.put("type", "" + province.getType().name());
-		fileEntries.put("is_land_validation_requested", "" + province.isLandValidationRequested());
-		fileEntries.put("new_town_cost_per_chunk", "" + province.getNewTownCost());
-		fileEntries.put("upkeep_town_cost_per_chunk", "" + province.getUpkeepTownCost());
-		fileEntries.put("estimated_proportion_of_good_land", "" + province.getEstimatedProportionOfGoodLand());
-		fileEntries.put("estimated_proportion_of_water", "" + province.getEstimatedProportionOfWater());
-		fileEntries.put("estimated_proportion_of_hot_land", "" + province.getEstimatedProportionOfHotLand());
-		fileEntries.put("estimated_proportion_of_cold_land", "" + province.getEstimatedProportionOfColdLand());
-		fileEntries.put("coords", "" + getCoordsAsWriteableString(province));
-		FileUtil.saveHashMapIntoFile(fileEntries, fileName);
+	/**
+	 * Rewrite the shard files of the regions whose provinces have changed
+	 * 
+	 * On the first save after loading, every shard file is checked instead,
+	 * and only those which are missing, damaged, or out of date are rebuilt.
+	 * Shard files of regions which no longer exist are deleted.
+	 */
+	private static void saveShards(ProvinceMapSnapshot snapshot) throws IOException {
+		File shardsFolder = getProvinceShardsFolder();
+		if(!shardsFolder.exists() && !shardsFolder.mkdirs())
+			throw new IOException("Could not create folder " + FileUtil.PROVINCE_SHARDS_FOLDER_PATH);
+		Map<String, ProvinceShardFile.Shard> previousShards = savedShards;
+		savedShards = null;  //If the save fails, the next save will check every shard file
+		Map<String, ProvinceShardFile.Shard> shards = ProvinceShardFile.createShards(snapshot, TownyProvincesSettings.getOrderedRegionsList());
+		int numShardsWritten = 0;
+		byte[] payload;
+		for(ProvinceShardFile.Shard shard: shards.values()) {
+			if(previousShards != null && shard.hasSameContents(previousShards.get(shard.fileName)))
+				continue;
+			payload = ProvinceShardFile.encodePayload(shard);
+			if(previousShards == null && ProvinceShardFile.isShardFileUpToDate(shardsFolder, shard, payload))
+				continue;
+			ProvinceShardFile.writeShard(shardsFolder, shard, payload);
+			numShardsWritten++;
+		}
+		ProvinceShardFile.deleteOtherShardFiles(shardsFolder, shards.keySet());
+		savedShards = shards;
+		if(previousShards == null && numShardsWritten > 0) {
+			TownyProvinces.info("Rebuilt " + numShardsWritten + " province shards which were missing, damaged or out of date");
+		}
 	}
 
 	/**
+	 * Queue a save of the given province
+	 * 
+	 * Requests are coalesced, and written soon after, on the save writer thread.
+	 * Only the provinces which have changed since the last save are written,
+	 * so a metadata change (e.g. type) does not rewrite any coords.
 	 * 
 	 * @param province province
-	 * @return
 	 */
-	private static String getCoordsAsWriteableString(Province province) {
-		StringBuilder result = new StringBuilder();
-		boolean firstCoord = true;
-		for(TPCoord coord: province.getListOfCoordsInProvince()) {
-			if(firstCoord) {
-				firstCoord = false;
+	public static void saveProvince(Province province) {
+		ProvinceSaveQueue.requestSave(province);
+	}
+
+	private static boolean loadAllProvinces() {
+		TownyProvinces.info("Now Loading Provinces");
+		File provincesDataFile = getProvincesDataFile();
+		List<File> legacyProvinceFiles = FileUtil.readListOfFiles(FileUtil.PROVINCES_FOLDER_PATH);
+		int numCoordsOutsideMap = 0;
+		long loadedGeometryId = BinaryProvinceFile.NO_GEOMETRY_ID;
+		BinaryProvinceFile.Layout loadedLayout = null;
+		boolean saveRequired = false;
+		deleteTempFiles();
+		if(provincesDataFile.exists()) {
+			BinaryProvinceFile.ReadResult readResult = null;
+			try {
+				//Recover from an unclean shutdown, by re-applying any saves which were journaled but may not have been applied
+				int numBatchesReplayed = ProvinceJournal.replay(getProvinceJournalFile(), provincesDataFile, BinaryProvinceFile.readFileId(provincesDataFile));
+				if(numBatchesReplayed > 0) {
+					TownyProvinces.info("Recovered " + numBatchesReplayed + " province saves from " + ProvinceJournal.FILE_NAME);
+				}
+				readResult = loadBinaryProvinces(provincesDataFile);
+			} catch (IOException e) {
+				TownyProvinces.severe("Problem Loading Provinces. " + e.getMessage());
+				e.printStackTrace();
+				if(!ProvinceShardFile.hasShardFiles(getProvinceShardsFolder()))
+					return false;
+			}
+			if(readResult != null) {
+				numCoordsOutsideMap = readResult.numCoordsOutsideMap;
+				loadedGeometryId = readResult.geometryId;
+				loadedLayout = readResult.layout;
+				//If the grid file is needed but missing or out of date, write it now, so the next startup is fast
+				saveRequired = TownyProvincesSettings.isMemoryMappedGridLoadingEnabled() && !readResult.gridFileUpToDate;
 			} else {
-				result.append("|");
+				//The province file is unreadable. Fall back to the shards, and rewrite the province file from them
+				TownyProvincesDataHolder.getInstance().clearAllProvinces();
+				ProvinceShardFile.ReadResult shardsReadResult;
+				try {
+					File movedFile = FileUtil.moveDamagedFileAside(provincesDataFile);
+					TownyProvinces.severe("The unreadable province file has been moved to " + movedFile.getName());
+					shardsReadResult = loadProvinceShards();
+				} catch (IOException e) {
+					TownyProvinces.severe("Problem Loading Province Shards. " + e.getMessage());
+					e.printStackTrace();
+					return false;
+				}
+				numCoordsOutsideMap = shardsReadResult.numCoordsOutsideMap;
+				saveRequired = shardsReadResult.corruptShardFileNames.isEmpty();
 			}
-			result.append(coord.getX()).append(",").append(coord.getZ());
+		} else if(ProvinceShardFile.hasShardFiles(getProvinceShardsFolder())) {
+			//The province file is missing, e.g. only the shards were restored from a backup
+			ProvinceShardFile.ReadResult shardsReadResult;
+			try {
+				shardsReadResult = loadProvinceShards();
+			} catch (IOException e) {
+				TownyProvinces.severe("Problem Loading Province Shards. " + e.getMessage());
+				e.printStackTrace();
+				return false;
+			}
+			numCoordsOutsideMap = shardsReadResult.numCoordsOutsideMap;
+			saveRequired = shardsReadResult.corruptShardFileNames.isEmpty();
+		} else if(!legacyProvinceFiles.isEmpty()) {
+			//One-time migration from the legacy YAML format
+			TownyProvinces.info("Now Migrating " + legacyProvinceFiles.size() + " Province Files To " + BinaryProvinceFile.FILE_NAME);
+			//Read and parse the files in parallel, then add the provinces on this thread
+			List<ParsedLegacyProvince> parsedProvinces = legacyProvinceFiles.parallelStream()
+				.map(DataHandlerUtil::parseLegacyYamlProvince)
+				.collect(Collectors.toList());
+			for(ParsedLegacyProvince parsedProvince: parsedProvinces) {
+				numCoordsOutsideMap += addParsedLegacyProvince(parsedProvince);
+			}
+			saveRequired = true;
+		}
+		if(numCoordsOutsideMap > 0) {
+			TownyProvinces.severe("WARNING: " + numCoordsOutsideMap + " province coords were outside the map area defined by region file 1, and were not loaded.");
+		}
+		//Publish the loaded province map to readers
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		//Record that the saved geometry matches the loaded geometry
+		geometryId = loadedGeometryId;
+		if(loadedGeometryId == BinaryProvinceFile.NO_GEOMETRY_ID) {
+			savedCoordProvinceIndex = null;
+		} else {
+			savedCoordProvinceIndex = TownyProvincesDataHolder.getInstance().getSnapshot().getCoordProvinceIndex();
 		}
-		return  result.toString();
+		if(loadedLayout != null) {
+			loadedLayout.setSavedCoords(TownyProvincesDataHolder.getInstance().getSnapshot());
+		}
+		savedLayout = loadedLayout;
+		savedShards = null;
+		if(!TownyProvincesDataHolder.getInstance().getSnapshot().isGeometryLoaded()) {
+			loadProvinceGeometryInBackground(TownyProvincesDataHolder.getInstance().getSnapshot());
+		}
+		if(saveRequired) {
+			if(!saveAllProvinces())
+				return false;
+			if(!legacyProvinceFiles.isEmpty()) {
+				moveLegacyProvincesFolderToBackup();
+				TownyProvinces.info("Province Migration Complete");
+			}
+		}
+		TownyProvinces.info("All Provinces Loaded");
+		return true;
 	}
 
-	private static void loadAllProvinces() {
-		TownyProvinces.info("Now Loading Provinces");
-		List<File> provinceFiles = FileUtil.readListOfFiles(FileUtil.PROVINCES_FOLDER_PATH);
-		for(File provinceFile: provinceFiles) {
-			loadProvince(provinceFile);
+	/**
+	 * Build the province coords, borders and neighbours of the given snapshot, off the main thread
+	 * Anything which needs them sooner builds them itself, and this task then has nothing to do.
+	 */
+	private static void loadProvinceGeometryInBackground(ProvinceMapSnapshot snapshot) {
+		Bukkit.getScheduler().runTaskAsynchronously(TownyProvinces.getPlugin(), () -> {
+			long startTime = System.currentTimeMillis();
+			snapshot.loadGeometry();
+			TownyProvinces.info("Province geometry loaded in background in " + (System.currentTimeMillis() - startTime) + "ms");
+		});
+	}
+
+	/**
+	 * Delete any temporary files left by a save which did not finish.
+	 * The files they were going to replace are still intact.
+	 */
+	private static void deleteTempFiles() {
+		List<File> tempFiles = new ArrayList<>();
+		tempFiles.add(FileUtil.getTempFile(getProvincesDataFile()));
+		tempFiles.add(FileUtil.getTempFile(getProvinceGridFile()));
+		File[] shardsFolderFiles = getProvinceShardsFolder().listFiles();
+		if(shardsFolderFiles != null) {
+			for(File file: shardsFolderFiles) {
+				if(file.getName().endsWith(FileUtil.TEMP_FILE_EXTENSION)) {
+					tempFiles.add(file);
+				}
+			}
+		}
+		for(File tempFile: tempFiles) {
+			if(tempFile.exists() && !tempFile.delete()) {
+				TownyProvinces.severe("Could not delete temporary file " + tempFile.getName());
+			}
 		}
-		TownyProvinces.info("All Provinces Loaded");
 	}
 
-	public static void loadProvince(File provinceFile) {
+	/**
+	 * Load provinces from the shard files
+	 * Used if the province file is missing or unreadable
+	 * 
+	 * Damaged shards are moved aside, so that later saves do not overwrite them.
+	 * If any shards are damaged, or were moved aside on an earlier startup and not replaced since,
+	 * the loaded map is missing their provinces. So it should not be saved automatically,
+	 * as that would replace the saved files with the incomplete map.
+	 * 
+	 * @return the result. The damaged shards include any which were moved aside earlier
+	 */
+	private static ProvinceShardFile.ReadResult loadProvinceShards() throws IOException {
+		TownyProvinces.info("Now Loading Provinces From " + FileUtil.PROVINCE_SHARDS_FOLDER_PATH);
+		File shardsFolder = getProvinceShardsFolder();
+		ProvinceShardFile.ReadResult readResult = ProvinceShardFile.readShards(shardsFolder);
+		for(String fileName: readResult.corruptShardFileNames) {
+			File movedFile = FileUtil.moveDamagedFileAside(new File(shardsFolder, fileName));
+			TownyProvinces.severe("WARNING: Province shard " + fileName + " is damaged, and was not loaded. It has been moved to " + movedFile.getName() + ".");
+		}
+		readResult.corruptShardFileNames.clear();
+		readResult.corruptShardFileNames.addAll(ProvinceShardFile.findDamagedShardFileNames(shardsFolder));
+		TownyProvinces.info(readResult.provinces.size() + " provinces loaded from shards");
+		if(!readResult.corruptShardFileNames.isEmpty()) {
+			TownyProvinces.severe("WARNING: The provinces in damaged shards " + readResult.corruptShardFileNames + " are missing, so the loaded province map was not saved. "
+				+ "Restore the shards from a backup and restart, or regenerate their regions, which saves the map as usual.");
+		}
+		return readResult;
+	}
+
+	/**
+	 * Load provinces from the binary files
+	 * 
+	 * If enabled, and the grid file matches the province file,
+	 * the province coords are taken from the memory-mapped grid file.
+	 * Otherwise they are decoded from the province file.
+	 * 
+	 * If lazy geometry loading is also enabled, only the grid is loaded.
+	 * The coord list of each province is built later, see loadProvinceGeometryInBackground().
+	 * 
+	 * @return the read result
+	 */
+	private static BinaryProvinceFile.ReadResult loadBinaryProvinces(File provincesDataFile) throws IOException {
+		File gridFile = getProvinceGridFile();
+		boolean useGridFile = TownyProvincesSettings.isMemoryMappedGridLoadingEnabled() && gridFile.exists();
+		BinaryProvinceFile.ReadResult readResult = BinaryProvinceFile.readProvinces(provincesDataFile, !useGridFile);
+		if(readResult.coordsLoaded)
+			return readResult;
+		int numCoordsOutsideMap = ProvinceGridFile.loadGrid(gridFile, readResult.provinces, readResult.geometryId, TownyProvincesSettings.isLazyProvinceGeometryLoadingEnabled());
+		if(numCoordsOutsideMap != ProvinceGridFile.GRID_OUT_OF_DATE) {
+			TownyProvinces.info("Province coords loaded from " + ProvinceGridFile.FILE_NAME);
+			readResult.numCoordsOutsideMap = numCoordsOutsideMap;
+			readResult.gridFileUpToDate = true;
+			return readResult;
+		}
+		//Grid file is out of date. Load again, with coords
+		TownyProvinces.info(ProvinceGridFile.FILE_NAME + " is out of date. Loading coords from " + BinaryProvinceFile.FILE_NAME);
+		TownyProvincesDataHolder.getInstance().clearAllProvinces();
+		return BinaryProvinceFile.readProvinces(provincesDataFile, true);
+	}
+
+	/**
+	 * Move the legacy YAML provinces folder aside, so it is not migrated again,
+	 * and leave an empty provinces folder in its place.
+	 */
+	private static void moveLegacyProvincesFolderToBackup() {
+		Path dataFolderPath = TownyProvinces.getPlugin().getDataFolder().toPath();
+		Path legacyFolderPath = dataFolderPath.resolve(FileUtil.PROVINCES_FOLDER_PATH);
+		Path backupFolderPath = dataFolderPath.resolve(FileUtil.LEGACY_PROVINCES_BACKUP_FOLDER_PATH);
+		try {
+			Files.move(legacyFolderPath, backupFolderPath);
+			TownyProvinces.info("Legacy province files moved to " + FileUtil.LEGACY_PROVINCES_BACKUP_FOLDER_PATH);
+		} catch (IOException e) {
+			TownyProvinces.severe("Could not move legacy province files to " + FileUtil.LEGACY_PROVINCES_BACKUP_FOLDER_PATH + ". They will be ignored, because " + BinaryProvinceFile.FILE_NAME + " now exists. " + e.getMessage());
+		}
+		FileUtil.createFolderIfRequired(FileUtil.PROVINCES_FOLDER_PATH);
+	}
+
+	/**
+	 * A province read from a legacy YAML file, which has not been added to the data holder yet
+	 */
+	private static class ParsedLegacyProvince {
+		private final Province province;
+		private final long[] packedCoords;
+		private final int numCoords;
+
+		private ParsedLegacyProvince(Province province, long[] packedCoords, int numCoords) {
+			this.province = province;
+			this.packedCoords = packedCoords;
+			this.numCoords = numCoords;
+		}
+	}
+
+	/**
+	 * Read a province from a legacy YAML file
+	 * 
+	 * Does not touch the data holder, so many files can be parsed at the same time.
+	 * 
+	 * @param provinceFile the province file
+	 * @return the parsed province
+	 */
+	private static ParsedLegacyProvince parseLegacyYamlProvince(File provinceFile) {
 		//Read values from province file
 		Map<String,String> fileEntries = FileMgmt.loadFileIntoHashMap(provinceFile);
 		TPCoord homeBlock = unpackCoord(fileEntries.get("home_block"));
@@ -125,33 +460,126 @@ DataHandlerUtil {
 		if(fileEntries.containsKey("estimated_proportion_of_cold_land")) {
 			province.setEstimatedProportionOfColdLand(Double.parseDouble(fileEntries.get("estimated_proportion_of_cold_land")));
 		}
+		String coordsAsString = fileEntries.get("coords");
+		long[] packedCoords = new long[estimateNumPackedCoords(coordsAsString)];
+		int numCoords = unpackCoords(coordsAsString, packedCoords);
+		return new ParsedLegacyProvince(province, packedCoords, numCoords);
+	}
+
+	/**
+	 * Add a parsed legacy province to the data holder
+	 * 
+	 * @param parsedProvince the parsed province
+	 * @return the number of province coords which could not be loaded because they were outside the map
+	 */
+	private static int addParsedLegacyProvince(ParsedLegacyProvince parsedProvince) {
+		Province province = parsedProvince.province;
 		//Add province to provinces set
 		TownyProvincesDataHolder.getInstance().addProvince(province);
-		//Add coords to coord-province map
-		Set<TPCoord> coords = unpackCoords(fileEntries.get("coords"));
-		for(TPCoord coord: coords) {
-			TownyProvincesDataHolder.getInstance().getCoordProvinceMap().put(coord, province);
+		//Add coords to coord-province grid
+		int numCoordsOutsideMap = 0;
+		for(int i = 0; i < parsedProvince.numCoords; i++) {
+			long packedCoord = parsedProvince.packedCoords[i];
+			if(!TownyProvincesDataHolder.getInstance().claimCoordForProvince(CoordUtil.unpackX(packedCoord), CoordUtil.unpackZ(packedCoord), province)) {
+				numCoordsOutsideMap++;
+			}
 		}
+		return numCoordsOutsideMap;
 	}
 
-	private static Set<TPCoord> unpackCoords(String allCoordsAsString) {
-		Set<TPCoord> result = new HashSet<>();
-		if(allCoordsAsString.length() > 0) {
-			String[] allCoordsAsArray = allCoordsAsString.split("\\|");
-			TPCoord coord;
-			for (String coordAsString : allCoordsAsArray) {
-				coord = unpackCoord(coordAsString);
-				result.add(coord);
+	/**
+	 * Count the coords in a legacy coords string (format "x,z|x,z|...")
+	 * Used to size the array for unpackCoords, so the string is only scanned for separators once
+	 */
+	private static int estimateNumPackedCoords(String allCoordsAsString) {
+		int result = allCoordsAsString.isEmpty() ? 0 : 1;
+		for (int i = 0; i < allCoordsAsString.length(); i++) {
+			if (allCoordsAsString.charAt(i) == '|') {
+				result++;
 			}
 		}
 		return result;
 	}
-	
+
+	/**
+	 * Parse a legacy coords string (format "x,z|x,z|...") into packed coords
+	 * 
+	 * The digits are read straight from the string, so no substrings or coord objects are created,
+	 * even when the string is megabytes long.
+	 * Empty entries (e.g. a trailing '|') are skipped, as String.split used to do.
+	 * 
+	 * @param allCoordsAsString the coords string
+	 * @param destination the array to write the packed coords into. Must be at least estimateNumPackedCoords long
+	 * @return the number of coords written
+	 * @throws NumberFormatException if the string is not in the expected format
+	 */
+	private static int unpackCoords(String allCoordsAsString, long[] destination) {
+		int numCoords = 0;
+		int length = allCoordsAsString.length();
+		int position = 0;
+		while (position < length) {
+			if (allCoordsAsString.charAt(position) == '|') {
+				position++;
+				continue;
+			}
+			int xEnd = findNumberEnd(allCoordsAsString, position);
+			if (xEnd >= length || allCoordsAsString.charAt(xEnd) != ',')
+				throw new NumberFormatException("Invalid coord at position " + position + " in coords string");
+			int x = parseInt(allCoordsAsString, position, xEnd);
+			int zEnd = findNumberEnd(allCoordsAsString, xEnd + 1);
+			if (zEnd < length && allCoordsAsString.charAt(zEnd) != '|')
+				throw new NumberFormatException("Invalid coord at position " + position + " in coords string");
+			int z = parseInt(allCoordsAsString, xEnd + 1, zEnd);
+			if (numCoords == destination.length)
+				throw new NumberFormatException("Too many coords in coords string");
+			destination[numCoords++] = CoordUtil.packCoord(x, z);
+			position = zEnd;
+		}
+		return numCoords;
+	}
+
+	private static int findNumberEnd(String string, int start) {
+		int end = start;
+		while (end < string.length() && string.charAt(end) != ',' && string.charAt(end) != '|') {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Parse an int from part of a string, accepting the same input as Integer.parseInt
+	 */
+	private static int parseInt(String string, int start, int end) {
+		if (start >= end)
+			throw new NumberFormatException("Empty number at position " + start + " in coords string");
+		boolean negative = false;
+		int position = start;
+		char firstChar = string.charAt(position);
+		if (firstChar == '-' || firstChar == '+') {
+			negative = firstChar == '-';
+			position++;
+			if (position == end)
+				throw new NumberFormatException("Invalid number at position " + start + " in coords string");
+		}
+		//Accumulate negatively, so Integer.MIN_VALUE can be parsed
+		long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		long result = 0;
+		for (; position < end; position++) {
+			int digit = Character.digit(string.charAt(position), 10);
+			if (digit < 0)
+				throw new NumberFormatException("Invalid number at position " + start + " in coords string");
+			result = (result * 10) - digit;
+			if (result < limit)
+				throw new NumberFormatException("Number out of range at position " + start + " in coords string");
+		}
+		return (int) (negative ? result : -result);
+	}
+
 	private static TPCoord unpackCoord(String coordAsString) {
-		String[] coordAsArray = coordAsString.split(",");
-		int x = Integer.parseInt(coordAsArray[0]);
-		int z = Integer.parseInt(coordAsArray[1]);
-		return new TPFinalCoord(x,z);
+		long[] packedCoord = new long[1];
+		if (unpackCoords(coordAsString, packedCoord) != 1)
+			throw new NumberFormatException("Invalid coord: " + coordAsString);
+		return TPFinalCoord.of(CoordUtil.unpackX(packedCoord[0]), CoordUtil.unpackZ(packedCoord[0]));
 	}
 
 }
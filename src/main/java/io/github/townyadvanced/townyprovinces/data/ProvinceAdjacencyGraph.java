@@ -0,0 +1,237 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Province adjacency graph
+ *
+ * Two provinces are neighbours if they share a border coord
+ * (an unclaimed coord adjacent to both provinces),
+ * or if any of their coords are directly adjacent.
+ *
+ * For each pair of neighbours, the shared border coords are also recorded.
+ * The border coords of each province are cached too, for drawing borders on the map.
+ *
+ * Graphs are immutable, and are published as part of the province map snapshot.
+ * When the map changes, a new graph is created,
+ * recalculating only the provinces which changed, and their neighbours.
+ */
+public class ProvinceAdjacencyGraph {
+
+	public static final ProvinceAdjacencyGraph EMPTY = new ProvinceAdjacencyGraph(Collections.emptyMap(), Collections.emptyMap());
+	private static final int[] ADJACENT_OFFSETS_X = new int[]{-1,0,1,-1,1,-1,0,1};
+	private static final int[] ADJACENT_OFFSETS_Z = new int[]{-1,-1,-1,0,0,1,1,1};
+
+	//Province -> (Neighbouring province -> Shared border coords)
+	private final Map<Province, Map<Province, ProvinceCoords>> neighbourMap;
+	//Province -> Border coords (unclaimed coords adjacent to the province)
+	private final Map<Province, ProvinceCoords> borderCoordsMap;
+
+	private ProvinceAdjacencyGraph(Map<Province, Map<Province, ProvinceCoords>> neighbourMap, Map<Province, ProvinceCoords> borderCoordsMap) {
+		this.neighbourMap = neighbourMap;
+		this.borderCoordsMap = borderCoordsMap;
+	}
+
+	/**
+	 * Get the border coords of the given province
+	 * 
+	 * Note that these coords do not actually belong to the province
+	 * 
+	 * @return the border coords, sorted and immutable
+	 */
+	public ProvinceCoords getBorderCoords(Province province) {
+		ProvinceCoords result = borderCoordsMap.get(province);
+		return result == null ? ProvinceCoords.EMPTY : result;
+	}
+
+	/**
+	 * @return unmodifiable set of the neighbouring provinces
+	 */
+	public Set<Province> getNeighbours(Province province) {
+		Map<Province, ProvinceCoords> neighbours = neighbourMap.get(province);
+		return neighbours == null ? Collections.emptySet() : neighbours.keySet();
+	}
+
+	public int getNumNeighbours(Province province) {
+		Map<Province, ProvinceCoords> neighbours = neighbourMap.get(province);
+		return neighbours == null ? 0 : neighbours.size();
+	}
+
+	public boolean areNeighbours(Province province, Province otherProvince) {
+		Map<Province, ProvinceCoords> neighbours = neighbourMap.get(province);
+		return neighbours != null && neighbours.containsKey(otherProvince);
+	}
+
+	/**
+	 * Get the border coords shared by the given provinces
+	 *
+	 * @return the shared border coords. Empty if the provinces are not neighbours, or are only directly adjacent
+	 */
+	public ProvinceCoords getSharedBorderCoords(Province province, Province otherProvince) {
+		Map<Province, ProvinceCoords> neighbours = neighbourMap.get(province);
+		if(neighbours == null)
+			return ProvinceCoords.EMPTY;
+		ProvinceCoords result = neighbours.get(otherProvince);
+		return result == null ? ProvinceCoords.EMPTY : result;
+	}
+
+	/**
+	 * Build a new graph for the given map
+	 *
+	 * @param provinces all provinces on the map
+	 * @param coordsInProvinceMap frozen coords of the provinces
+	 * @param coordProvinceIndex index of the map
+	 * @return the new graph
+	 */
+	static ProvinceAdjacencyGraph build(Set<Province> provinces, Map<Province, ProvinceCoords> coordsInProvinceMap, CoordProvinceIndex coordProvinceIndex) {
+		return update(EMPTY, provinces, provinces, coordsInProvinceMap, coordProvinceIndex);
+	}
+
+	/**
+	 * Create a new graph from the previous one, after some provinces have changed
+	 *
+	 * Rows and border coords are recalculated for the changed provinces, and for their old and new neighbours,
+	 * because only those provinces can have gained or lost border coords.
+	 * All other rows and border coords are reused.
+	 *
+	 * @param previousGraph the previous graph
+	 * @param provinces all provinces on the map
+	 * @param changedProvinces provinces which were added, deleted, or had their coords changed
+	 * @param coordsInProvinceMap frozen coords of the provinces
+	 * @param coordProvinceIndex index of the map
+	 * @return the new graph
+	 */
+	static ProvinceAdjacencyGraph update(ProvinceAdjacencyGraph previousGraph, Set<Province> provinces, Set<Province> changedProvinces, Map<Province, ProvinceCoords> coordsInProvinceMap, CoordProvinceIndex coordProvinceIndex) {
+		//Recalculate the rows of changed provinces, and find the affected provinces
+		Set<Province> affectedProvinces = new HashSet<>();
+		Map<Province, Map<Province, ProvinceCoords>> recalculatedRows = new HashMap<>();
+		Map<Province, ProvinceCoords> newBorderCoordsMap = new HashMap<>();
+		Map<Province, ProvinceCoords> row;
+		for(Province province: changedProvinces) {
+			affectedProvinces.add(province);
+			affectedProvinces.addAll(previousGraph.getNeighbours(province));
+			if(provinces.contains(province)) {
+				row = calculateRow(province, coordsInProvinceMap.get(province), coordProvinceIndex, newBorderCoordsMap);
+				recalculatedRows.put(province, row);
+				affectedProvinces.addAll(row.keySet());
+			}
+		}
+		for(Province province: affectedProvinces) {
+			if(provinces.contains(province) && !recalculatedRows.containsKey(province)) {
+				recalculatedRows.put(province, calculateRow(province, coordsInProvinceMap.get(province), coordProvinceIndex, newBorderCoordsMap));
+			}
+		}
+
+		//Find which unaffected provinces are mentioned in recalculated rows
+		Map<Province, List<Province>> mentionsMap = new HashMap<>();
+		for(Map.Entry<Province, Map<Province, ProvinceCoords>> rowEntry: recalculatedRows.entrySet()) {
+			for(Province neighbour: rowEntry.getValue().keySet()) {
+				if(!recalculatedRows.containsKey(neighbour)) {
+					mentionsMap.computeIfAbsent(neighbour, k -> new ArrayList<>()).add(rowEntry.getKey());
+				}
+			}
+		}
+
+		//Assemble the new graph
+		Map<Province, Map<Province, ProvinceCoords>> newNeighbourMap = new HashMap<>();
+		Map<Province, ProvinceCoords> previousRow;
+		List<Province> mentions;
+		for(Province province: provinces) {
+			row = recalculatedRows.get(province);
+			if(row != null) {
+				if(!row.isEmpty()) {
+					newNeighbourMap.put(province, Collections.unmodifiableMap(row));
+				}
+				continue;
+			}
+			if(previousGraph.borderCoordsMap.containsKey(province)) {
+				newBorderCoordsMap.put(province, previousGraph.borderCoordsMap.get(province));
+			}
+			previousRow = previousGraph.neighbourMap.get(province);
+			mentions = mentionsMap.get(province);
+			if(mentions == null && (previousRow == null || Collections.disjoint(previousRow.keySet(), affectedProvinces))) {
+				//Unaffected
+				if(previousRow != null) {
+					newNeighbourMap.put(province, previousRow);
+				}
+				continue;
+			}
+			//Replace the entries for affected provinces
+			row = new HashMap<>();
+			if(previousRow != null) {
+				for(Map.Entry<Province, ProvinceCoords> neighbourEntry: previousRow.entrySet()) {
+					if(!affectedProvinces.contains(neighbourEntry.getKey())) {
+						row.put(neighbourEntry.getKey(), neighbourEntry.getValue());
+					}
+				}
+			}
+			if(mentions != null) {
+				for(Province neighbour: mentions) {
+					row.put(neighbour, recalculatedRows.get(neighbour).get(province));
+				}
+			}
+			if(!row.isEmpty()) {
+				newNeighbourMap.put(province, Collections.unmodifiableMap(row));
+			}
+		}
+		return new ProvinceAdjacencyGraph(newNeighbourMap, newBorderCoordsMap);
+	}
+
+	/**
+	 * Find the neighbours of the given province, and the border coords shared with each
+	 * 
+	 * @param borderCoordsMap map to put the border coords of the province into
+	 */
+	private static Map<Province, ProvinceCoords> calculateRow(Province province, @Nullable ProvinceCoords coordsInProvince, CoordProvinceIndex coordProvinceIndex, Map<Province, ProvinceCoords> borderCoordsMap) {
+		Map<Province, ProvinceCoords> result = new HashMap<>();
+		if(coordsInProvince == null || coordsInProvince.isEmpty())
+			return result;
+		//Find border coords, and directly adjacent provinces
+		CoordSet borderCoords = new CoordSet();
+		Map<Province, CoordSet> sharedBorderCoordsMap = new HashMap<>();
+		int x;
+		int z;
+		Province adjacentProvince;
+		for(int i = 0; i < coordsInProvince.size(); i++) {
+			for(int j = 0; j < ADJACENT_OFFSETS_X.length; j++) {
+				x = coordsInProvince.getX(i) + ADJACENT_OFFSETS_X[j];
+				z = coordsInProvince.getZ(i) + ADJACENT_OFFSETS_Z[j];
+				adjacentProvince = coordProvinceIndex.getProvince(x, z);
+				if(adjacentProvince == null) {
+					borderCoords.add(x, z);
+				} else if (!adjacentProvince.equals(province)) {
+					sharedBorderCoordsMap.computeIfAbsent(adjacentProvince, k -> new CoordSet());
+				}
+			}
+		}
+		borderCoordsMap.put(province, ProvinceCoords.createFrozenCopy(borderCoords));
+		//Find which other provinces are adjacent to each border coord
+		long[] packedBorderCoords = borderCoords.toPackedArray(new long[borderCoords.size()]);
+		int borderX;
+		int borderZ;
+		for(int i = 0; i < borderCoords.size(); i++) {
+			borderX = CoordUtil.unpackX(packedBorderCoords[i]);
+			borderZ = CoordUtil.unpackZ(packedBorderCoords[i]);
+			for(int j = 0; j < ADJACENT_OFFSETS_X.length; j++) {
+				adjacentProvince = coordProvinceIndex.getProvince(borderX + ADJACENT_OFFSETS_X[j], borderZ + ADJACENT_OFFSETS_Z[j]);
+				if(adjacentProvince != null && !adjacentProvince.equals(province)) {
+					sharedBorderCoordsMap.computeIfAbsent(adjacentProvince, k -> new CoordSet()).add(borderX, borderZ);
+				}
+			}
+		}
+		for(Map.Entry<Province, CoordSet> mapEntry: sharedBorderCoordsMap.entrySet()) {
+			result.put(mapEntry.getKey(), ProvinceCoords.createFrozenCopy(mapEntry.getValue()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,174 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+
+import java.util.Arrays;
+
+/**
+ * The coords in a province, stored as packed longs (see CoordUtil)
+ * 
+ * This uses about 8 bytes per coord,
+ * and supports iteration, size, containment and random sampling without creating any objects.
+ * 
+ * Example iteration:
+ *   for (int i = 0; i < coords.size(); i++) {
+ *       int x = coords.getX(i);
+ *       int z = coords.getZ(i);
+ *   }
+ *
+ * Working copies can be added to.
+ * Frozen copies (e.g. those in a published snapshot) are sorted, immutable, and safe to share between threads.
+ * Frozen copies also know their bounding box.
+ */
+public class ProvinceCoords {
+
+	public static final ProvinceCoords EMPTY = new ProvinceCoords(new long[0], 0, true);
+
+	private long[] packedCoords;
+	private int size;
+	private final boolean frozen;  //If true, the coords are sorted and cannot be changed
+	//Bounding box. Only set on frozen copies. If there are no coords, min is greater than max
+	private int minX = Integer.MAX_VALUE;
+	private int maxX = Integer.MIN_VALUE;
+	private int minZ = Integer.MAX_VALUE;
+	private int maxZ = Integer.MIN_VALUE;
+
+	public ProvinceCoords() {
+		this(new long[16], 0, false);
+	}
+
+	private ProvinceCoords(long[] packedCoords, int size, boolean frozen) {
+		this.packedCoords = packedCoords;
+		this.size = size;
+		this.frozen = frozen;
+		if (frozen) {
+			calculateBoundingBox();
+		}
+	}
+
+	private void calculateBoundingBox() {
+		int x;
+		int z;
+		for (int i = 0; i < size; i++) {
+			x = CoordUtil.unpackX(packedCoords[i]);
+			z = CoordUtil.unpackZ(packedCoords[i]);
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minZ = Math.min(minZ, z);
+			maxZ = Math.max(maxZ, z);
+		}
+	}
+
+	public void add(int x, int z) {
+		if (frozen)
+			throw new IllegalStateException("Frozen province coords cannot be modified");
+		if (size == packedCoords.length) {
+			packedCoords = Arrays.copyOf(packedCoords, Math.max(16, packedCoords.length * 2));
+		}
+		packedCoords[size++] = CoordUtil.packCoord(x, z);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long getPackedCoord(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		return packedCoords[index];
+	}
+
+	public int getX(int index) {
+		return CoordUtil.unpackX(getPackedCoord(index));
+	}
+
+	public int getZ(int index) {
+		return CoordUtil.unpackZ(getPackedCoord(index));
+	}
+
+	/**
+	 * Check if the province contains the given coord.
+	 * This is a binary search on frozen copies, and a linear scan on working copies.
+	 */
+	public boolean contains(int x, int z) {
+		long packedCoord = CoordUtil.packCoord(x, z);
+		if (frozen)
+			return Arrays.binarySearch(packedCoords, 0, size, packedCoord) >= 0;
+		for (int i = 0; i < size; i++) {
+			if (packedCoords[i] == packedCoord)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if any of the coords are in the given area.
+	 * Uses the bounding box first, so this is usually quick on frozen copies.
+	 */
+	public boolean isAnyCoordInArea(int areaMinX, int areaMaxX, int areaMinZ, int areaMaxZ) {
+		if (frozen) {
+			if (minX > areaMaxX || maxX < areaMinX || minZ > areaMaxZ || maxZ < areaMinZ)
+				return false;
+			if (minX >= areaMinX && maxX <= areaMaxX && minZ >= areaMinZ && maxZ <= areaMaxZ)
+				return size > 0;
+		}
+		int x;
+		int z;
+		for (int i = 0; i < size; i++) {
+			x = CoordUtil.unpackX(packedCoords[i]);
+			z = CoordUtil.unpackZ(packedCoords[i]);
+			if (x >= areaMinX && x <= areaMaxX && z >= areaMinZ && z <= areaMaxZ)
+				return true;
+		}
+		return false;
+	}
+
+	public int getMinX() {
+		return minX;
+	}
+
+	public int getMaxX() {
+		return maxX;
+	}
+
+	public int getMinZ() {
+		return minZ;
+	}
+
+	public int getMaxZ() {
+		return maxZ;
+	}
+
+	/**
+	 * @return a sorted, immutable copy, trimmed to size
+	 */
+	public ProvinceCoords createFrozenCopy() {
+		if (frozen)
+			return this;
+		long[] copy = Arrays.copyOf(packedCoords, size);
+		Arrays.sort(copy);
+		return new ProvinceCoords(copy, size, true);
+	}
+
+	/**
+	 * @return a sorted, immutable copy of the coords in the given set
+	 */
+	static ProvinceCoords createFrozenCopy(CoordSet coordSet) {
+		if (coordSet.isEmpty())
+			return EMPTY;
+		long[] copy = coordSet.toPackedArray(new long[coordSet.size()]);
+		Arrays.sort(copy);
+		return new ProvinceCoords(copy, copy.length, true);
+	}
+
+	/**
+	 * @return a working copy, which can be added to
+	 */
+	public ProvinceCoords createWorkingCopy() {
+		return new ProvinceCoords(Arrays.copyOf(packedCoords, Math.max(16, size)), size, false);
+	}
+}
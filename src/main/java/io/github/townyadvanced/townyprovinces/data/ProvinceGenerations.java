@@ -0,0 +1,234 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import com.palmergames.util.FileMgmt;
+import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+import io.github.townyadvanced.townyprovinces.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Previous generations of the province map, kept so that a bad regeneration can be undone
+ *
+ * Before each region regeneration, and before each rollback, the published province map is saved as a new generation.
+ * Each generation is a numbered folder in data/generations, holding one shard file per region (see ProvinceShardFile),
+ * so it is compressed and checksummed. A generation is never modified after it is written.
+ * Only the most recent generations are kept.
+ *
+ * Rolling back loads a generation straight into the data holder, so the painting algorithm is not run again.
+ */
+public class ProvinceGenerations {
+
+	private static final String INFO_FILE_NAME = "generation.yml";
+	public static final int NO_GENERATION = 0;
+	public static final int GENERATION_FAILED = -1;
+
+	/**
+	 * Summary of a saved generation
+	 */
+	public static class GenerationInfo {
+		private final int number;
+		private final long createdMillis;
+		private final String description;
+		private final int numProvinces;
+
+		private GenerationInfo(int number, long createdMillis, String description, int numProvinces) {
+			this.number = number;
+			this.createdMillis = createdMillis;
+			this.description = description;
+			this.numProvinces = numProvinces;
+		}
+
+		public int getNumber() {
+			return number;
+		}
+
+		public long getCreatedMillis() {
+			return createdMillis;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public int getNumProvinces() {
+			return numProvinces;
+		}
+	}
+
+	private static File getGenerationsFolder() {
+		return TownyProvinces.getPlugin().getDataFolder().toPath().resolve(FileUtil.GENERATIONS_FOLDER_PATH).toFile();
+	}
+
+	private static File getGenerationFolder(int number) {
+		return new File(getGenerationsFolder(), Integer.toString(number));
+	}
+
+	/**
+	 * Save the given province map as a new generation, then delete any generations beyond the configured number
+	 *
+	 * Nothing is saved if the map has no provinces, or if no generations are to be kept.
+	 * If the generation cannot be written, callers should not change the province map,
+	 * as the change could not be rolled back.
+	 *
+	 * @param snapshot the province map
+	 * @param description what the generation is, e.g. what is about to be done to it
+	 * @return the number of the new generation, NO_GENERATION if none was needed, or GENERATION_FAILED if it could not be written
+	 */
+	public static synchronized int createGeneration(ProvinceMapSnapshot snapshot, String description) {
+		int numGenerationsToKeep = TownyProvincesSettings.getNumGenerationsToKeep();
+		if(numGenerationsToKeep <= 0 || snapshot.getProvinces().isEmpty())
+			return NO_GENERATION;
+		File generationsFolder = getGenerationsFolder();
+		List<Integer> generationNumbers = getGenerationNumbers();
+		int number = generationNumbers.isEmpty() ? 1 : generationNumbers.get(0) + 1;
+		File tempFolder = new File(generationsFolder, number + FileUtil.TEMP_FILE_EXTENSION);
+		try {
+			//Write the generation into a temporary folder, then rename it, so a generation is either complete or absent
+			deleteFolder(tempFolder);
+			if(!tempFolder.mkdirs())
+				throw new IOException("Could not create folder " + tempFolder.getName());
+			for(ProvinceShardFile.Shard shard: ProvinceShardFile.createShards(snapshot, TownyProvincesSettings.getOrderedRegionsList()).values()) {
+				ProvinceShardFile.writeShard(tempFolder, shard);
+			}
+			Map<String, String> infoEntries = new HashMap<>();
+			infoEntries.put("created", Long.toString(System.currentTimeMillis()));
+			infoEntries.put("description", description);
+			infoEntries.put("num_provinces", Integer.toString(snapshot.getProvinces().size()));
+			FileUtil.saveHashMapIntoFile(infoEntries, new File(tempFolder, INFO_FILE_NAME).getPath());
+			Files.move(tempFolder.toPath(), getGenerationFolder(number).toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			TownyProvinces.severe("Problem Saving Province Generation. " + e.getMessage());
+			e.printStackTrace();
+			return GENERATION_FAILED;
+		}
+		TownyProvinces.info("Province map saved as generation " + number);
+		//Delete old generations
+		generationNumbers = getGenerationNumbers();
+		for(int i = numGenerationsToKeep; i < generationNumbers.size(); i++) {
+			try {
+				deleteFolder(getGenerationFolder(generationNumbers.get(i)));
+			} catch (IOException e) {
+				TownyProvinces.severe("Problem Deleting Old Province Generation. " + e.getMessage());
+			}
+		}
+		return number;
+	}
+
+	/**
+	 * @return the numbers of the saved generations, newest first
+	 */
+	public static List<Integer> getGenerationNumbers() {
+		List<Integer> result = new ArrayList<>();
+		File[] files = getGenerationsFolder().listFiles();
+		if(files == null)
+			return result;
+		for(File file: files) {
+			if(!file.isDirectory())
+				continue;
+			try {
+				result.add(Integer.parseInt(file.getName()));
+			} catch (NumberFormatException e) {
+				//Not a generation, e.g. a temporary folder left by a save which did not finish
+			}
+		}
+		result.sort(Collections.reverseOrder());
+		return result;
+	}
+
+	/**
+	 * @return the saved generations, newest first
+	 */
+	public static List<GenerationInfo> getGenerations() {
+		List<GenerationInfo> result = new ArrayList<>();
+		for(int number: getGenerationNumbers()) {
+			File infoFile = new File(getGenerationFolder(number), INFO_FILE_NAME);
+			Map<String, String> infoEntries = infoFile.exists() ? FileMgmt.loadFileIntoHashMap(infoFile) : new HashMap<>();
+			long createdMillis = infoFile.lastModified();
+			int numProvinces = 0;
+			try {
+				createdMillis = Long.parseLong(infoEntries.getOrDefault("created", Long.toString(createdMillis)));
+				numProvinces = Integer.parseInt(infoEntries.getOrDefault("num_provinces", "0"));
+			} catch (NumberFormatException e) {
+				//Show what is available
+			}
+			result.add(new GenerationInfo(number, createdMillis, infoEntries.getOrDefault("description", ""), numProvinces));
+		}
+		return result;
+	}
+
+	public static boolean hasGeneration(int number) {
+		return getGenerationFolder(number).isDirectory();
+	}
+
+	/**
+	 * Replace the province map with the given generation, and save it
+	 *
+	 * The current map is first saved as a new generation, so the rollback can itself be undone.
+	 * Call with the job locks held.
+	 *
+	 * @param number the generation number
+	 * @return true if successful. If false, the province map is unchanged
+	 */
+	public static boolean rollBackToGeneration(int number) {
+		ProvinceMapSnapshot currentSnapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		ProvinceShardFile.ReadResult readResult;
+		try {
+			readResult = loadGeneration(number);
+		} catch (IOException e) {
+			TownyProvinces.severe("Problem Loading Province Generation " + number + ". " + e.getMessage());
+			e.printStackTrace();
+			TownyProvincesDataHolder.getInstance().discardUnpublishedChanges();
+			return false;
+		}
+		if(!readResult.corruptShardFileNames.isEmpty()) {
+			TownyProvinces.severe("Province generation " + number + " is damaged, so it was not loaded. Damaged files: " + readResult.corruptShardFileNames);
+			TownyProvincesDataHolder.getInstance().discardUnpublishedChanges();
+			return false;
+		}
+		if(readResult.numCoordsOutsideMap > 0) {
+			TownyProvinces.severe("WARNING: " + readResult.numCoordsOutsideMap + " province coords were outside the map area defined by region file 1, and were not loaded.");
+		}
+		//Done after loading, so the generation being loaded cannot be deleted as an old one
+		if(createGeneration(currentSnapshot, "Before rolling back to generation " + number) == GENERATION_FAILED) {
+			TownyProvinces.severe("The current province map could not be saved as a generation, so the rollback was cancelled.");
+			TownyProvincesDataHolder.getInstance().discardUnpublishedChanges();
+			return false;
+		}
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		DataHandlerUtil.saveAllData();
+		return true;
+	}
+
+	/**
+	 * Replace the working provinces in the data holder with the given generation
+	 * The result is not published
+	 */
+	private static ProvinceShardFile.ReadResult loadGeneration(int number) throws IOException {
+		File generationFolder = getGenerationFolder(number);
+		if(!generationFolder.isDirectory())
+			throw new IOException("Unknown province generation: " + number);
+		TownyProvincesDataHolder.getInstance().clearAllProvinces();
+		return ProvinceShardFile.readShards(generationFolder);
+	}
+
+	private static void deleteFolder(File folder) throws IOException {
+		File[] files = folder.listFiles();
+		if(files != null) {
+			for(File file: files) {
+				if(!file.delete())
+					throw new IOException("Could not delete " + file.getPath());
+			}
+		}
+		if(folder.exists() && !folder.delete())
+			throw new IOException("Could not delete " + folder.getPath());
+	}
+}
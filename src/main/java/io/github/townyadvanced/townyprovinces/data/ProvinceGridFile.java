@@ -0,0 +1,230 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.util.FileUtil;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Dense binary copy of the chunk-province grid
+ *
+ * Layout:
+ * - int: magic number
+ * - int: format version
+ * - long: geometry id. Must match the one in the province file, or this file is out of date
+ * - int x 4: minX, maxX, minZ, maxZ
+ * - int: number of provinces
+ * - int x (width * height): one cell per chunk, in row-major order.
+ *   0 means unclaimed. Any other value is (index of the province in the province file + 1)
+ *
+ * At startup, the file is memory-mapped, and the cells are bulk-copied straight into memory,
+ * so no per-coord decoding is required.
+ * When only some provinces have changed, only the rows they cover are rewritten.
+ * The file is invalidated while that happens, so after a crash it is simply rebuilt.
+ */
+public class ProvinceGridFile {
+
+	public static final String FILE_NAME = "province_grid.dat";
+	private static final int MAGIC_NUMBER = 0x54504752;  //"TPGR"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE_IN_BYTES = 4 + 4 + 8 + (4 * 4) + 4;
+	private static final int GEOMETRY_ID_POSITION = 4 + 4;
+	private static final int ROWS_PER_WRITE = 64;
+	public static final int GRID_OUT_OF_DATE = -1;
+
+	/**
+	 * Write the grid file
+	 *
+	 * @param file the file
+	 * @param coordProvinceIndex the index to write
+	 * @param provinces the provinces, in the same order as in the province file
+	 * @param geometryId the geometry id of the province file
+	 * @throws IOException if there was a problem writing the file
+	 */
+	static void writeGrid(File file, CoordProvinceIndex coordProvinceIndex, List<Province> provinces, long geometryId) throws IOException {
+		int[] cellValuesByHandle = getCellValuesByHandle(provinces);
+		int minX = coordProvinceIndex.getMinX();
+		int maxX = coordProvinceIndex.getMaxX();
+		int minZ = coordProvinceIndex.getMinZ();
+		int maxZ = coordProvinceIndex.getMaxZ();
+		int width = maxX - minX + 1;
+		File tempFile = FileUtil.getTempFile(file);
+		try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE_IN_BYTES);
+			header.putInt(MAGIC_NUMBER);
+			header.putInt(FORMAT_VERSION);
+			header.putLong(geometryId);
+			header.putInt(minX).putInt(maxX).putInt(minZ).putInt(maxZ);
+			header.putInt(provinces.size());
+			header.flip();
+			writeFully(channel, header);
+			//Write cells, a batch of rows at a time
+			ByteBuffer rowsBuffer = ByteBuffer.allocateDirect(width * ROWS_PER_WRITE * 4);
+			IntBuffer rowsIntBuffer = rowsBuffer.asIntBuffer();
+			for (int z = minZ; z <= maxZ; z++) {
+				for (int x = minX; x <= maxX; x++) {
+					rowsIntBuffer.put(getCellValue(coordProvinceIndex.getProvince(x, z), cellValuesByHandle));
+				}
+				if (!rowsIntBuffer.hasRemaining() || z == maxZ) {
+					rowsBuffer.limit(rowsIntBuffer.position() * 4);
+					rowsBuffer.position(0);
+					writeFully(channel, rowsBuffer);
+					rowsBuffer.clear();
+					rowsIntBuffer.clear();
+				}
+			}
+			channel.force(false);
+		}
+		FileUtil.replaceFileAtomically(tempFile, file);
+	}
+
+	/**
+	 * Update the grid file in place, rewriting only the rows covered by the given areas
+	 * 
+	 * Only possible if the file has the same bounds and provinces as the index,
+	 * i.e. only the coords of existing provinces have changed.
+	 *
+	 * @param file the file
+	 * @param coordProvinceIndex the index to write
+	 * @param provinces the provinces, in the same order as in the province file
+	 * @param geometryId the new geometry id of the province file
+	 * @param changedAreas the old and new coords of the provinces which have changed
+	 * @return true if the file was updated. False if it does not match, and must be rewritten
+	 * @throws IOException if there was a problem writing the file
+	 */
+	static boolean updateGrid(File file, CoordProvinceIndex coordProvinceIndex, List<Province> provinces, long geometryId, List<ProvinceCoords> changedAreas) throws IOException {
+		int minX = coordProvinceIndex.getMinX();
+		int maxX = coordProvinceIndex.getMaxX();
+		int minZ = coordProvinceIndex.getMinZ();
+		int maxZ = coordProvinceIndex.getMaxZ();
+		int width = maxX - minX + 1;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			//Check the file matches
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE_IN_BYTES);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0)
+					return false;
+			}
+			header.flip();
+			if (header.getInt() != MAGIC_NUMBER || header.getInt() != FORMAT_VERSION)
+				return false;
+			header.getLong();
+			if (header.getInt() != minX || header.getInt() != maxX || header.getInt() != minZ || header.getInt() != maxZ)
+				return false;
+			if (header.getInt() != provinces.size())
+				return false;
+			if (channel.size() != HEADER_SIZE_IN_BYTES + ((long) width * (maxZ - minZ + 1) * 4))
+				return false;
+			//Find the rows to write
+			boolean[] rowsToWrite = new boolean[maxZ - minZ + 1];
+			for (ProvinceCoords area : changedAreas) {
+				if (area.isEmpty())
+					continue;
+				for (int z = Math.max(minZ, area.getMinZ()); z <= Math.min(maxZ, area.getMaxZ()); z++) {
+					rowsToWrite[z - minZ] = true;
+				}
+			}
+			//Invalidate the file until all the rows are written, so a crash part-way through cannot leave a mix of old and new rows
+			writeGeometryId(channel, BinaryProvinceFile.NO_GEOMETRY_ID);
+			//Write the rows
+			int[] cellValuesByHandle = getCellValuesByHandle(provinces);
+			ByteBuffer rowBuffer = ByteBuffer.allocateDirect(width * 4);
+			IntBuffer rowIntBuffer = rowBuffer.asIntBuffer();
+			for (int z = minZ; z <= maxZ; z++) {
+				if (!rowsToWrite[z - minZ])
+					continue;
+				rowIntBuffer.clear();
+				for (int x = minX; x <= maxX; x++) {
+					rowIntBuffer.put(getCellValue(coordProvinceIndex.getProvince(x, z), cellValuesByHandle));
+				}
+				rowBuffer.clear();
+				writeFully(channel, rowBuffer, HEADER_SIZE_IN_BYTES + ((long) (z - minZ) * width * 4));
+			}
+			channel.force(false);
+			writeGeometryId(channel, geometryId);
+		}
+		return true;
+	}
+
+	private static void writeGeometryId(FileChannel channel, long geometryId) throws IOException {
+		ByteBuffer geometryIdBuffer = ByteBuffer.allocate(8);
+		geometryIdBuffer.putLong(geometryId).flip();
+		writeFully(channel, geometryIdBuffer, GEOMETRY_ID_POSITION);
+		channel.force(false);
+	}
+
+	private static int[] getCellValuesByHandle(List<Province> provinces) {
+		int maxHandle = ProvinceRegistry.NO_HANDLE;
+		for (Province province : provinces) {
+			maxHandle = Math.max(maxHandle, province.getHandle());
+		}
+		int[] result = new int[maxHandle + 1];
+		for (int i = 0; i < provinces.size(); i++) {
+			result[provinces.get(i).getHandle()] = i + 1;
+		}
+		return result;
+	}
+
+	private static int getCellValue(@Nullable Province province, int[] cellValuesByHandle) {
+		if (province == null || province.getHandle() >= cellValuesByHandle.length)
+			return 0;
+		return cellValuesByHandle[province.getHandle()];
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Load the grid file into the data holder, if it matches the province file
+	 *
+	 * @param file the grid file
+	 * @param provinces the provinces, in the same order as in the province file
+	 * @param geometryId the geometry id of the province file
+	 * @param lazyCoordLists if true, leave building the coord list of each province until it is needed
+	 * @return the number of province coords which could not be loaded because they were outside the map,
+	 *         or GRID_OUT_OF_DATE if the file does not match, and the coords must be loaded another way
+	 * @throws IOException if the file could not be read
+	 */
+	static int loadGrid(File file, List<Province> provinces, long geometryId, boolean lazyCoordLists) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE_IN_BYTES)
+				return GRID_OUT_OF_DATE;
+			MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (mappedBuffer.getInt() != MAGIC_NUMBER || mappedBuffer.getInt() != FORMAT_VERSION)
+				return GRID_OUT_OF_DATE;
+			if (geometryId == BinaryProvinceFile.NO_GEOMETRY_ID || mappedBuffer.getLong() != geometryId)
+				return GRID_OUT_OF_DATE;
+			int minX = mappedBuffer.getInt();
+			int maxX = mappedBuffer.getInt();
+			int minZ = mappedBuffer.getInt();
+			int maxZ = mappedBuffer.getInt();
+			if (mappedBuffer.getInt() != provinces.size())
+				return GRID_OUT_OF_DATE;
+			long numCells = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+			if (numCells <= 0 || mappedBuffer.remaining() != numCells * 4)
+				return GRID_OUT_OF_DATE;
+			Province[] provincesByCellValue = new Province[provinces.size() + 1];
+			for (int i = 0; i < provinces.size(); i++) {
+				provincesByCellValue[i + 1] = provinces.get(i);
+			}
+			return TownyProvincesDataHolder.getInstance().loadCells(minX, maxX, minZ, maxZ, mappedBuffer.asIntBuffer(), provincesByCellValue, lazyCoordLists);
+		}
+	}
+}
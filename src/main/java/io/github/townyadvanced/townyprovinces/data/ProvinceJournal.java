@@ -0,0 +1,223 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal for in-place updates of the province file
+ *
+ * An incremental save changes several parts of the province file (records, coords sections, header).
+ * If the server is killed part-way through, the file would be left with only some of the changes.
+ * To prevent this, every update is first appended to the journal as one batch, and synced to disk.
+ * Only then is it applied to the province file. Once the province file is synced, the journal is cleared.
+ *
+ * On load, any complete batches still in the journal are applied again before the province file is read.
+ * Applying a batch twice gives the same result, so it does not matter whether it was applied before the crash.
+ * A batch which was only partly written to the journal (i.e. its checksum does not match) is ignored,
+ * and the province file still holds the state from before that save.
+ *
+ * Each province file has a random file id, which changes every time the file is rewritten in full.
+ * The journal records the id of the file it belongs to, so it is never applied to a different file.
+ *
+ * Layout:
+ * - int: magic number
+ * - int: format version
+ * - long: file id of the province file
+ * - Batches, each:
+ *   - int: length in bytes of the batch body
+ *   - Batch body: a list of writes, each:
+ *     - long: position in the province file
+ *     - int: number of bytes
+ *     - bytes
+ *   - long: CRC32 of the batch body
+ */
+public class ProvinceJournal {
+
+	public static final String FILE_NAME = "provinces.journal";
+	private static final int MAGIC_NUMBER = 0x54504a4c;  //"TPJL"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE_IN_BYTES = 4 + 4 + 8;
+
+	/**
+	 * A set of writes to the province file, which must be applied all together or not at all
+	 */
+	static class Batch {
+		private final List<Long> positions = new ArrayList<>();
+		private final List<byte[]> contents = new ArrayList<>();
+
+		void add(long position, byte[] bytes) {
+			positions.add(position);
+			contents.add(bytes);
+		}
+
+		boolean isEmpty() {
+			return positions.isEmpty();
+		}
+
+		private byte[] toBody() throws IOException {
+			ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream();
+			DataOutputStream bodyOutput = new DataOutputStream(bodyBuffer);
+			for (int i = 0; i < positions.size(); i++) {
+				bodyOutput.writeLong(positions.get(i));
+				bodyOutput.writeInt(contents.get(i).length);
+				bodyOutput.write(contents.get(i));
+			}
+			return bodyBuffer.toByteArray();
+		}
+
+		private static Batch fromBody(byte[] body) throws IOException {
+			Batch result = new Batch();
+			ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+			while (bodyBuffer.hasRemaining()) {
+				long position = bodyBuffer.getLong();
+				byte[] bytes = new byte[bodyBuffer.getInt()];
+				bodyBuffer.get(bytes);
+				result.add(position, bytes);
+			}
+			return result;
+		}
+
+		/**
+		 * Apply the writes to the given file, and sync it to disk
+		 */
+		void applyTo(File file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				for (int i = 0; i < positions.size(); i++) {
+					ByteBuffer buffer = ByteBuffer.wrap(contents.get(i));
+					long position = positions.get(i);
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+				}
+				channel.force(false);
+			}
+		}
+	}
+
+	/**
+	 * Append the given batch to the journal, and sync it to disk
+	 * After this returns, the batch will survive a crash
+	 * 
+	 * @param journalFile the journal
+	 * @param fileId the file id of the province file the batch is for
+	 * @param batch the batch
+	 */
+	static void append(File journalFile, long fileId, Batch batch) throws IOException {
+		byte[] body = batch.toBody();
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long position = channel.size();
+			ByteBuffer buffer;
+			if (position < HEADER_SIZE_IN_BYTES || readFileId(channel) != fileId) {
+				//New, torn, or stale journal. Start it again
+				channel.truncate(0);
+				position = 0;
+				buffer = ByteBuffer.allocate(HEADER_SIZE_IN_BYTES + 4 + body.length + 8);
+				buffer.putInt(MAGIC_NUMBER);
+				buffer.putInt(FORMAT_VERSION);
+				buffer.putLong(fileId);
+			} else {
+				buffer = ByteBuffer.allocate(4 + body.length + 8);
+			}
+			buffer.putInt(body.length);
+			buffer.put(body);
+			buffer.putLong(crc.getValue());
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			channel.force(false);
+		}
+	}
+
+	private static long readFileId(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE_IN_BYTES);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, buffer.position()) < 0)
+				return BinaryProvinceFile.NO_FILE_ID;
+		}
+		buffer.flip();
+		if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION)
+			return BinaryProvinceFile.NO_FILE_ID;
+		return buffer.getLong();
+	}
+
+	/**
+	 * Empty the journal
+	 * Call this once every batch in it has been applied, and the province file has been synced
+	 */
+	static void clear(File journalFile) throws IOException {
+		if (!journalFile.exists())
+			return;
+		try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(0);
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Apply any complete batches in the journal to the given file, then empty the journal
+	 * 
+	 * If the journal belongs to a different file (e.g. the file was rewritten in full just before a crash),
+	 * it is emptied without being applied.
+	 *
+	 * @param journalFile the journal
+	 * @param targetFile the province file
+	 * @param targetFileId the file id of the province file
+	 * @return the number of batches applied
+	 * @throws IOException if the journal could not be read, or the province file could not be written
+	 */
+	static int replay(File journalFile, File targetFile, long targetFileId) throws IOException {
+		if (!journalFile.exists() || journalFile.length() == 0)
+			return 0;
+		List<Batch> batches = new ArrayList<>();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), 65536))) {
+			if (input.readInt() != MAGIC_NUMBER)
+				throw new IOException("File is not a province journal: " + journalFile.getName());
+			int formatVersion = input.readInt();
+			if (formatVersion != FORMAT_VERSION)
+				throw new IOException("Unsupported province journal version: " + formatVersion);
+			if (input.readLong() != targetFileId || targetFileId == BinaryProvinceFile.NO_FILE_ID) {
+				//Stale journal
+				clear(journalFile);
+				return 0;
+			}
+			long remainingBytes = journalFile.length() - HEADER_SIZE_IN_BYTES;
+			while (remainingBytes > 0) {
+				int bodyLength = input.readInt();
+				if (bodyLength < 0 || bodyLength + 4L + 8L > remainingBytes)
+					break;  //Torn batch
+				byte[] body = new byte[bodyLength];
+				input.readFully(body);
+				CRC32 crc = new CRC32();
+				crc.update(body);
+				if (input.readLong() != crc.getValue())
+					break;  //Torn batch
+				batches.add(Batch.fromBody(body));
+				remainingBytes -= 4L + bodyLength + 8L;
+			}
+		} catch (EOFException e) {
+			//Torn header. Nothing was applied from this journal
+		}
+		if (targetFile.exists()) {
+			for (Batch batch : batches) {
+				batch.applyTo(targetFile);
+			}
+		}
+		clear(journalFile);
+		return batches.size();
+	}
+}
@@ -0,0 +1,229 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Immutable, versioned view of the province map
+ * 
+ * Snapshots are built by writers (e.g. the regeneration job, or the loader),
+ * and published by TownyProvincesDataHolder in a single atomic swap.
+ * 
+ * Readers (e.g. the map display job, the land validation job, the Towny listener)
+ * can use a snapshot from any thread, without locking or copying,
+ * because nothing in it is ever modified after publication.
+ * 
+ * NOTE: Province metadata (type, costs etc.) is held on the province objects,
+ * which are shared between snapshots. When metadata changes, a new version is published.
+ * 
+ * After a lazy startup, the province coords (and the spatial index and adjacency graph built from them)
+ * are built from the index on first use, or by a background task, whichever comes first.
+ */
+public class ProvinceMapSnapshot {
+
+	private final long version;
+	private final Set<Province> provinces;
+	private final CoordProvinceIndex coordProvinceIndex;
+	private final LazyGeometry geometry;  //Shared between versions with the same contents
+
+	/**
+	 * Province coords, and everything derived from them
+	 */
+	private static class Geometry {
+		private final Map<Province, ProvinceCoords> coordsInProvinceMap;
+		private final ProvinceCoords[] coordsByProvinceHandle;  //Same contents as the map, for lookups without hashing
+		private final ProvinceSpatialIndex spatialIndex;
+		private final ProvinceAdjacencyGraph adjacencyGraph;
+
+		private Geometry(Set<Province> provinces, Map<Province, ProvinceCoords> coordsInProvinceMap, ProvinceAdjacencyGraph adjacencyGraph) {
+			this.coordsInProvinceMap = coordsInProvinceMap;
+			this.coordsByProvinceHandle = createCoordsByProvinceHandle(coordsInProvinceMap);
+			this.spatialIndex = new ProvinceSpatialIndex(provinces, coordsInProvinceMap);
+			this.adjacencyGraph = adjacencyGraph;
+		}
+	}
+
+	/**
+	 * Geometry which is either given up front, or built from the index the first time it is needed
+	 */
+	private static class LazyGeometry {
+		private volatile Geometry geometry;
+		private Supplier<Geometry> loader;
+
+		private LazyGeometry(Geometry geometry) {
+			this.geometry = geometry;
+		}
+
+		private LazyGeometry(Supplier<Geometry> loader) {
+			this.loader = loader;
+		}
+
+		private Geometry get() {
+			Geometry result = geometry;
+			if (result == null) {
+				synchronized (this) {
+					result = geometry;
+					if (result == null) {
+						result = loader.get();
+						geometry = result;
+						loader = null;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @param version the version
+	 * @param provinces unmodifiable set of provinces
+	 * @param coordProvinceIndex index which will not be written to again
+	 * @param coordsInProvinceMap unmodifiable map of frozen province coords
+	 * @param adjacencyGraph adjacency graph of the provinces
+	 */
+	ProvinceMapSnapshot(long version, Set<Province> provinces, CoordProvinceIndex coordProvinceIndex, Map<Province, ProvinceCoords> coordsInProvinceMap, ProvinceAdjacencyGraph adjacencyGraph) {
+		this(version, provinces, coordProvinceIndex, new LazyGeometry(new Geometry(provinces, coordsInProvinceMap, adjacencyGraph)));
+	}
+
+	private ProvinceMapSnapshot(long version, Set<Province> provinces, CoordProvinceIndex coordProvinceIndex, LazyGeometry geometry) {
+		this.version = version;
+		this.provinces = provinces;
+		this.coordProvinceIndex = coordProvinceIndex;
+		this.geometry = geometry;
+	}
+
+	/**
+	 * Create a snapshot whose province coords, spatial index and adjacency graph
+	 * are built from the index the first time any of them is needed (see loadGeometry).
+	 * Province lookups by coord do not need them, so are available straight away.
+	 *
+	 * @param version the version
+	 * @param provinces unmodifiable set of provinces
+	 * @param coordProvinceIndex index which will not be written to again
+	 */
+	static ProvinceMapSnapshot createWithLazyGeometry(long version, Set<Province> provinces, CoordProvinceIndex coordProvinceIndex) {
+		return new ProvinceMapSnapshot(version, provinces, coordProvinceIndex, new LazyGeometry(() -> {
+			Map<Province, ProvinceCoords> coordsInProvinceMap = Collections.unmodifiableMap(buildCoordsInProvinceMap(provinces, coordProvinceIndex));
+			return new Geometry(provinces, coordsInProvinceMap, ProvinceAdjacencyGraph.build(provinces, coordsInProvinceMap, coordProvinceIndex));
+		}));
+	}
+
+	/**
+	 * Build the frozen coords of each of the given provinces, by scanning the index once
+	 */
+	static Map<Province, ProvinceCoords> buildCoordsInProvinceMap(Set<Province> provinces, CoordProvinceIndex coordProvinceIndex) {
+		Map<Province, ProvinceCoords> workingCoordsInProvinceMap = new HashMap<>();
+		for (Province province : provinces) {
+			workingCoordsInProvinceMap.put(province, new ProvinceCoords());
+		}
+		ProvinceCoords coords;
+		for (int z = coordProvinceIndex.getMinZ(); z <= coordProvinceIndex.getMaxZ(); z++) {
+			for (int x = coordProvinceIndex.getMinX(); x <= coordProvinceIndex.getMaxX(); x++) {
+				Province province = coordProvinceIndex.getProvince(x, z);
+				if (province == null)
+					continue;
+				coords = workingCoordsInProvinceMap.get(province);
+				if (coords != null) {
+					coords.add(x, z);
+				}
+			}
+		}
+		Map<Province, ProvinceCoords> result = new HashMap<>();
+		for (Map.Entry<Province, ProvinceCoords> mapEntry : workingCoordsInProvinceMap.entrySet()) {
+			result.put(mapEntry.getKey(), mapEntry.getValue().createFrozenCopy());
+		}
+		return result;
+	}
+
+	private static ProvinceCoords[] createCoordsByProvinceHandle(Map<Province, ProvinceCoords> coordsInProvinceMap) {
+		int maxHandle = ProvinceRegistry.NO_HANDLE;
+		for(Province province: coordsInProvinceMap.keySet()) {
+			maxHandle = Math.max(maxHandle, province.getHandle());
+		}
+		ProvinceCoords[] result = new ProvinceCoords[maxHandle + 1];
+		for(Map.Entry<Province, ProvinceCoords> mapEntry: coordsInProvinceMap.entrySet()) {
+			if(mapEntry.getKey().getHandle() != ProvinceRegistry.NO_HANDLE) {
+				result[mapEntry.getKey().getHandle()] = mapEntry.getValue();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Create a new version of this snapshot, with the same contents.
+	 * Used when province metadata has changed.
+	 */
+	ProvinceMapSnapshot withNextVersion() {
+		return new ProvinceMapSnapshot(version + 1, provinces, coordProvinceIndex, geometry);
+	}
+
+	/**
+	 * Build the province coords, spatial index and adjacency graph now, if they have not been built yet.
+	 * Blocks until they are available.
+	 */
+	public void loadGeometry() {
+		geometry.get();
+	}
+
+	/**
+	 * @return true if the province coords, spatial index and adjacency graph are available without waiting
+	 */
+	public boolean isGeometryLoaded() {
+		return geometry.geometry != null;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public Set<Province> getProvinces() {
+		return provinces;
+	}
+
+	public CoordProvinceIndex getCoordProvinceIndex() {
+		return coordProvinceIndex;
+	}
+
+	public ProvinceAdjacencyGraph getAdjacencyGraph() {
+		return geometry.get().adjacencyGraph;
+	}
+
+	public ProvinceCoords getBorderCoords(Province province) {
+		return getAdjacencyGraph().getBorderCoords(province);
+	}
+
+	public @Nullable Province getProvinceAtCoord(int x, int z) {
+		return coordProvinceIndex.getProvince(x, z);
+	}
+
+	public boolean isCoordUnclaimed(int x, int z) {
+		return !coordProvinceIndex.isClaimed(x, z);
+	}
+
+	public ProvinceCoords getCoordsInProvince(Province province) {
+		Geometry loadedGeometry = geometry.get();
+		int handle = province.getHandle();
+		ProvinceCoords result;
+		if(handle != ProvinceRegistry.NO_HANDLE && handle < loadedGeometry.coordsByProvinceHandle.length) {
+			result = loadedGeometry.coordsByProvinceHandle[handle];
+		} else {
+			result = loadedGeometry.coordsInProvinceMap.get(province);
+		}
+		return result == null ? ProvinceCoords.EMPTY : result;
+	}
+
+	/**
+	 * Find the provinces in the given area of chunks (inclusive)
+	 *
+	 * @param matchFullExtent if true, match provinces with any chunk in the area. If false, only match provinces with their homeblock in the area
+	 */
+	public Set<Province> getProvincesInArea(int minX, int maxX, int minZ, int maxZ, boolean matchFullExtent) {
+		return geometry.get().spatialIndex.getProvincesInArea(this, minX, maxX, minZ, maxZ, matchFullExtent);
+	}
+}
@@ -0,0 +1,138 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Which chunks are claimed, for fast "is another province in this rectangle" checks
+ *
+ * Covers the same area as the coord-province index.
+ * Each row (z) is a bitset, one bit per chunk, set if the chunk is claimed.
+ * For each 64-chunk word of a row, the lowest and highest province handle claimed in it are also kept.
+ * So most words can be answered without looking at any chunks:
+ * - No bits set in range: nothing is claimed there
+ * - Lowest and highest handle are both the given province: everything claimed there is that province
+ * Only words shared by the given province and another province are checked chunk by chunk.
+ *
+ * Claims can be added, but not removed. If provinces are deleted, build a new map.
+ * 
+ * Thread safety:
+ * - Several threads can claim different chunks at the same time.
+ *   The handle range of a word only ever widens, and is widened before the chunk's bit is set.
+ * - A check is exact as long as no other thread is claiming chunks inside the rectangle being checked.
+ */
+public class ProvinceOccupancyMap {
+
+	private final int minX;
+	private final int maxX;
+	private final int minZ;
+	private final int maxZ;
+	private final int wordsPerRow;
+	private final AtomicLongArray claimedBits;
+	private final AtomicIntegerArray lowestHandles;  //Per word. Integer.MAX_VALUE if nothing claimed
+	private final AtomicIntegerArray highestHandles;  //Per word. NO_HANDLE if nothing claimed
+
+	private ProvinceOccupancyMap(int minX, int maxX, int minZ, int maxZ) {
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minZ = minZ;
+		this.maxZ = maxZ;
+		this.wordsPerRow = ((maxX - minX) >>> 6) + 1;
+		int numWords = wordsPerRow * (maxZ - minZ + 1);
+		this.claimedBits = new AtomicLongArray(numWords);
+		this.lowestHandles = new AtomicIntegerArray(numWords);
+		this.highestHandles = new AtomicIntegerArray(numWords);
+		for (int i = 0; i < numWords; i++) {
+			lowestHandles.set(i, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Build the map from the claimed chunks in the given index
+	 */
+	public static ProvinceOccupancyMap build(CoordProvinceIndex coordProvinceIndex) {
+		ProvinceOccupancyMap result = new ProvinceOccupancyMap(coordProvinceIndex.getMinX(), coordProvinceIndex.getMaxX(), coordProvinceIndex.getMinZ(), coordProvinceIndex.getMaxZ());
+		Province province;
+		for (int z = result.minZ; z <= result.maxZ; z++) {
+			for (int x = result.minX; x <= result.maxX; x++) {
+				province = coordProvinceIndex.getProvince(x, z);
+				if (province != null) {
+					result.setClaimed(x, z, province);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Record that the given chunk is claimed by the given (registered) province
+	 * Chunks outside the map are ignored.
+	 */
+	public void setClaimed(int x, int z, Province province) {
+		if (x < minX || x > maxX || z < minZ || z > maxZ)
+			return;
+		int handle = province.getHandle();
+		int wordIndex = getWordIndex(x - minX, z);
+		lowestHandles.accumulateAndGet(wordIndex, handle, Math::min);
+		highestHandles.accumulateAndGet(wordIndex, handle, Math::max);
+		claimedBits.getAndAccumulate(wordIndex, 1L << ((x - minX) & 63), (bits, bit) -> bits | bit);
+	}
+
+	/**
+	 * Check if any province other than the given one has a chunk in the given rectangle
+	 *
+	 * Takes O(rows) time, for rectangles up to about 64 chunks wide.
+	 *
+	 * @param province the province. Need not be registered yet, in which case any claimed chunk counts as another province
+	 * @param coordProvinceIndex the index which this map mirrors. Used to check words shared by several provinces
+	 * @return true if another province has a chunk in the rectangle
+	 */
+	public boolean hasOtherProvinceInArea(int areaMinX, int areaMaxX, int areaMinZ, int areaMaxZ, Province province, CoordProvinceIndex coordProvinceIndex) {
+		int fromX = Math.max(areaMinX, minX) - minX;
+		int toX = Math.min(areaMaxX, maxX) - minX;
+		int fromZ = Math.max(areaMinZ, minZ);
+		int toZ = Math.min(areaMaxZ, maxZ);
+		if (fromX > toX || fromZ > toZ)
+			return false;
+		int handle = province.getHandle();
+		int fromWord = fromX >>> 6;
+		int toWord = toX >>> 6;
+		long fromMask = -1L << (fromX & 63);
+		long toMask = -1L >>> (63 - (toX & 63));
+		int wordIndex;
+		long mask;
+		long bitsInArea;
+		int lowestHandle;
+		int highestHandle;
+		Province provinceAtCoord;
+		for (int z = fromZ; z <= toZ; z++) {
+			for (int word = fromWord; word <= toWord; word++) {
+				wordIndex = getWordIndex(word << 6, z);
+				mask = (word == fromWord ? fromMask : -1L) & (word == toWord ? toMask : -1L);
+				bitsInArea = claimedBits.get(wordIndex) & mask;
+				if (bitsInArea == 0)
+					continue;
+				lowestHandle = lowestHandles.get(wordIndex);
+				highestHandle = highestHandles.get(wordIndex);
+				if (lowestHandle == handle && highestHandle == handle)
+					continue;
+				if (mask == -1L || lowestHandle == highestHandle)
+					return true;  //Another province has a chunk in this part of the word
+				//The word is shared by several provinces, and only partly in the area. Check each claimed chunk
+				while (bitsInArea != 0) {
+					provinceAtCoord = coordProvinceIndex.getProvince(minX + (word << 6) + Long.numberOfTrailingZeros(bitsInArea), z);
+					if (provinceAtCoord != null && provinceAtCoord != province)
+						return true;
+					bitsInArea &= bitsInArea - 1;
+				}
+			}
+		}
+		return false;
+	}
+
+	private int getWordIndex(int offsetX, int z) {
+		return ((z - minZ) * wordsPerRow) + (offsetX >>> 6);
+	}
+}
@@ -0,0 +1,81 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Registry of province handles
+ *
+ * Each registered province gets a dense int handle (1, 2, 3...),
+ * which is stable for as long as the plugin is running.
+ * Handles are used in place of province objects in hot paths,
+ * e.g. the coord-province index and per-province arrays,
+ * so lookups are array reads instead of hash lookups.
+ *
+ * Handles are not reused, so a handle held by an older snapshot can never point at a different province.
+ * They are not persisted, and are re-assigned on each load.
+ * A full reload (see TownyProvincesDataHolder.clearAllProvinces()) starts a new registry, so handles are compacted again,
+ * while snapshots published before it keep resolving through the registry of their own index.
+ *
+ * Handles are used by: the coord-province index, the per-province coord lookup in snapshots,
+ * the occupancy map used while painting, the grid file cell values, the towns used for map styles,
+ * and de-duplication in spatial index area queries.
+ * Structures which are rebuilt at most once per publication are still keyed by Province (hashed by homeblock):
+ * the working coord lists and modified-province set in TownyProvincesDataHolder, and the adjacency graph.
+ * The spatial index buckets hold province objects directly, so they need no lookups.
+ *
+ * Thread safety:
+ * - Any number of threads can look up provinces at the same time, without locking.
+ * - A province is put into the registry before its handle is returned,
+ *   so a reader which sees a handle (e.g. in the coord-province index) will always see the province.
+ */
+public class ProvinceRegistry {
+
+	public static final int NO_HANDLE = 0;
+
+	private volatile Province[] provinces;  //Indexed by handle
+	private int maxHandle;  //Only written while synchronized
+
+	public ProvinceRegistry() {
+		this.provinces = new Province[64];
+		this.maxHandle = NO_HANDLE;
+	}
+
+	/**
+	 * Register the given province, if it does not already have a handle.
+	 *
+	 * If the array is full, a bigger copy is published before the handle is returned.
+	 *
+	 * @return the handle of the province
+	 */
+	public synchronized int register(Province province) {
+		if (province.getHandle() != NO_HANDLE)
+			return province.getHandle();
+		Province[] currentProvinces = provinces;
+		int handle = maxHandle + 1;
+		if (handle == currentProvinces.length) {
+			currentProvinces = Arrays.copyOf(currentProvinces, currentProvinces.length * 2);
+		}
+		currentProvinces[handle] = province;
+		province.setHandle(handle);
+		maxHandle = handle;
+		provinces = currentProvinces;
+		return handle;
+	}
+
+	public @Nullable Province getProvince(int handle) {
+		Province[] currentProvinces = provinces;
+		if (handle <= NO_HANDLE || handle >= currentProvinces.length)
+			return null;
+		return currentProvinces[handle];
+	}
+
+	/**
+	 * @return the highest handle given out so far. Per-province arrays should be sized (max handle + 1)
+	 */
+	public synchronized int getMaxHandle() {
+		return maxHandle;
+	}
+}
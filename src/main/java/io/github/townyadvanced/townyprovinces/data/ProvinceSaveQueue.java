@@ -0,0 +1,143 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind queue for province saves
+ *
+ * Save requests are not written straight away.
+ * Instead, they are collected for a short time, then written together in one batch, on a dedicated writer thread.
+ * So:
+ * - The thread asking for the save (e.g. a command, or a job) never waits for file IO.
+ * - Many requests in quick succession, for the same province or for different provinces, cause just one write.
+ *
+ * Each batch is one incremental save, which writes every province which has changed.
+ *
+ * If the writer is not running (e.g. during startup), requests are written straight away, on the calling thread.
+ * On shutdown, the queue is flushed, waiting at most the configured time.
+ */
+public class ProvinceSaveQueue {
+
+	private static final Set<Province> pendingProvinces = ConcurrentHashMap.newKeySet();
+	private static final AtomicBoolean allChangesPending = new AtomicBoolean(false);
+	private static final AtomicBoolean batchScheduled = new AtomicBoolean(false);
+	private static volatile ScheduledThreadPoolExecutor writer = null;
+
+	/**
+	 * Start the writer thread
+	 */
+	public static synchronized boolean start() {
+		if (writer != null)
+			return true;
+		ScheduledThreadPoolExecutor newWriter = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "TownyProvinces-Save-Writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		//On shutdown, do not wait for the delay of the scheduled batch. The final flush is submitted with no delay
+		newWriter.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		writer = newWriter;
+		batchScheduled.set(false);  //Any batch scheduled on a previous writer was cancelled
+		//Save anything changed while the writer was stopped. The first save after loading also checks the shard files
+		requestSave();
+		return true;
+	}
+
+	/**
+	 * Flush the queue, and stop the writer thread
+	 *
+	 * Waits at most the configured shutdown timeout.
+	 * Requests made after this are written straight away, on the calling thread.
+	 */
+	public static void stop() {
+		ScheduledThreadPoolExecutor currentWriter;
+		synchronized (ProvinceSaveQueue.class) {
+			currentWriter = writer;
+			writer = null;
+		}
+		if (currentWriter == null)
+			return;
+		int queueDepth = getQueueDepth();
+		if (queueDepth > 0) {
+			TownyProvinces.info("Flushing " + queueDepth + " queued province saves");
+			currentWriter.execute(ProvinceSaveQueue::writeBatch);
+		}
+		currentWriter.shutdown();
+		try {
+			int timeoutSeconds = TownyProvincesSettings.getShutdownSaveTimeoutSeconds();
+			if (!currentWriter.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+				TownyProvinces.severe("Province saves did not finish within " + timeoutSeconds + " seconds. Some changes may not have been saved.");
+			}
+		} catch (InterruptedException e) {
+			TownyProvinces.severe("Interrupted while waiting for province saves to finish. Some changes may not have been saved.");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Request that the given province be saved
+	 */
+	public static void requestSave(Province province) {
+		pendingProvinces.add(province);
+		scheduleBatch();
+	}
+
+	/**
+	 * Request that all changed provinces be saved
+	 */
+	public static void requestSave() {
+		allChangesPending.set(true);
+		scheduleBatch();
+	}
+
+	/**
+	 * @return the number of queued requests which have not been written yet.
+	 *         Each province counts once, however many times it was requested.
+	 *         A request to save all changes counts as one.
+	 */
+	public static int getQueueDepth() {
+		return pendingProvinces.size() + (allChangesPending.get() ? 1 : 0);
+	}
+
+	private static void scheduleBatch() {
+		ScheduledThreadPoolExecutor currentWriter = writer;
+		if (currentWriter == null) {
+			writeBatch();
+			return;
+		}
+		if (!batchScheduled.compareAndSet(false, true))
+			return;  //The scheduled batch will include this request
+		try {
+			currentWriter.schedule(ProvinceSaveQueue::writeBatch, TownyProvincesSettings.getSaveDelayMilliseconds(), TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			//The writer has just been stopped
+			batchScheduled.set(false);
+			writeBatch();
+		}
+	}
+
+	/**
+	 * Write all changed provinces
+	 *
+	 * The queue is cleared before the save reads any province,
+	 * so a request made during the save causes another batch.
+	 */
+	private static void writeBatch() {
+		batchScheduled.set(false);
+		allChangesPending.set(false);
+		pendingProvinces.clear();
+		if (!DataHandlerUtil.saveAllProvinces() && writer != null) {
+			//Try again later. The next save will rewrite the whole file
+			requestSave();
+		}
+	}
+}
@@ -0,0 +1,486 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.Region;
+import io.github.townyadvanced.townyprovinces.util.FileUtil;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed, region-sharded copy of the provinces
+ *
+ * The provinces are split into one shard per region (see TownyProvincesSettings.getOrderedRegionsList()).
+ * A province belongs to the last region in the list which contains its home block,
+ * because later regions are painted over earlier ones.
+ * Provinces in no region go into the unassigned shard.
+ *
+ * Each shard is one small compressed file with a checksum, so the shards folder is quick to back up,
+ * and a damaged shard is detected instead of being loaded.
+ * Only shards whose provinces have changed are rewritten,
+ * so regenerating a region rewrites its own shard, plus the shards of any neighbouring provinces which changed.
+ *
+ * The province file is still the primary store.
+ * The shards are loaded only if it is missing or unreadable.
+ *
+ * Layout:
+ * - int: magic number
+ * - int: format version
+ * - UTF: region name, or empty for the unassigned shard
+ * - int: payload length, uncompressed
+ * - long: CRC32 of the uncompressed payload
+ * - int: payload length, compressed
+ * - long: CRC32 of the compressed payload (format version 2 onwards)
+ * - Payload, compressed with deflate:
+ *   - int: number of provinces
+ *   - For each province, sorted by home block: home block, type and metadata, as in a province file record
+ *   - For each province, in the same order: int length, then a coords section, as in the province file
+ *
+ * The two checksums let a save check whether a shard file is intact and up to date
+ * by reading it, without decompressing or decoding it.
+ */
+public class ProvinceShardFile {
+
+	private static final int MAGIC_NUMBER = 0x54505348;  //"TPSH"
+	private static final int FORMAT_VERSION = 2;
+	private static final int VERSION_1 = 1;
+	private static final String FILE_EXTENSION = ".shard";
+	private static final String REGION_FILE_PREFIX = "region_";
+	private static final String UNASSIGNED_FILE_NAME = "unassigned" + FILE_EXTENSION;
+
+	/**
+	 * The provinces which belong in one shard, and what was last saved for them
+	 */
+	static class Shard {
+		final String fileName;
+		final String regionName;
+		final List<Province> provinces = new ArrayList<>();  //Sorted by home block
+		private ProvinceCoords[] coords;  //The frozen coords of each province. Compared by identity
+		private long metadataChecksum;
+
+		private Shard(String fileName, String regionName) {
+			this.fileName = fileName;
+			this.regionName = regionName;
+		}
+
+		/**
+		 * @return true if the given shard has exactly the same provinces, coords and metadata as this one
+		 */
+		boolean hasSameContents(@Nullable Shard otherShard) {
+			if (otherShard == null || otherShard.provinces.size() != provinces.size() || otherShard.metadataChecksum != metadataChecksum)
+				return false;
+			for (int i = 0; i < provinces.size(); i++) {
+				if (otherShard.provinces.get(i) != provinces.get(i) || otherShard.coords[i] != coords[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The header of a shard file
+	 */
+	private static class Header {
+		int formatVersion;
+		int payloadLength;
+		long payloadChecksum;
+		int compressedPayloadLength;
+		long compressedPayloadChecksum;  //Not in version 1 files
+	}
+
+	/**
+	 * The result of reading the shards folder
+	 */
+	static class ReadResult {
+		final List<Province> provinces = new ArrayList<>();
+		final List<String> corruptShardFileNames = new ArrayList<>();
+		int numCoordsOutsideMap = 0;
+	}
+
+	/**
+	 * Split the provinces in the given snapshot into shards
+	 *
+	 * @param snapshot the snapshot
+	 * @param regions the regions, in the order they are painted
+	 * @return the shards, by file name. Every region has a shard, even if it is empty
+	 */
+	static Map<String, Shard> createShards(ProvinceMapSnapshot snapshot, List<Region> regions) throws IOException {
+		Map<String, Shard> result = new LinkedHashMap<>();
+		List<Shard> shardsByRegionIndex = new ArrayList<>();
+		for (Region region : regions) {
+			Shard shard = result.computeIfAbsent(getFileName(region), fileName -> new Shard(fileName, region.getName()));
+			shardsByRegionIndex.add(shard);
+		}
+		Shard unassignedShard = new Shard(UNASSIGNED_FILE_NAME, "");
+		result.put(UNASSIGNED_FILE_NAME, unassignedShard);
+		//Assign each province to the last region which contains its home block
+		for (Province province : snapshot.getProvinces()) {
+			Shard shard = unassignedShard;
+			for (int i = regions.size() - 1; i >= 0; i--) {
+				if (regions.get(i).containsCoord(province.getHomeBlock())) {
+					shard = shardsByRegionIndex.get(i);
+					break;
+				}
+			}
+			shard.provinces.add(province);
+		}
+		//Sort, so an unchanged shard always has the same payload
+		Comparator<Province> homeBlockOrder = Comparator.comparingInt((Province province) -> province.getHomeBlock().getX()).thenComparingInt(province -> province.getHomeBlock().getZ());
+		for (Shard shard : result.values()) {
+			shard.provinces.sort(homeBlockOrder);
+			shard.coords = new ProvinceCoords[shard.provinces.size()];
+			for (int i = 0; i < shard.provinces.size(); i++) {
+				shard.coords[i] = snapshot.getCoordsInProvince(shard.provinces.get(i));
+			}
+			shard.metadataChecksum = checksum(encodeMetadata(shard.provinces));
+		}
+		return result;
+	}
+
+	private static String getFileName(Region region) {
+		return REGION_FILE_PREFIX + region.getName().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]", "_") + FILE_EXTENSION;
+	}
+
+	private static byte[] encodeMetadata(List<Province> provinces) throws IOException {
+		ByteArrayOutputStream metadataBuffer = new ByteArrayOutputStream();
+		DataOutputStream metadataOutput = new DataOutputStream(metadataBuffer);
+		for (Province province : provinces) {
+			BinaryProvinceFile.writeProvinceMetadata(metadataOutput, province);
+		}
+		return metadataBuffer.toByteArray();
+	}
+
+	/**
+	 * Encode the contents of the given shard, uncompressed
+	 * The same contents always give the same payload.
+	 */
+	static byte[] encodePayload(Shard shard) throws IOException {
+		ByteArrayOutputStream payloadBuffer = new ByteArrayOutputStream();
+		DataOutputStream payloadOutput = new DataOutputStream(payloadBuffer);
+		payloadOutput.writeInt(shard.provinces.size());
+		payloadOutput.write(encodeMetadata(shard.provinces));
+		for (ProvinceCoords coords : shard.coords) {
+			byte[] coordsSection = BinaryProvinceFile.encodeCoordRuns(coords);
+			payloadOutput.writeInt(coordsSection.length);
+			payloadOutput.write(coordsSection);
+		}
+		return payloadBuffer.toByteArray();
+	}
+
+	private static long checksum(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+	/**
+	 * Write the given shard into the given folder, replacing any existing file
+	 *
+	 * The shard is written to a temporary file, which is synced to disk,
+	 * and then atomically renamed over the old file.
+	 */
+	static void writeShard(File folder, Shard shard) throws IOException {
+		writeShard(folder, shard, encodePayload(shard));
+	}
+
+	/**
+	 * Write the given shard, using its already encoded payload
+	 *
+	 * @param payload the payload, from encodePayload()
+	 */
+	static void writeShard(File folder, Shard shard, byte[] payload) throws IOException {
+		byte[] compressedPayload = compress(payload);
+		File file = new File(folder, shard.fileName);
+		File tempFile = FileUtil.getTempFile(file);
+		FileOutputStream fileOutput = new FileOutputStream(tempFile);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput, 65536))) {
+			output.writeInt(MAGIC_NUMBER);
+			output.writeInt(FORMAT_VERSION);
+			output.writeUTF(shard.regionName);
+			output.writeInt(payload.length);
+			output.writeLong(checksum(payload));
+			output.writeInt(compressedPayload.length);
+			output.writeLong(checksum(compressedPayload));
+			output.write(compressedPayload);
+			output.flush();
+			fileOutput.getFD().sync();
+		}
+		FileUtil.replaceFileAtomically(tempFile, file);
+	}
+
+	/**
+	 * Check the shard file against the given shard
+	 *
+	 * The payload checksum in the header is compared with that of the given payload,
+	 * and the compressed bytes are checked against their own checksum.
+	 * So the file is not decompressed or decoded.
+	 * Version 1 files do not have a checksum of the compressed bytes, so they always need rewriting.
+	 *
+	 * @param payload the payload of the shard, from encodePayload()
+	 * @return true if the file is intact, and holds exactly the given shard
+	 */
+	static boolean isShardFileUpToDate(File folder, Shard shard, byte[] payload) throws IOException {
+		File file = new File(folder, shard.fileName);
+		if (!file.exists())
+			return false;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+			Header header = readHeader(input, file.length());
+			if (header == null || header.formatVersion != FORMAT_VERSION || header.payloadLength != payload.length || header.payloadChecksum != checksum(payload))
+				return false;
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[65536];
+			int numBytesRemaining = header.compressedPayloadLength;
+			int numBytesRead;
+			while (numBytesRemaining > 0) {
+				numBytesRead = input.read(buffer, 0, Math.min(buffer.length, numBytesRemaining));
+				if (numBytesRead < 0)
+					return false;
+				crc.update(buffer, 0, numBytesRead);
+				numBytesRemaining -= numBytesRead;
+			}
+			return crc.getValue() == header.compressedPayloadChecksum && input.read() < 0;
+		} catch (EOFException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Delete any shard files in the folder which are not in the given set, e.g. for regions which have been removed
+	 */
+	static void deleteOtherShardFiles(File folder, Set<String> shardFileNames) throws IOException {
+		for (File file : listShardFiles(folder)) {
+			if (!shardFileNames.contains(file.getName()) && !file.delete())
+				throw new IOException("Could not delete old shard file " + file.getName());
+		}
+	}
+
+	private static List<File> listShardFiles(File folder) {
+		List<File> result = new ArrayList<>();
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(FILE_EXTENSION)) {
+					result.add(file);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the folder contains any shard files, including damaged ones which were moved aside
+	 */
+	static boolean hasShardFiles(File folder) {
+		return !listShardFiles(folder).isEmpty() || !findDamagedShardFileNames(folder).isEmpty();
+	}
+
+	/**
+	 * Find the shard files which were moved aside because they were damaged (see FileUtil.moveDamagedFileAside()),
+	 * and have not been written again since.
+	 * Until they are, the provinces in them are missing from any map loaded from the shards.
+	 *
+	 * @return the original names of the shard files
+	 */
+	static List<String> findDamagedShardFileNames(File folder) {
+		List<String> result = new ArrayList<>();
+		File[] files = folder.listFiles();
+		if (files != null) {
+			String shardFileName;
+			for (File file : files) {
+				if (file.isFile() && file.getName().endsWith(FILE_EXTENSION + FileUtil.DAMAGED_FILE_EXTENSION)) {
+					shardFileName = file.getName().substring(0, file.getName().length() - FileUtil.DAMAGED_FILE_EXTENSION.length());
+					if (!new File(folder, shardFileName).exists()) {
+						result.add(shardFileName);
+					}
+				}
+			}
+		}
+		result.sort(null);
+		return result;
+	}
+
+	/**
+	 * Read the header of a shard file
+	 *
+	 * @param fileLength the length of the file, to check the header against
+	 * @return the header, or null if it is damaged, or the file is not a shard file of a known version
+	 */
+	@Nullable
+	private static Header readHeader(DataInputStream input, long fileLength) throws IOException {
+		Header header = new Header();
+		if (input.readInt() != MAGIC_NUMBER)
+			return null;
+		header.formatVersion = input.readInt();
+		if (header.formatVersion != FORMAT_VERSION && header.formatVersion != VERSION_1)
+			return null;
+		input.readUTF();
+		header.payloadLength = input.readInt();
+		header.payloadChecksum = input.readLong();
+		header.compressedPayloadLength = input.readInt();
+		if (header.formatVersion != VERSION_1) {
+			header.compressedPayloadChecksum = input.readLong();
+		}
+		if (header.payloadLength < 0 || header.compressedPayloadLength < 0 || header.compressedPayloadLength > fileLength)
+			return null;
+		return header;
+	}
+
+	/**
+	 * Read and decompress the payload of a shard file, checking it against its checksums
+	 *
+	 * @return the payload, or null if the file is damaged
+	 */
+	@Nullable
+	private static byte[] readPayload(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+			Header header = readHeader(input, file.length());
+			if (header == null)
+				return null;
+			byte[] compressedPayload = new byte[header.compressedPayloadLength];
+			input.readFully(compressedPayload);
+			if (header.formatVersion != VERSION_1 && checksum(compressedPayload) != header.compressedPayloadChecksum)
+				return null;
+			byte[] payload = decompress(compressedPayload, header.payloadLength);
+			if (payload == null || checksum(payload) != header.payloadChecksum)
+				return null;
+			return payload;
+		} catch (EOFException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Read every intact shard in the folder into the data holder
+	 *
+	 * The shards are decompressed and decoded in parallel, then the provinces are added on this thread.
+	 * Damaged shards are skipped, and listed in the result.
+	 *
+	 * @param folder the shards folder
+	 * @return the result
+	 * @throws IOException if a shard could not be read
+	 */
+	static ReadResult readShards(File folder) throws IOException {
+		List<File> shardFiles = listShardFiles(folder);
+		shardFiles.sort(Comparator.comparing(File::getName));
+		List<byte[]> payloads;
+		try {
+			payloads = new ArrayList<>(shardFiles.size());
+			shardFiles.parallelStream().map(file -> {
+				try {
+					return readPayload(file);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).forEachOrdered(payloads::add);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		ReadResult result = new ReadResult();
+		for (int i = 0; i < shardFiles.size(); i++) {
+			byte[] payload = payloads.get(i);
+			if (payload == null) {
+				result.corruptShardFileNames.add(shardFiles.get(i).getName());
+				continue;
+			}
+			try {
+				result.numCoordsOutsideMap += readPayloadIntoDataHolder(payload, result.provinces);
+			} catch (IOException e) {
+				result.corruptShardFileNames.add(shardFiles.get(i).getName());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of province coords which could not be loaded because they were outside the map
+	 */
+	private static int readPayloadIntoDataHolder(byte[] payload, List<Province> loadedProvinces) throws IOException {
+		//Decode everything before adding anything, so a malformed payload adds nothing
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+		int numProvinces = input.readInt();
+		if (numProvinces < 0 || numProvinces > payload.length)
+			throw new IOException("Malformed province shard");
+		List<Province> provinces = new ArrayList<>(numProvinces);
+		for (int i = 0; i < numProvinces; i++) {
+			provinces.add(BinaryProvinceFile.readProvinceMetadata(input));
+		}
+		byte[][] coordsSections = new byte[numProvinces][];
+		for (int i = 0; i < numProvinces; i++) {
+			int coordsSectionLength = input.readInt();
+			if (coordsSectionLength < 0 || coordsSectionLength > input.available())
+				throw new IOException("Malformed province shard");
+			coordsSections[i] = new byte[coordsSectionLength];
+			input.readFully(coordsSections[i]);
+		}
+		int[][] coordRuns = BinaryProvinceFile.decodeCoordRunsInParallel(coordsSections);
+		int numCoordsOutsideMap = 0;
+		for (int i = 0; i < numProvinces; i++) {
+			TownyProvincesDataHolder.getInstance().addProvince(provinces.get(i));
+			loadedProvinces.add(provinces.get(i));
+			numCoordsOutsideMap += BinaryProvinceFile.claimCoordRuns(coordRuns[i], provinces.get(i));
+		}
+		return numCoordsOutsideMap;
+	}
+
+	private static byte[] compress(byte[] bytes) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+			byte[] buffer = new byte[65536];
+			while (!deflater.finished()) {
+				output.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return output.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * @return the decompressed bytes, or null if there are fewer than expected, or they are not valid deflate data
+	 */
+	@Nullable
+	private static byte[] decompress(byte[] compressedBytes, int length) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressedBytes);
+			byte[] result = new byte[length];
+			int position = 0;
+			while (position < length) {
+				int numBytes = inflater.inflate(result, position, length - position);
+				if (numBytes == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+					return null;
+				position += numBytes;
+			}
+			return result;
+		} catch (DataFormatException e) {
+			return null;
+		} finally {
+			inflater.end();
+		}
+	}
+}
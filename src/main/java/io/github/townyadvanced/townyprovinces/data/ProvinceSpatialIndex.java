@@ -0,0 +1,183 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.TPCoord;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Uniform bucket grid over the provinces on the map
+ *
+ * Each bucket covers a square of chunks.
+ * Each province is listed in the bucket containing its homeblock,
+ * and in every bucket overlapped by its bounding box.
+ *
+ * Area queries only visit the buckets overlapping the area,
+ * so the cost depends on the size of the area and the result, not on the number of provinces.
+ *
+ * Built once per published snapshot, and never modified after that.
+ */
+public class ProvinceSpatialIndex {
+
+	public static final ProvinceSpatialIndex EMPTY = new ProvinceSpatialIndex(Collections.emptySet(), Collections.emptyMap());
+	private static final int BUCKET_SIDE_LENGTH_IN_CHUNKS = 32;
+	private static final Province[] NO_PROVINCES = new Province[0];
+
+	private final int minBucketX;
+	private final int minBucketZ;
+	private final int numBucketsX;
+	private final int numBucketsZ;
+	private final Province[][] homeBlockBuckets;
+	private final Province[][] extentBuckets;
+
+	/**
+	 * @param provinces the provinces
+	 * @param coordsInProvinceMap frozen coords of the provinces
+	 */
+	ProvinceSpatialIndex(Set<Province> provinces, Map<Province, ProvinceCoords> coordsInProvinceMap) {
+		//Find the area covered by the homeblocks and province bounding boxes
+		int minX = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int minZ = Integer.MAX_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+		TPCoord homeBlock;
+		ProvinceCoords coords;
+		for(Province province: provinces) {
+			homeBlock = province.getHomeBlock();
+			minX = Math.min(minX, homeBlock.getX());
+			maxX = Math.max(maxX, homeBlock.getX());
+			minZ = Math.min(minZ, homeBlock.getZ());
+			maxZ = Math.max(maxZ, homeBlock.getZ());
+			coords = getCoords(coordsInProvinceMap, province);
+			if(!coords.isEmpty()) {
+				minX = Math.min(minX, coords.getMinX());
+				maxX = Math.max(maxX, coords.getMaxX());
+				minZ = Math.min(minZ, coords.getMinZ());
+				maxZ = Math.max(maxZ, coords.getMaxZ());
+			}
+		}
+		if(provinces.isEmpty()) {
+			minBucketX = 0;
+			minBucketZ = 0;
+			numBucketsX = 0;
+			numBucketsZ = 0;
+			homeBlockBuckets = new Province[0][];
+			extentBuckets = new Province[0][];
+			return;
+		}
+		minBucketX = Math.floorDiv(minX, BUCKET_SIDE_LENGTH_IN_CHUNKS);
+		minBucketZ = Math.floorDiv(minZ, BUCKET_SIDE_LENGTH_IN_CHUNKS);
+		numBucketsX = Math.floorDiv(maxX, BUCKET_SIDE_LENGTH_IN_CHUNKS) - minBucketX + 1;
+		numBucketsZ = Math.floorDiv(maxZ, BUCKET_SIDE_LENGTH_IN_CHUNKS) - minBucketZ + 1;
+
+		//Fill the buckets
+		List<List<Province>> homeBlockLists = new ArrayList<>();
+		List<List<Province>> extentLists = new ArrayList<>();
+		for(int i = 0; i < numBucketsX * numBucketsZ; i++) {
+			homeBlockLists.add(null);
+			extentLists.add(null);
+		}
+		for(Province province: provinces) {
+			homeBlock = province.getHomeBlock();
+			addToBucket(homeBlockLists, getBucketIndex(toBucketX(homeBlock.getX()), toBucketZ(homeBlock.getZ())), province);
+			coords = getCoords(coordsInProvinceMap, province);
+			if(coords.isEmpty())
+				continue;
+			for(int bucketZ = toBucketZ(coords.getMinZ()); bucketZ <= toBucketZ(coords.getMaxZ()); bucketZ++) {
+				for(int bucketX = toBucketX(coords.getMinX()); bucketX <= toBucketX(coords.getMaxX()); bucketX++) {
+					addToBucket(extentLists, getBucketIndex(bucketX, bucketZ), province);
+				}
+			}
+		}
+		homeBlockBuckets = toBucketArray(homeBlockLists);
+		extentBuckets = toBucketArray(extentLists);
+	}
+
+	private static ProvinceCoords getCoords(Map<Province, ProvinceCoords> coordsInProvinceMap, Province province) {
+		ProvinceCoords result = coordsInProvinceMap.get(province);
+		return result == null ? ProvinceCoords.EMPTY : result;
+	}
+
+	private static void addToBucket(List<List<Province>> bucketLists, int bucketIndex, Province province) {
+		List<Province> bucket = bucketLists.get(bucketIndex);
+		if(bucket == null) {
+			bucket = new ArrayList<>(4);
+			bucketLists.set(bucketIndex, bucket);
+		}
+		bucket.add(province);
+	}
+
+	private static Province[][] toBucketArray(List<List<Province>> bucketLists) {
+		Province[][] result = new Province[bucketLists.size()][];
+		for(int i = 0; i < result.length; i++) {
+			List<Province> bucket = bucketLists.get(i);
+			result[i] = bucket == null ? NO_PROVINCES : bucket.toArray(new Province[0]);
+		}
+		return result;
+	}
+
+	private int toBucketX(int x) {
+		return Math.floorDiv(x, BUCKET_SIDE_LENGTH_IN_CHUNKS) - minBucketX;
+	}
+
+	private int toBucketZ(int z) {
+		return Math.floorDiv(z, BUCKET_SIDE_LENGTH_IN_CHUNKS) - minBucketZ;
+	}
+
+	private int getBucketIndex(int bucketX, int bucketZ) {
+		return (bucketZ * numBucketsX) + bucketX;
+	}
+
+	/**
+	 * Find the provinces in the given area
+	 *
+	 * @param snapshot the snapshot this index was built for
+	 * @param minX min chunk x (inclusive)
+	 * @param maxX max chunk x (inclusive)
+	 * @param minZ min chunk z (inclusive)
+	 * @param maxZ max chunk z (inclusive)
+	 * @param matchFullExtent if true, match provinces with any chunk in the area. If false, only match provinces with their homeblock in the area
+	 * @return set of matching provinces
+	 */
+	public Set<Province> getProvincesInArea(ProvinceMapSnapshot snapshot, int minX, int maxX, int minZ, int maxZ, boolean matchFullExtent) {
+		Set<Province> result = new HashSet<>();
+		if(numBucketsX == 0 || minX > maxX || minZ > maxZ)
+			return result;
+		//Clamp the bucket range to the index
+		int firstBucketX = Math.max(0, toBucketX(minX));
+		int lastBucketX = Math.min(numBucketsX - 1, toBucketX(maxX));
+		int firstBucketZ = Math.max(0, toBucketZ(minZ));
+		int lastBucketZ = Math.min(numBucketsZ - 1, toBucketZ(maxZ));
+		Province[][] buckets = matchFullExtent ? extentBuckets : homeBlockBuckets;
+		BitSet checkedProvinceHandles = matchFullExtent ? new BitSet() : null;  //Provinces can be in many extent buckets
+		TPCoord homeBlock;
+		for(int bucketZ = firstBucketZ; bucketZ <= lastBucketZ; bucketZ++) {
+			for(int bucketX = firstBucketX; bucketX <= lastBucketX; bucketX++) {
+				for(Province province: buckets[getBucketIndex(bucketX, bucketZ)]) {
+					if(matchFullExtent) {
+						if(!checkedProvinceHandles.get(province.getHandle())
+								&& snapshot.getCoordsInProvince(province).isAnyCoordInArea(minX, maxX, minZ, maxZ)) {
+							result.add(province);
+						}
+						checkedProvinceHandles.set(province.getHandle());
+					} else {
+						homeBlock = province.getHomeBlock();
+						if(homeBlock.getX() >= minX
+								&& homeBlock.getX() <= maxX
+								&& homeBlock.getZ() >= minZ
+								&& homeBlock.getZ() <= maxZ) {
+							result.add(province);
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+}
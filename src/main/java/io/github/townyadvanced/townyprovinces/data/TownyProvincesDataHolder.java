@@ -12,14 +12,13 @@ import io.github.townyadvanced.townyprovinces.objects.ProvinceType;
 import io.github.townyadvanced.townyprovinces.objects.Region;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
-import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
+import java.nio.IntBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,40 +33,50 @@ public class TownyProvincesDataHolder {
 	private static TownyProvincesDataHolder dataHolder = null;
 	
 	/**
-	 * Set of provinces
+	 * Published snapshot of the province map
+	 * 
+	 * All the reader methods in this class (e.g. getProvincesSet, getProvinceAtCoord) use this,
+	 * so readers never block, and never need to copy anything.
+	 * It is replaced atomically by publishSnapshot() and publishMetadataChanges().
 	 */
-	private final Set<Province> provincesSet;
-	
-	/**
-	 * Coord province map
+	private volatile ProvinceMapSnapshot snapshot;
+
+	/*
+	 * Working state
 	 * 
-	 * To get a province at a given location, search the map
-	 * To get a border at a given location, seach the map
-	 *   If it doesn't have the given coord, then its a border
+	 * Only used by writers (e.g. the regeneration job, or the loader), and only by one writer at a time.
+	 * Changes here are not visible to readers until publishSnapshot() is called.
 	 */
-	private final Map<TPCoord, Province> coordProvinceMap;
+	private final Set<Province> provincesSet;
+	private final Map<Province, ProvinceCoords> coordsInProvinceMap;
+	private final Set<Province> provincesWithModifiedCoords;  //Since the last publication
+	private boolean allCoordListsModified;  //Since the last publication
+	private boolean workingCoordsPending;  //If true, coordsInProvinceMap is not filled yet. See ensureWorkingCoordsLoaded()
 	
 	/**
-	 * Static Coord Search key
+	 * Coord province index
 	 * 
-	 * To use this
-	 * 1. First ensure your thread is safe vis synchronization
-	 * 2. Then modify the key with the coords you want
-	 * 3. Then use the key to search the coord-province map
+	 * To get a province at a given location, search the index
+	 * To get a border at a given location, seach the index
+	 *   If the given coord is unclaimed, then its a border
 	 * 
-	 * The advantage of this technique is that no new object
-	 * needs to be created to do a search of the map
+	 * After publication, this index is shared with the snapshot,
+	 * so it is copied before the next modification.
 	 */
-	private final TPFreeCoord searchCoord;
+	private CoordProvinceIndex coordProvinceIndex;
+	private boolean workingIndexPublished;
+	private ProvinceRegistry provinceRegistry;  //Gives each province an int handle. Replaced on a full reload, see clearAllProvinces()
 
-	private final Map<Province, List<TPCoord>> coordsInProvinceMap;
 
-
-	private TownyProvincesDataHolder() {
-		searchCoord = new TPFreeCoord(0, 0);
+	private TownyProvincesDataHolder(ProvinceRegistry provinceRegistry, CoordProvinceIndex coordProvinceIndex) {
+		this.provinceRegistry = provinceRegistry;
 		provincesSet = new HashSet<>();
-		coordProvinceMap = new HashMap<>();
 		coordsInProvinceMap = new HashMap<>();
+		provincesWithModifiedCoords = new HashSet<>();
+		allCoordListsModified = false;
+		this.coordProvinceIndex = coordProvinceIndex;
+		workingIndexPublished = true;
+		snapshot = new ProvinceMapSnapshot(0, Collections.emptySet(), coordProvinceIndex, Collections.emptyMap(), ProvinceAdjacencyGraph.EMPTY);
 	}
 
 
@@ -76,75 +85,465 @@ public class TownyProvincesDataHolder {
 	}
 	
 	public static boolean initialize() {
-		dataHolder = new TownyProvincesDataHolder();
+		if(TownyProvincesSettings.getOrderedRegionsList().isEmpty()) {
+			TownyProvinces.severe("No region definition files were found. At least one region definition file is required.");
+			return false;
+		}
+		ProvinceRegistry provinceRegistry = new ProvinceRegistry();
+		dataHolder = new TownyProvincesDataHolder(provinceRegistry, CoordProvinceIndex.createForMap(provinceRegistry));
 		return true;
 	}
 
-	public List<TPCoord> getListOfCoordsInProvince(Province province) {
-		return coordsInProvinceMap.getOrDefault(province, new ArrayList<>());
+	/**
+	 * Replace the data holder with an empty one, whose map has the given bounds
+	 * Needs neither the plugin nor the region definitions, e.g. for tests of the data files and of painting.
+	 */
+	public static void initializeForMap(int minX, int maxX, int minZ, int maxZ) {
+		ProvinceRegistry provinceRegistry = new ProvinceRegistry();
+		dataHolder = new TownyProvincesDataHolder(provinceRegistry, new CoordProvinceGrid(minX, maxX, minZ, maxZ, provinceRegistry));
+	}
+
+	public ProvinceMapSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Publish the working state as a new snapshot.
+	 * Call this when a writer has finished a complete set of changes.
+	 * 
+	 * Province coords are only copied for provinces which have changed since the last publication.
+	 * Likewise, the adjacency graph is only recalculated around those provinces.
+	 */
+	public synchronized void publishSnapshot() {
+		ProvinceMapSnapshot previousSnapshot = snapshot;
+		if(workingCoordsPending) {
+			//The coords have not been needed yet, so leave it to the snapshot to build them from the index
+			Set<Province> publishedProvincesSet = Collections.unmodifiableSet(new HashSet<>(provincesSet));
+			if(coordProvinceIndex == previousSnapshot.getCoordProvinceIndex() && publishedProvincesSet.equals(previousSnapshot.getProvinces())) {
+				snapshot = previousSnapshot.withNextVersion();
+			} else {
+				snapshot = ProvinceMapSnapshot.createWithLazyGeometry(previousSnapshot.getVersion() + 1, publishedProvincesSet, coordProvinceIndex);
+			}
+			workingIndexPublished = true;
+			provincesWithModifiedCoords.clear();
+			allCoordListsModified = false;
+			return;
+		}
+		Map<Province, ProvinceCoords> publishedCoordsInProvinceMap = new HashMap<>();
+		for(Map.Entry<Province, ProvinceCoords> mapEntry: coordsInProvinceMap.entrySet()) {
+			if(allCoordListsModified || provincesWithModifiedCoords.contains(mapEntry.getKey())) {
+				publishedCoordsInProvinceMap.put(mapEntry.getKey(), mapEntry.getValue().createFrozenCopy());
+			} else {
+				publishedCoordsInProvinceMap.put(mapEntry.getKey(), previousSnapshot.getCoordsInProvince(mapEntry.getKey()));
+			}
+		}
+		Set<Province> publishedProvincesSet = Collections.unmodifiableSet(new HashSet<>(provincesSet));
+		//Update adjacency graph
+		ProvinceAdjacencyGraph adjacencyGraph;
+		if(allCoordListsModified) {
+			adjacencyGraph = ProvinceAdjacencyGraph.build(publishedProvincesSet, publishedCoordsInProvinceMap, coordProvinceIndex);
+		} else {
+			Set<Province> changedProvinces = new HashSet<>(provincesWithModifiedCoords);
+			for(Province province: previousSnapshot.getProvinces()) {
+				if(!provincesSet.contains(province)) {
+					changedProvinces.add(province);  //Deleted
+				}
+			}
+			adjacencyGraph = ProvinceAdjacencyGraph.update(previousSnapshot.getAdjacencyGraph(), publishedProvincesSet, changedProvinces, publishedCoordsInProvinceMap, coordProvinceIndex);
+		}
+		snapshot = new ProvinceMapSnapshot(
+			previousSnapshot.getVersion() + 1,
+			publishedProvincesSet,
+			coordProvinceIndex,
+			Collections.unmodifiableMap(publishedCoordsInProvinceMap),
+			adjacencyGraph);
+		workingIndexPublished = true;
+		provincesWithModifiedCoords.clear();
+		allCoordListsModified = false;
+	}
+
+	/**
+	 * Publish a new version of the current snapshot, with the same contents.
+	 * Call this after changing province metadata (e.g. type, costs), so readers can see the version has changed.
+	 */
+	public synchronized void publishMetadataChanges() {
+		snapshot = snapshot.withNextVersion();
+	}
+
+	/**
+	 * Throw away any unpublished changes, and reset the working state to the published snapshot.
+	 * Call this if a writer fails part way through its changes.
+	 */
+	public synchronized void discardUnpublishedChanges() {
+		ProvinceMapSnapshot currentSnapshot = snapshot;
+		provincesSet.clear();
+		provincesSet.addAll(currentSnapshot.getProvinces());
+		coordsInProvinceMap.clear();
+		coordProvinceIndex = currentSnapshot.getCoordProvinceIndex();
+		provinceRegistry = coordProvinceIndex.getProvinceRegistry();  //In case a full reload had started a new one
+		workingIndexPublished = true;
+		provincesWithModifiedCoords.clear();
+		allCoordListsModified = false;
+		workingCoordsPending = true;  //Copied from the snapshot when next needed
+	}
+
+	/**
+	 * Fill the working coord lists, if they were skipped when loading, or when changes were discarded.
+	 * Call this before reading or modifying the working coord lists.
+	 * 
+	 * If the working index is still the published one, the coords are copied from the snapshot,
+	 * so the provinces do not count as modified.
+	 * Otherwise they are built from the working index.
+	 */
+	private void ensureWorkingCoordsLoaded() {
+		if(!workingCoordsPending)
+			return;
+		ProvinceMapSnapshot currentSnapshot = snapshot;
+		coordsInProvinceMap.clear();
+		if(coordProvinceIndex == currentSnapshot.getCoordProvinceIndex()) {
+			for(Province province: provincesSet) {
+				coordsInProvinceMap.put(province, currentSnapshot.getCoordsInProvince(province).createWorkingCopy());
+			}
+		} else {
+			for(Map.Entry<Province, ProvinceCoords> mapEntry: ProvinceMapSnapshot.buildCoordsInProvinceMap(provincesSet, coordProvinceIndex).entrySet()) {
+				coordsInProvinceMap.put(mapEntry.getKey(), mapEntry.getValue().createWorkingCopy());
+			}
+			allCoordListsModified = true;
+		}
+		workingCoordsPending = false;
+	}
+
+	/**
+	 * Get the working index, ready for modification.
+	 * If it is shared with the published snapshot, it is copied first.
+	 */
+	private CoordProvinceIndex getWritableCoordProvinceIndex() {
+		if(workingIndexPublished) {
+			coordProvinceIndex = coordProvinceIndex.copy();
+			workingIndexPublished = false;
+		}
+		return coordProvinceIndex;
+	}
+
+	public ProvinceCoords getCoordsInProvince(Province province) {
+		return snapshot.getCoordsInProvince(province);
+	}
+
+	/**
+	 * For writers only.
+	 * Get the coords in the province, including unpublished changes.
+	 */
+	public ProvinceCoords getWorkingCoordsInProvince(Province province) {
+		ensureWorkingCoordsLoaded();
+		return coordsInProvinceMap.getOrDefault(province, ProvinceCoords.EMPTY);
 	}
 
+	/**
+	 * For writers only.
+	 * Get the set of provinces, including unpublished changes.
+	 */
+	public Set<Province> getWorkingProvincesSet() {
+		return provincesSet;
+	}
+
+	/**
+	 * For writers only.
+	 * Get the province at the given coord, including unpublished changes.
+	 */
+	public @Nullable Province getWorkingProvinceAtCoord(int x, int z) {
+		return coordProvinceIndex.getProvince(x, z);
+	}
+
+	/**
+	 * For writers only.
+	 * Get the coord province index, including unpublished changes.
+	 */
+	public CoordProvinceIndex getWorkingCoordProvinceIndex() {
+		return coordProvinceIndex;
+	}
 
 	public void addProvince(Province province) {
+		provinceRegistry.register(province);
 		provincesSet.add(province);
 	}
 
-	public void claimCoordForProvince(TPCoord coord, Province province) {
-		coordProvinceMap.put(coord, province);
-		coordsInProvinceMap.computeIfAbsent(province, k -> new ArrayList<>()).add(coord);
+	/**
+	 * For writers only.
+	 * Get the registry which gives handles to the working provinces.
+	 * Readers should use the registry of the snapshot index, see getProvinceByHandle().
+	 */
+	public ProvinceRegistry getProvinceRegistry() {
+		return provinceRegistry;
+	}
+
+	/**
+	 * Get a province of the published snapshot by its int handle
+	 * 
+	 * @param handle the handle
+	 * @return the province, or null if no province has that handle
+	 */
+	public @Nullable Province getProvinceByHandle(int handle) {
+		return snapshot.getCoordProvinceIndex().getProvinceRegistry().getProvince(handle);
 	}
 
+	/**
+	 * Claim cells in bulk, e.g. from a memory-mapped grid file.
+	 * Only for use by the loader, when no coords are claimed yet.
+	 * 
+	 * If the working index is a grid with the same bounds,
+	 * the cells are copied straight into a new grid, without claiming one at a time.
+	 * In that case, building the coord list of each province can also be left until it is needed.
+	 *
+	 * @param cells one cell per chunk in the given bounds, in row-major order. 0 means unclaimed
+	 * @param provincesByCellValue provinces, indexed by cell value
+	 * @param lazyCoordLists if true, and the cells are copied directly, do not build the coord lists now
+	 * @return the number of claimed cells which could not be loaded because they were outside the map
+	 */
+	public int loadCells(int minX, int maxX, int minZ, int maxZ, IntBuffer cells, Province[] provincesByCellValue, boolean lazyCoordLists) {
+		int[] cellValues = new int[cells.remaining()];
+		cells.get(cellValues);
+		boolean copyDirectly = coordProvinceIndex instanceof CoordProvinceGrid
+			&& coordProvinceIndex.getMinX() == minX
+			&& coordProvinceIndex.getMaxX() == maxX
+			&& coordProvinceIndex.getMinZ() == minZ
+			&& coordProvinceIndex.getMaxZ() == maxZ;
+		boolean buildCoordLists = !(copyDirectly && lazyCoordLists);
+		ProvinceCoords[] coordsByCellValue = new ProvinceCoords[provincesByCellValue.length];
+		int numClaimedCells = 0;
+		int numCoordsOutsideMap = 0;
+		int cellIndex = 0;
+		int cellValue;
+		Province province;
+		for(int z = minZ; z <= maxZ; z++) {
+			for(int x = minX; x <= maxX; x++, cellIndex++) {
+				cellValue = cellValues[cellIndex];
+				if(cellValue == 0)
+					continue;
+				if(cellValue < 0 || cellValue >= provincesByCellValue.length) {
+					cellValues[cellIndex] = 0;  //Corrupt cell. Leave it unclaimed
+					continue;
+				}
+				province = provincesByCellValue[cellValue];
+				if(copyDirectly) {
+					cellValues[cellIndex] = province.getHandle();
+					if(buildCoordLists) {
+						if(coordsByCellValue[cellValue] == null) {
+							coordsByCellValue[cellValue] = coordsInProvinceMap.computeIfAbsent(province, k -> new ProvinceCoords());
+						}
+						coordsByCellValue[cellValue].add(x, z);
+					}
+					numClaimedCells++;
+				} else if (!claimCoordForProvince(x, z, province)) {
+					numCoordsOutsideMap++;
+				}
+			}
+		}
+		if(copyDirectly) {
+			coordProvinceIndex = new CoordProvinceGrid(minX, maxX, minZ, maxZ, provinceRegistry, cellValues, numClaimedCells);
+			workingIndexPublished = false;
+			allCoordListsModified = true;
+			workingCoordsPending = !buildCoordLists;
+		}
+		return numCoordsOutsideMap;
+	}
 
-	public Map<TPCoord, Province> getCoordProvinceMap() {
-		return coordProvinceMap;
+	/**
+	 * Claim the given coord for the given province
+	 * 
+	 * @return false if the coord is outside the map, and thus could not be claimed
+	 */
+	public boolean claimCoordForProvince(TPCoord coord, Province province) {
+		return claimCoordForProvince(coord.getX(), coord.getZ(), province);
+	}
+
+	/**
+	 * Claim the given coord for the given province
+	 *
+	 * @return false if the coord is outside the map, and thus could not be claimed
+	 */
+	public boolean claimCoordForProvince(int x, int z, Province province) {
+		if(!coordProvinceIndex.isInBounds(x, z)) {
+			return false;
+		}
+		ensureWorkingCoordsLoaded();
+		getWritableCoordProvinceIndex().setProvince(x, z, province);
+		coordsInProvinceMap.computeIfAbsent(province, k -> new ProvinceCoords()).add(x, z);
+		provincesWithModifiedCoords.add(province);
+		return true;
+	}
+
+	/**
+	 * For writers only.
+	 * Prepare to claim coords from several threads at once, see claimCoordConcurrently().
+	 *
+	 * @return false if the working index does not support this (only the grid does), in which case claim coords on one thread
+	 */
+	public boolean startConcurrentClaims() {
+		if(!(coordProvinceIndex instanceof CoordProvinceGrid))
+			return false;
+		ensureWorkingCoordsLoaded();
+		getWritableCoordProvinceIndex();
+		return true;
+	}
+
+	/**
+	 * For writers only.
+	 * Claim the given unclaimed coord for the given registered province, from one of several threads.
+	 * 
+	 * Call startConcurrentClaims() first. Each thread must claim coords in its own area.
+	 * Only the index is updated here. Once the threads have finished,
+	 * pass the coords they claimed to finishConcurrentClaims(), on the writer thread.
+	 *
+	 * @return false if the coord is outside the map, and thus could not be claimed
+	 */
+	public boolean claimCoordConcurrently(int x, int z, Province province) {
+		if(!coordProvinceIndex.isInBounds(x, z)) {
+			return false;
+		}
+		coordProvinceIndex.swapProvinceId(x, z, province.getHandle());
+		return true;
+	}
+
+	/**
+	 * For writers only.
+	 * Record coords which were claimed with claimCoordConcurrently(), in the coord list of the province.
+	 *
+	 * @param province the province
+	 * @param claimedCoords the coords claimed for it
+	 */
+	public void finishConcurrentClaims(Province province, ProvinceCoords claimedCoords) {
+		if(claimedCoords.isEmpty())
+			return;
+		ProvinceCoords coordsInProvince = coordsInProvinceMap.computeIfAbsent(province, k -> new ProvinceCoords());
+		for(int i = 0; i < claimedCoords.size(); i++) {
+			coordsInProvince.add(claimedCoords.getX(i), claimedCoords.getZ(i));
+		}
+		provincesWithModifiedCoords.add(province);
+		coordProvinceIndex.setNumClaimedCells(coordProvinceIndex.getNumClaimedCells() + claimedCoords.size());
+	}
+
+	/**
+	 * Remove all provinces and claimed coords.
+	 * The coord-province index is re-created with the current map dimensions.
+	 * 
+	 * A new province registry is started too, so the handles of the provinces added next start from 1 again.
+	 * Handles are otherwise never reused, so this is the only place they are compacted.
+	 * The old provinces keep their handles, so snapshots published before this keep resolving through the old registry.
+	 */
+	public void clearAllProvinces() {
+		provincesSet.clear();
+		coordsInProvinceMap.clear();
+		provinceRegistry = new ProvinceRegistry();
+		coordProvinceIndex = CoordProvinceIndex.createForMap(provinceRegistry);
+		workingIndexPublished = false;
+		allCoordListsModified = true;
+		workingCoordsPending = false;
+	}
+
+	/**
+	 * If the map dimensions (region file 1) have changed since the index was created,
+	 * re-create the index with the new dimensions, and re-claim all the coords which are still on the map.
+	 */
+	public void refreshMapDimensions() {
+		CoordProvinceIndex newIndex = CoordProvinceIndex.createForMap(provinceRegistry);
+		if(newIndex.hasSameBounds(coordProvinceIndex)) {
+			return;
+		}
+		TownyProvinces.info("Map dimensions have changed. Now rebuilding coord-province index.");
+		ensureWorkingCoordsLoaded();
+		for(Map.Entry<Province, ProvinceCoords> mapEntry: coordsInProvinceMap.entrySet()) {
+			ProvinceCoords coords = mapEntry.getValue();
+			ProvinceCoords coordsStillOnMap = new ProvinceCoords();
+			for(int i = 0; i < coords.size(); i++) {
+				if(newIndex.setProvince(coords.getX(i), coords.getZ(i), mapEntry.getKey())) {
+					coordsStillOnMap.add(coords.getX(i), coords.getZ(i));
+				}
+			}
+			mapEntry.setValue(coordsStillOnMap);
+		}
+		coordProvinceIndex = newIndex;
+		workingIndexPublished = false;
+		allCoordListsModified = true;
+		TownyProvinces.info("Coord-province index rebuilt.");
 	}
 	
 	public @Nullable Province getProvinceAtCoord(int x, int z) {
-		searchCoord.setValues(x,z);
-		return coordProvinceMap.get(searchCoord);
+		return snapshot.getProvinceAtCoord(x, z);
 	}
 
 	public @Nullable Province getProvinceAtWorldCoord(WorldCoord worldCoord) {
 		if(!TownyProvincesSettings.getWorld().equals(worldCoord.getBukkitWorld())) {
 			return null;
 		}
-		searchCoord.setValues(worldCoord.getX(),worldCoord.getZ());
-		return coordProvinceMap.get(searchCoord);
+		return snapshot.getProvinceAtCoord(worldCoord.getX(), worldCoord.getZ());
 	}
 	
 	public Set<Province> getProvincesSet() {
-		return provincesSet;
+		return snapshot.getProvinces();
 	}
 
 
-	public void deleteProvince(Province province, Map<TPCoord, TPCoord> unclaimedCoordsMap) {
-		List<TPCoord> coordsInProvince = coordsInProvinceMap.get(province);
-		TownyProvinces.info("Deleting province: " + province.getId() + " with " + coordsInProvince.size() + " coordinates.");
+	public void deleteProvince(Province province, CoordSet unclaimedCoords) {
+		ensureWorkingCoordsLoaded();
+		ProvinceCoords coordsInProvince = coordsInProvinceMap.get(province);
+		TownyProvinces.info("Deleting province: " + province.getId() + " with " + (coordsInProvince == null ? 0 : coordsInProvince.size()) + " coordinates.");
 		if (coordsInProvince != null) {
-			for (TPCoord coord : coordsInProvince) {
-				coordProvinceMap.remove(coord);
-				unclaimedCoordsMap.put(coord, coord);
+			CoordProvinceIndex index = getWritableCoordProvinceIndex();
+			for (int i = 0; i < coordsInProvince.size(); i++) {
+				index.clearCell(coordsInProvince.getX(i), coordsInProvince.getZ(i));
+				unclaimedCoords.add(coordsInProvince.getX(i), coordsInProvince.getZ(i));
 			}
 		}
 		provincesSet.remove(province);
 		coordsInProvinceMap.remove(province);
+		provincesWithModifiedCoords.remove(province);
 		TownyProvinces.info("Province " + province.getId() + " deleted.");
 	}
 
+	/**
+	 * Get the provinces neighbouring the given province
+	 *
+	 * @param province the province
+	 * @return unmodifiable set of neighbouring provinces
+	 */
+	public Set<Province> getNeighbouringProvinces(Province province) {
+		return snapshot.getAdjacencyGraph().getNeighbours(province);
+	}
+
+	/**
+	 * Get the border coords shared by the given provinces
+	 *
+	 * @return the shared border coords. Empty if the provinces do not share any
+	 */
+	public ProvinceCoords getSharedBorderCoords(Province province, Province otherProvince) {
+		return snapshot.getAdjacencyGraph().getSharedBorderCoords(province, otherProvince);
+	}
+
+	/**
+	 * Get the cached border coords of the given province
+	 * 
+	 * Note that these coords do not actually belong to the province
+	 * 
+	 * @param province the province
+	 * @return the border coords, sorted and immutable
+	 */
+	public ProvinceCoords getBorderCoords(Province province) {
+		return snapshot.getBorderCoords(province);
+	}
+
 	public Set<TPCoord> findAdjacentBorderCoords(TPCoord targetCoord) {
+		return findAdjacentBorderCoords(targetCoord.getX(), targetCoord.getZ());
+	}
+
+	public Set<TPCoord> findAdjacentBorderCoords(int targetX, int targetZ) {
 		Set<TPCoord> result = new HashSet<>();
 		int[] x = new int[]{-1,0,1,-1,1,-1,0,1};
 		int[] z = new int[]{-1,-1,-1,0,0,1,1,1};
+		CoordProvinceIndex index = snapshot.getCoordProvinceIndex();
 		for(int i = 0; i < 8; i++) {
-			if(isCoordUnclaimed(targetCoord.getX() + x[i], targetCoord.getZ() + z[i])) {
-				/*
-				 * Adjacent border coord found
-				 * If the result set does not already contain this the coord, create & add it
-				 */
-				searchCoord.setValues(targetCoord.getX() + x[i], targetCoord.getZ() + z[i]);
-				if(!result.contains(searchCoord)) {
-					result.add(new TPFinalCoord(targetCoord.getX() + x[i], targetCoord.getZ() + z[i]));
-				}
+			if(!index.isClaimed(targetX + x[i], targetZ + z[i])) {
+				//Adjacent border coord found. The 8 offsets are all different, so no duplicate check is needed
+				result.add(TPFinalCoord.of(targetX + x[i], targetZ + z[i]));
 			}
 		}
 		return result;
@@ -159,29 +558,25 @@ public class TownyProvincesDataHolder {
 	 * @return true if the coord is unclaimed
 	 */
 	public boolean isCoordUnclaimed(int x, int z) {
-		searchCoord.setValues(x,z);
-		return !coordProvinceMap.containsKey(searchCoord);
+		return snapshot.isCoordUnclaimed(x, z);
 	}
 
-	public Map<TPCoord, TPCoord> getAllUnclaimedCoordsOnMap() {
+	public CoordSet getAllUnclaimedCoordsOnMap() {
 		return getAllUnclaimedCoordsInRegion(TownyProvincesSettings.getFirstRegion());
 	}
 	
-	private Map<TPCoord, TPCoord> getAllUnclaimedCoordsInRegion(Region region) {
-		Map<TPCoord,TPCoord> result = new HashMap<>();
+	private CoordSet getAllUnclaimedCoordsInRegion(Region region) {
 		int minX = region.getTopLeftRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
 		int maxX  = region.getBottomRightRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
 		int minZ = region.getTopLeftRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
 		int maxZ  = region.getBottomRightRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
+		CoordProvinceIndex index = coordProvinceIndex;
+		CoordSet result = new CoordSet();
 		//Add to the result, any coords in the area which are not claimed
-		Map<TPCoord,Province> coordProvinceMap = TownyProvincesDataHolder.getInstance().getCoordProvinceMap();
-		TPCoord newCoord;
 		for(int x = minX; x <= maxX; x++) {
 			for (int z = minZ; z <= maxZ; z++) {
-				searchCoord.setValues(x,z);
-				if(!coordProvinceMap.containsKey(searchCoord)) {
-					newCoord = new TPFinalCoord(x,z);
-					result.put(newCoord, newCoord);
+				if(!index.isClaimed(x,z)) {
+					result.add(x,z);
 				}
 			}
 		}
@@ -192,65 +587,52 @@ public class TownyProvincesDataHolder {
 	/**
 	 * Get all the coords on the map,
 	 * assuming that region file 1 specifies the dimensions of the full map
-	 *
-	 * This method will re-use any required coord objects which are already in the coord-province map.
 	 */
-	public Map<TPCoord,TPCoord> getAllCoordsOnMap() {
+	public CoordSet getAllCoordsOnMap() {
 		TownyProvinces.info("Now Getting all coords on map");
-		Map<TPCoord,TPCoord> result = new HashMap<>();
 		Region firstRegion = TownyProvincesSettings.getFirstRegion();
 		int minX = firstRegion.getTopLeftRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
 		int maxX  = firstRegion.getBottomRightRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
 		int minZ = firstRegion.getTopLeftRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
 		int maxZ  = firstRegion.getBottomRightRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
-		
-		//First add any required coords which are already on the coord-province map
-		for(TPCoord coord: coordProvinceMap.keySet()) {
-			if(coord.getX() < minX)
-				continue;
-			if(coord.getX() > maxX)
-				continue;
-			if(coord.getZ() < minZ)
-				continue;
-			if(coord.getZ() > maxZ)
-				continue;
-			result.put(coord, coord);
-		}
-		
-		//Now create any required coords which are not already in the result
-		TPCoord newCoord;
+		CoordSet result = new CoordSet((maxX - minX + 1) * (maxZ - minZ + 1));
 		for(int x = minX; x <= maxX; x++) {
 			for (int z = minZ; z <= maxZ; z++) {
-				searchCoord.setValues(x,z);
-				if(!result.containsKey(searchCoord)) {
-					newCoord = new TPFinalCoord(x,z);
-					result.put(newCoord, newCoord);
-					if(result.size() % 10000 == 0) {
-						TownyProvinces.info("Num Coords Available: " + result.size());
-					}
-				}
+				result.add(x,z);
 			}
 		}
-		
+		TownyProvinces.info("Num Coords Available: " + result.size());
 		//Return result
 		return result;
 	}
 
+	/**
+	 * Find the provinces with their homeblock in the given area
+	 *
+	 * @param topLeftX top left block x
+	 * @param topLeftZ top left block z
+	 * @param bottomRightX bottom right block x
+	 * @param bottomRightZ bottom right block z
+	 * @return set of provinces
+	 */
 	public Set<Province> getProvincesInArea(int topLeftX, int topLeftZ, int bottomRightX, int bottomRightZ) {
-		Set<Province> result = new HashSet<>();
-		TPCoord homeBlock;
+		return getProvincesInArea(topLeftX, topLeftZ, bottomRightX, bottomRightZ, false);
+	}
+
+	/**
+	 * Find the provinces in the given area
+	 *
+	 * @param topLeftX top left block x
+	 * @param topLeftZ top left block z
+	 * @param bottomRightX bottom right block x
+	 * @param bottomRightZ bottom right block z
+	 * @param matchFullExtent if true, match provinces with any chunk in the area. If false, only match provinces with their homeblock in the area
+	 * @return set of provinces
+	 */
+	public Set<Province> getProvincesInArea(int topLeftX, int topLeftZ, int bottomRightX, int bottomRightZ, boolean matchFullExtent) {
 		Coord topLeftCoord = (Coord.parseCoord(topLeftX,topLeftZ));
 		Coord bottomRightCoord = (Coord.parseCoord(bottomRightX,bottomRightZ));
-		for(Province province: provincesSet) {
-			homeBlock = province.getHomeBlock();
-			if(homeBlock.getX() >= topLeftCoord.getX()
-					&& homeBlock.getX() <= bottomRightCoord.getX()
-					&& homeBlock.getZ() >= topLeftCoord.getZ()
-					&& homeBlock.getZ() <= bottomRightCoord.getZ()) {
-				result.add(province);
-			}
-		}
-		return result;
+		return snapshot.getProvincesInArea(topLeftCoord.getX(), bottomRightCoord.getX(), topLeftCoord.getZ(), bottomRightCoord.getZ(), matchFullExtent);
 	}
 
 	public int getNumTownBlocksInProvince(Town town, Province province) {
@@ -283,17 +665,49 @@ public class TownyProvincesDataHolder {
 	return result;
 	}
 
-	public void recalculateProvinceMapStyles() {
+	/**
+	 * Get the town in each province of the given snapshot, indexed by province handle
+	 * 
+	 * @return array of towns. Entries are null if the province has no town
+	 */
+	public Town[] getTownsByProvinceHandle(ProvinceMapSnapshot snapshot) {
+		Town[] result = new Town[snapshot.getCoordProvinceIndex().getProvinceRegistry().getMaxHandle() + 1];
+		Province province;
+		WorldCoord homeBlock;
+		for (Town town : TownyAPI.getInstance().getTowns()) {
+			if (!town.hasHomeBlock()) {
+				continue;
+			}
+			homeBlock = town.getHomeBlockOrNull().getWorldCoord();
+			if (!TownyProvincesSettings.getWorld().equals(homeBlock.getBukkitWorld())) {
+				continue;
+			}
+			province = snapshot.getProvinceAtCoord(homeBlock.getX(), homeBlock.getZ());
+			if (province == null || province.getHandle() >= result.length) {
+				continue;
+			}
+			result[province.getHandle()] = town;
+		}
+		return result;
+	}
+
+	/**
+	 * Recalculate the fill styles of the provinces in the given snapshot
+	 * Everything is read from that snapshot, so the styles of one map display pass match its borders.
+	 */
+	public void recalculateProvinceMapStyles(ProvinceMapSnapshot snapshot) {
 		Nation nation;
-		HashMap<Province, Town> provinceTownHashMap = TownyProvincesDataHolder.getInstance().getProvinceTownHashMap();
+		Town[] townsByProvinceHandle = getTownsByProvinceHandle(snapshot);
+		Town town;
 		if(TownyProvincesSettings.isMapNationColorsEnabled()) {
-			for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
+			for (Province province : snapshot.getProvinces()) {
 				//Determine fill colour
 				if (province.getType() == ProvinceType.CIVILIZED) {
 					//Civilized
-					if (provinceTownHashMap.containsKey(province)) {
+					town = province.getHandle() < townsByProvinceHandle.length ? townsByProvinceHandle[province.getHandle()] : null;
+					if (town != null) {
 						//Town present
-						nation = provinceTownHashMap.get(province).getNationOrNull();
+						nation = town.getNationOrNull();
 						if (nation == null) {
 							province.setFillOpacity(0);
 							province.setFillColour(0);
@@ -313,7 +727,7 @@ public class TownyProvincesDataHolder {
 				}
 			}
 		} else {
-			for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
+			for (Province province : snapshot.getProvinces()) {
 				province.setFillOpacity(0);
 				province.setFillColour(0);
 			}
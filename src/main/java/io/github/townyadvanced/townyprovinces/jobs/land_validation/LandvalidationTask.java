@@ -1,11 +1,12 @@
 package io.github.townyadvanced.townyprovinces.jobs.land_validation;
 
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.DataHandlerUtil;
+import io.github.townyadvanced.townyprovinces.data.ProvinceCoords;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.jobs.map_display.MapDisplayTaskController;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.ProvinceType;
-import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
 import io.github.townyadvanced.townyprovinces.util.BiomeUtil;
 import org.bukkit.Bukkit;
@@ -41,9 +42,9 @@ public class LandvalidationTask extends BukkitRunnable {
 		TownyProvincesDataHolder.getInstance().getProvincesSet().forEach(province -> {
 			if (province.isLandValidationRequested() != value) {
 				province.setLandValidationRequested(value);
-				province.saveData();
 			}
 		});
+		DataHandlerUtil.saveAllData();
 	}
 	
 	/**
@@ -60,7 +61,7 @@ public class LandvalidationTask extends BukkitRunnable {
 	 */
 	private void executeLandValidation() {
 		TownyProvinces.info("Now Running land validation job.");
-		Set<Province> provincesSet = new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet());
+		Set<Province> provincesSet = TownyProvincesDataHolder.getInstance().getProvincesSet();
 		AtomicInteger numProvincesProcessed = new AtomicInteger();
 
 		provincesSet.forEach(province -> {
@@ -86,6 +87,8 @@ public class LandvalidationTask extends BukkitRunnable {
 					LandValidationTaskController.stopTask();
 					return;
 				case PAUSE_REQUESTED:
+					TownyProvinces.info("Land Validation Task: Saving data");
+					DataHandlerUtil.saveAllData();
 					TownyProvinces.info("Land Validation Task: Pausing");
 					LandValidationTaskController.pauseTask();
 					return;
@@ -104,6 +107,8 @@ public class LandvalidationTask extends BukkitRunnable {
 			}
 		});
 
+		//Save all validated provinces at once, as they are all stored in one file
+		DataHandlerUtil.saveAllData();
 		LandValidationTaskController.stopTask();
 		TownyProvinces.info("Land Validation Job Complete.");
 	}
@@ -111,11 +116,13 @@ public class LandvalidationTask extends BukkitRunnable {
 	/**
 	 * 1. Record the proportions of different lands
 	 * 2. Set the province to land or sea, depending on the result
-	 * 3. Save
+	 * 
+	 * The province is saved at the end of the job
 	 * @param province
 	 */
 	private void doLandValidation(Province province) {
-		List<TPCoord> coordsInProvince = province.getListOfCoordsInProvince();
+		ProvinceCoords coordsInProvince = province.getCoordsInProvince();
+		if (coordsInProvince.isEmpty()) return;
 		World world = Bukkit.getWorld(TownyProvincesSettings.getWorldName());
 		if (world == null) return;
 
@@ -128,8 +135,8 @@ public class LandvalidationTask extends BukkitRunnable {
 		Random random = new Random();
 
 		for (int i = 0; i < totalChunksToScan; i++) {
-			TPCoord coordToTest = coordsInProvince.get(random.nextInt(coordsInProvince.size()));
-			BiomeType biomeType = BiomeUtil.getBiomeType(world, coordToTest);
+			int indexToTest = random.nextInt(coordsInProvince.size());
+			BiomeType biomeType = BiomeUtil.getBiomeType(world, coordsInProvince.getX(indexToTest), coordsInProvince.getZ(indexToTest));
 			if (biomeType != null) {
 				switch (biomeType) {
 					case GOOD_LAND:
@@ -166,8 +173,8 @@ public class LandvalidationTask extends BukkitRunnable {
 		// Mark as validated
 		province.setLandValidationRequested(false);
 
-		// Save data
-		province.saveData();
+		// Publish the new type to readers
+		TownyProvincesDataHolder.getInstance().publishMetadataChanges();
 
 		// Request dynmap refresh of homeblocks
 		MapDisplayTaskController.requestHomeBlocksRefresh();
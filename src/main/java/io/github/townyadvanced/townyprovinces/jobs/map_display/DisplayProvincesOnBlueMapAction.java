@@ -10,7 +10,7 @@ import de.bluecolored.bluemap.api.markers.*;
 import de.bluecolored.bluemap.api.math.Color;
 import de.bluecolored.bluemap.api.math.Shape;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
-import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
@@ -75,7 +75,7 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 	}
 
 	@Override
-	void executeAction(boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
+	void executeAction(ProvinceMapSnapshot snapshot, boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
 		BlueMapAPI.getInstance().ifPresent(api -> {
 			Optional<BlueMapWorld> world = api.getWorld(TownyProvincesSettings.getWorld());
 
@@ -97,8 +97,8 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 				}
 				addProvinceHomeBlocksMarkerSet();
 			}
-			drawProvinceHomeBlocks();
-			drawProvinceBorders();
+			drawProvinceHomeBlocks(snapshot);
+			drawProvinceBorders(snapshot);
 		});
 	}
 
@@ -126,9 +126,9 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 	}
 
 	@Override
-	protected void drawProvinceHomeBlocks() {
+	protected void drawProvinceHomeBlocks(ProvinceMapSnapshot snapshot) {
 		boolean biomeCostAdjustmentsEnabled = TownyProvincesSettings.isBiomeCostAdjustmentsEnabled();
-		Set<Province> provinceSet = new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet());
+		Set<Province> provinceSet = snapshot.getProvinces();
 
 		for (Province province : provinceSet) {
 			try {
@@ -174,8 +174,8 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 	}
 
 	@Override
-	protected void setProvinceMapStyles() {
-		for (Province province : new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+	protected void setProvinceMapStyles(ProvinceMapSnapshot snapshot) {
+		for (Province province : snapshot.getProvinces()) {
 			Marker marker = borderMarkerSet.get(province.getId());
 
 			if (marker == null) {
@@ -197,20 +197,20 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 	}
 
 	@Override
-	protected void drawProvinceBorder(Province province) {
+	protected void drawProvinceBorder(ProvinceMapSnapshot snapshot, Province province) {
 		int borderWeight = province.getType().getBorderWeight();
 		Color borderColor = new Color(province.getType().getBorderColour(), (float) province.getType().getBorderOpacity());
 		String markerId = province.getId();
 		Marker marker = borderMarkerSet.get(markerId);
 		if (marker == null) {
-			Set<TPCoord> borderCoords = findAllBorderCoords(province);
+			Set<TPCoord> borderCoords = findAllBorderCoords(snapshot, province);
 			if (borderCoords.size() > 0) {
 				// Arrange border blocks into drawable line
 				List<TPCoord> drawableLineOfBorderCoords = arrangeBorderCoordsIntoDrawableLine(borderCoords);
 
 				// Draw line
 				if (drawableLineOfBorderCoords.size() > 0) {
-					drawBorderLine(drawableLineOfBorderCoords, province, markerId);
+					drawBorderLine(snapshot, drawableLineOfBorderCoords, province, markerId);
 				} else {
 					TownyProvinces.severe("WARNING: Could not arrange province coords into drawable line for province ID: " + province.getId());
 				}
@@ -223,7 +223,7 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 		}
 	}
 
-	private void drawBorderLine(List<TPCoord> drawableLineOfBorderCoords, Province province, String markerId) {
+	private void drawBorderLine(ProvinceMapSnapshot snapshot, List<TPCoord> drawableLineOfBorderCoords, Province province, String markerId) {
 		int borderWeight = province.getType().getBorderWeight();
 		Color borderColor = new Color(province.getType().getBorderColour(), (float) province.getType().getBorderOpacity());
 		Color fillColor = new Color(province.getFillColour(), (float) province.getFillOpacity());
@@ -232,7 +232,7 @@ public class DisplayProvincesOnBlueMapAction extends DisplayProvincesOnMapAction
 			int x = (drawableLineOfBorderCoord.getX() * TownyProvincesSettings.getChunkSideLength());
 			int z = (drawableLineOfBorderCoord.getZ() * TownyProvincesSettings.getChunkSideLength());
 
-			calculatePullStrengthFromNearbyProvince(drawableLineOfBorderCoord, province, tpFreeCoord);
+			calculatePullStrengthFromNearbyProvince(snapshot, drawableLineOfBorderCoord, province, tpFreeCoord);
 
 			if (tpFreeCoord.getX() < 0) {
 				x += 7;
@@ -3,7 +3,7 @@ package io.github.townyadvanced.townyprovinces.jobs.map_display;
 import com.palmergames.bukkit.towny.TownyEconomyHandler;
 import com.palmergames.bukkit.towny.object.Translatable;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
-import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
@@ -20,7 +20,6 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -74,7 +73,7 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 	}
 	
 	@Override
-	void executeAction(boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
+	void executeAction(ProvinceMapSnapshot snapshot, boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
 		if(bordersRefreshRequested) {
 			if(bordersMarkerSet != null) {
 				bordersMarkerSet.deleteMarkerSet();
@@ -87,8 +86,8 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 			}
 			addProvinceHomeBlocksMarkerSet();
 		}
-		drawProvinceHomeBlocks();
-		drawProvinceBorders();
+		drawProvinceHomeBlocks(snapshot);
+		drawProvinceBorders(snapshot);
 	}
 	
 	private void addProvinceHomeBlocksMarkerSet() {
@@ -120,11 +119,11 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 	}
 	
 	@Override
-	protected void drawProvinceHomeBlocks() {
+	protected void drawProvinceHomeBlocks(ProvinceMapSnapshot snapshot) {
 		String border_icon_id = TownyProvincesSettings.getDynmapUsesTownCostsIcon() ? "provinces_costs_icon" : "coins";
 		boolean biomeCostAdjustmentsEnabled = TownyProvincesSettings.isBiomeCostAdjustmentsEnabled();
 		MarkerIcon homeBlockIcon = markerapi.getMarkerIcon(border_icon_id);
-		for (Province province : new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for (Province province : snapshot.getProvinces()) {
 			try {
 				TPCoord homeBlock = province.getHomeBlock();
 				String homeBlockMarkerId = "province_homeblock_" + homeBlock.getX() + "-" + homeBlock.getZ();
@@ -168,19 +167,19 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 	}
 	
 	@Override
-	protected void drawProvinceBorder(Province province) {
+	protected void drawProvinceBorder(ProvinceMapSnapshot snapshot, Province province) {
 		String markerId = province.getId();
 		AreaMarker marker = bordersMarkerSet.findAreaMarker(markerId);
 		if(marker == null) {
 			//Get border blocks
-			Set<TPCoord> borderCoords = findAllBorderCoords(province);
+			Set<TPCoord> borderCoords = findAllBorderCoords(snapshot, province);
 			if(borderCoords.size() > 0) {
 				//Arrange border blocks into drawable line
 				List<TPCoord> drawableLineOfBorderCoords = arrangeBorderCoordsIntoDrawableLine(borderCoords);
 				
 				//Draw line
 				if(drawableLineOfBorderCoords.size() > 0) {
-					drawBorderLine(drawableLineOfBorderCoords, province, markerId);
+					drawBorderLine(snapshot, drawableLineOfBorderCoords, province, markerId);
 				} else {
 					TownyProvinces.severe("WARNING: Could not arrange province coords into drawable line. If this message has not stopped repeating a few minutes after your server starts, please report it to TownyAdvanced.");
 				}
@@ -191,7 +190,7 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 		} 
 	}
 
-	private void drawBorderLine(List<TPCoord> drawableLineOfBorderCoords, Province province, String markerId) {
+	private void drawBorderLine(ProvinceMapSnapshot snapshot, List<TPCoord> drawableLineOfBorderCoords, Province province, String markerId) {
 		String worldName = TownyProvincesSettings.getWorldName();
 		double[] xPoints = new double[drawableLineOfBorderCoords.size()];
 		double[] zPoints = new double[drawableLineOfBorderCoords.size()];
@@ -230,7 +229,7 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 			 *   - On a sea border, the expected single line will either look slightly weaker or slightly thinner,
 			 *     while will most likely appear to users as a bug.
 			 * */
-			calculatePullStrengthFromNearbyProvince(drawableLineOfBorderCoords.get(i), province, tpFreeCoord);
+			calculatePullStrengthFromNearbyProvince(snapshot, drawableLineOfBorderCoords.get(i), province, tpFreeCoord);
 			if (tpFreeCoord.getX() < 0) {
 				xPoints[i] = xPoints[i] + 7;
 			} else if (tpFreeCoord.getX() > 0) {
@@ -252,10 +251,10 @@ public class DisplayProvincesOnDynmapAction extends DisplayProvincesOnMapAction
 			xPoints, zPoints, unknown2);
 	}
 	
-	protected void setProvinceMapStyles() {
+	protected void setProvinceMapStyles(ProvinceMapSnapshot snapshot) {
 		//Cycle provinces
 		AreaMarker areaMarker;
-		for(Province province: new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for(Province province: snapshot.getProvinces()) {
 			//Set border colour
 			areaMarker = bordersMarkerSet.findAreaMarker(province.getId());
 			if(areaMarker != null) {
@@ -1,10 +1,12 @@
 package io.github.townyadvanced.townyprovinces.jobs.map_display;
 
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.ProvinceCoords;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
-import io.github.townyadvanced.townyprovinces.jobs.province_generation.RegenerateRegionTask;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
 import io.github.townyadvanced.townyprovinces.util.TownyProvincesMathUtil;
 
@@ -15,44 +17,51 @@ import java.util.Set;
 
 public abstract class DisplayProvincesOnMapAction {
 
+	private static final int[] ADJACENT_OFFSETS_X = new int[]{-1,0,1,-1,1,-1,0,1};
+	private static final int[] ADJACENT_OFFSETS_Z = new int[]{-1,-1,-1,0,0,1,1,1};
+
 	/**
 	 * Display all TownyProvinces items
+	 * 
+	 * @param snapshot the snapshot to draw. The whole pass reads this one snapshot, so it never mixes versions of the map
 	 */
-	abstract void executeAction(boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested);
+	abstract void executeAction(ProvinceMapSnapshot snapshot, boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested);
 	
 	abstract void reloadAction();
 
-	abstract protected void drawProvinceHomeBlocks();
+	abstract protected void drawProvinceHomeBlocks(ProvinceMapSnapshot snapshot);
 
-	protected void drawProvinceBorders() {
+	protected void drawProvinceBorders(ProvinceMapSnapshot snapshot) {
 		//Find and draw the borders around each province
-		for (Province province: new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for (Province province: snapshot.getProvinces()) {
 			try {
-				drawProvinceBorder(province);
+				drawProvinceBorder(snapshot, province);
 			} catch (Throwable t) {
 				TownyProvinces.severe("Could not draw province borders for province at x " + province.getHomeBlock().getX() + " z " + province.getHomeBlock().getZ());
 				t.printStackTrace();
 			}
 		}
 		//Recalculate province map styles
-		TownyProvincesDataHolder.getInstance().recalculateProvinceMapStyles();
+		TownyProvincesDataHolder.getInstance().recalculateProvinceMapStyles(snapshot);
 		//Set province map styles
-		setProvinceMapStyles();
+		setProvinceMapStyles(snapshot);
 	}
 	
-	abstract protected void setProvinceMapStyles();
+	abstract protected void setProvinceMapStyles(ProvinceMapSnapshot snapshot);
 	
-	abstract protected void drawProvinceBorder(Province province);
+	abstract protected void drawProvinceBorder(ProvinceMapSnapshot snapshot, Province province);
 
 	/**
 	 * Find the border coords around the given province
+	 * The coords are read from the cache in the given snapshot
 	 *
 	 * Note that these co-cords will not actually belong to the province
 	 */
-	public static Set<TPCoord> findAllBorderCoords(Province province) {
-		Set<TPCoord> resultSet = new HashSet<>();
-		for(TPCoord provinceCoord: new ArrayList<>(province.getListOfCoordsInProvince())) {
-			resultSet.addAll(province.getAdjacentBorderCoords(provinceCoord));
+	public static Set<TPCoord> findAllBorderCoords(ProvinceMapSnapshot snapshot, Province province) {
+		ProvinceCoords borderCoords = snapshot.getBorderCoords(province);
+		Set<TPCoord> resultSet = new HashSet<>(borderCoords.size() * 2);
+		for(int i = 0; i < borderCoords.size(); i++) {
+			resultSet.add(TPFinalCoord.of(borderCoords.getX(i), borderCoords.getZ(i)));
 		}
 		return resultSet;
 	}
@@ -93,16 +102,16 @@ public abstract class DisplayProvincesOnMapAction {
 		return result;
 	}
 
-	protected void calculatePullStrengthFromNearbyProvince(TPCoord borderCoordBeingPulled, Province provinceDoingThePulling, TPFreeCoord freeCoord) {
+	protected void calculatePullStrengthFromNearbyProvince(ProvinceMapSnapshot snapshot, TPCoord borderCoordBeingPulled, Province provinceDoingThePulling, TPFreeCoord freeCoord) {
 		int pullStrengthX = 0;
 		int pullStrengthZ = 0;
-		Set<TPCoord> adjacentCoords = RegenerateRegionTask.findAllAdjacentCoords(borderCoordBeingPulled);
+		//Probe the adjacent coords directly, rather than allocating a set of them for every border coord
 		Province adjacenProvince;
-		for(TPCoord adjacentCoord: adjacentCoords) {
-			adjacenProvince = TownyProvincesDataHolder.getInstance().getProvinceAtCoord(adjacentCoord.getX(), adjacentCoord.getZ());
+		for(int i = 0; i < ADJACENT_OFFSETS_X.length; i++) {
+			adjacenProvince = snapshot.getProvinceAtCoord(borderCoordBeingPulled.getX() + ADJACENT_OFFSETS_X[i], borderCoordBeingPulled.getZ() + ADJACENT_OFFSETS_Z[i]);
 			if(adjacenProvince != null && adjacenProvince.equals(provinceDoingThePulling)) {
-				pullStrengthX += (adjacentCoord.getX() - borderCoordBeingPulled.getX());
-				pullStrengthZ += (adjacentCoord.getZ() - borderCoordBeingPulled.getZ());
+				pullStrengthX += ADJACENT_OFFSETS_X[i];
+				pullStrengthZ += ADJACENT_OFFSETS_Z[i];
 			}
 		}
 		freeCoord.setValues(pullStrengthX,pullStrengthZ);
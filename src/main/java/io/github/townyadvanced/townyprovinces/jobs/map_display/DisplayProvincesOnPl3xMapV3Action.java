@@ -3,7 +3,7 @@ package io.github.townyadvanced.townyprovinces.jobs.map_display;
 import com.palmergames.bukkit.towny.TownyEconomyHandler;
 import com.palmergames.bukkit.towny.object.Translatable;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
-import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
@@ -66,7 +66,7 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 	/**
 	 * Display all TownyProvinces items
 	 */
-	void executeAction(boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
+	void executeAction(ProvinceMapSnapshot snapshot, boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
 		world = Pl3xMap.api().getWorldRegistry().get(TownyProvincesSettings.getWorldName());
 		if (world == null) {
 			TownyProvinces.severe("World is not in Pl3xMap registry!");
@@ -85,8 +85,8 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 			}
 			addProvinceHomeBlocksLayer();
 		}
-		drawProvinceHomeBlocks();
-		drawProvinceBorders();
+		drawProvinceHomeBlocks(snapshot);
+		drawProvinceBorders(snapshot);
 	}
 	
 	private void addProvinceHomeBlocksLayer() {
@@ -139,10 +139,10 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 	}
 	
 	@Override
-	protected void drawProvinceHomeBlocks() {
+	protected void drawProvinceHomeBlocks(ProvinceMapSnapshot snapshot) {
 		String border_icon_id = "provinces_costs_icon";
 		boolean biomeCostAdjustmentsEnabled = TownyProvincesSettings.isBiomeCostAdjustmentsEnabled();
-		for (Province province : new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for (Province province : snapshot.getProvinces()) {
 			try {
 				TPCoord homeBlock = province.getHomeBlock();
 				String homeBlockMarkerId = "province_homeblock_" + homeBlock.getX() + "-" + homeBlock.getZ();
@@ -195,7 +195,7 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 	}
 	
 	@Override
-	protected void drawProvinceBorder(Province province) {
+	protected void drawProvinceBorder(ProvinceMapSnapshot snapshot, Province province) {
 		int borderColour = province.getType().getBorderColour() |
 			(int)(255*province.getType().getBorderOpacity()) << 24;
 		int borderWeight = province.getType().getBorderWeight();
@@ -203,14 +203,14 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 		Marker<?> polyLineMarker = bordersLayer.registeredMarkers().get(markerId);
 		if(polyLineMarker == null) {
 			//Get border blocks
-			Set<TPCoord> borderCoords = findAllBorderCoords(province);
+			Set<TPCoord> borderCoords = findAllBorderCoords(snapshot, province);
 			if(borderCoords.size() > 0) {
 				//Arrange border blocks into drawable line
 				List<TPCoord> drawableLineOfBorderCoords = arrangeBorderCoordsIntoDrawableLine(borderCoords);
 				
 				//Draw line
 				if(drawableLineOfBorderCoords.size() > 0) {
-					drawBorderLine(drawableLineOfBorderCoords, province, markerId);
+					drawBorderLine(snapshot, drawableLineOfBorderCoords, province, markerId);
 				} else {
 					TownyProvinces.severe("WARNING: Could not arrange province coords into drawable line. If this message has not stopped repeating a few minutes after your server starts, please report it to TownyAdvanced.");
 				}
@@ -231,7 +231,7 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 		} 
 	}
 
-	private void drawBorderLine(List<TPCoord> drawableLineOfBorderCoords, Province province, String markerId) {
+	private void drawBorderLine(ProvinceMapSnapshot snapshot, List<TPCoord> drawableLineOfBorderCoords, Province province, String markerId) {
 		int borderColour = province.getType().getBorderColour() |
 			(int)(255*province.getType().getBorderOpacity()) << 24;
 		int borderWeight = province.getType().getBorderWeight();
@@ -272,7 +272,7 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 			 *   - On a sea border, the expected single line will either look slightly weaker or slightly thinner,
 			 *     while will most likely appear to users as a bug.
 			 * */
-			calculatePullStrengthFromNearbyProvince(drawableLineOfBorderCoord, province, tpFreeCoord);
+			calculatePullStrengthFromNearbyProvince(snapshot, drawableLineOfBorderCoord, province, tpFreeCoord);
 			if (tpFreeCoord.getX() < 0) {
 				x += 7;
 			} else if (tpFreeCoord.getX() > 0) {
@@ -308,7 +308,7 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 		bordersLayer.addMarker(new Polygon(markerId, polyLine).setOptions(markerOptions));
 	}
 
-	protected void setProvinceMapStyles() {
+	protected void setProvinceMapStyles(ProvinceMapSnapshot snapshot) {
 		int requiredBorderColour;
 		int requiredBorderWeight;
 		int requiredFillColour;
@@ -316,7 +316,7 @@ public class DisplayProvincesOnPl3xMapV3Action extends DisplayProvincesOnMapActi
 		Fill fill;
 		String markerId;
 		//Cycle provinces
-		for(Province province: new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for(Province province: snapshot.getProvinces()) {
 			//Set styles if needed
 			markerId = province.getId();
 			Marker<?> polyLineMarker = bordersLayer.registeredMarkers().get(markerId);
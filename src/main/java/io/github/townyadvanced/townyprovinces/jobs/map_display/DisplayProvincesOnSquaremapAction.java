@@ -3,7 +3,7 @@ package io.github.townyadvanced.townyprovinces.jobs.map_display;
 import com.palmergames.bukkit.towny.TownyEconomyHandler;
 import com.palmergames.bukkit.towny.object.Translatable;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
-import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
@@ -46,7 +46,7 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 	/**
 	 * Display all TownyProvinces items
 	 */
-	void executeAction(boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
+	void executeAction(ProvinceMapSnapshot snapshot, boolean bordersRefreshRequested, boolean homeBlocksRefreshRequested) {
 		World bukkitWorld = Bukkit.getWorld(TownyProvincesSettings.getWorldName());
 		if (bukkitWorld == null) {
 			TownyProvinces.severe("Configured world is not a valid world!");
@@ -75,8 +75,8 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 			}
 			addProvinceHomeBlocksLayer();
 		}
-		drawProvinceHomeBlocks();
-		drawProvinceBorders();
+		drawProvinceHomeBlocks(snapshot);
+		drawProvinceBorders(snapshot);
 	}
 	
 	private void addProvinceHomeBlocksLayer() {
@@ -126,9 +126,9 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 	}
 	
 	@Override
-	protected void drawProvinceHomeBlocks() {
+	protected void drawProvinceHomeBlocks(ProvinceMapSnapshot snapshot) {
 		boolean biomeCostAdjustmentsEnabled = TownyProvincesSettings.isBiomeCostAdjustmentsEnabled();
-		for (Province province : new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for (Province province : snapshot.getProvinces()) {
 			try {
 				TPCoord homeBlock = province.getHomeBlock();
 				Key homeBlockMarkerKey = Key.of("province_homeblock_" + homeBlock.getX() + "-" + homeBlock.getZ());
@@ -181,7 +181,7 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 	}
 	
 	@Override
-	protected void drawProvinceBorder(Province province) {
+	protected void drawProvinceBorder(ProvinceMapSnapshot snapshot, Province province) {
 		Color borderColor = new Color(province.getType().getBorderColour());
 		double borderOpacity = province.getType().getBorderOpacity();
 		int borderWeight = province.getType().getBorderWeight();
@@ -189,14 +189,14 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 		Marker polyLineMarker = bordersLayer.registeredMarkers().get(markerKey);
 		if(polyLineMarker == null) {
 			//Get border blocks
-			Set<TPCoord> borderCoords = findAllBorderCoords(province);
+			Set<TPCoord> borderCoords = findAllBorderCoords(snapshot, province);
 			if(borderCoords.size() > 0) {
 				//Arrange border blocks into drawable line
 				List<TPCoord> drawableLineOfBorderCoords = arrangeBorderCoordsIntoDrawableLine(borderCoords);
 				
 				//Draw line
 				if(drawableLineOfBorderCoords.size() > 0) {
-					drawBorderLine(drawableLineOfBorderCoords, province, markerKey);
+					drawBorderLine(snapshot, drawableLineOfBorderCoords, province, markerKey);
 				} else {
 					TownyProvinces.severe("WARNING: Could not arrange province coords into drawable line. If this message has not stopped repeating a few minutes after your server starts, please report it to TownyAdvanced.");
 				}
@@ -220,7 +220,7 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 		} 
 	}
 
-	private void drawBorderLine(List<TPCoord> drawableLineOfBorderCoords, Province province, Key markerKey) {
+	private void drawBorderLine(ProvinceMapSnapshot snapshot, List<TPCoord> drawableLineOfBorderCoords, Province province, Key markerKey) {
 		Color borderColor = new Color(province.getType().getBorderColour());
 		double borderOpacity = province.getType().getBorderOpacity();
 		int borderWeight = province.getType().getBorderWeight();
@@ -261,7 +261,7 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 			 *   - On a sea border, the expected single line will either look slightly weaker or slightly thinner,
 			 *     while will most likely appear to users as a bug.
 			 * */
-			calculatePullStrengthFromNearbyProvince(drawableLineOfBorderCoord, province, tpFreeCoord);
+			calculatePullStrengthFromNearbyProvince(snapshot, drawableLineOfBorderCoord, province, tpFreeCoord);
 			if (tpFreeCoord.getX() < 0) {
 				x += 7;
 			} else if (tpFreeCoord.getX() > 0) {
@@ -291,7 +291,7 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 		bordersLayer.addMarker(markerKey, polygonMarker);
 	}
 
-	protected void setProvinceMapStyles() {
+	protected void setProvinceMapStyles(ProvinceMapSnapshot snapshot) {
 		Color requiredBorderColor;
 		int requiredBorderWeight;
 		double requiredBorderOpacity;
@@ -299,7 +299,7 @@ public class DisplayProvincesOnSquaremapAction extends DisplayProvincesOnMapActi
 		double requiredFillOpacity;
 		Key markerKey;
 		//Cycle provinces
-		for(Province province: new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
+		for(Province province: snapshot.getProvinces()) {
 			//Set styles if needed
 			markerKey = Key.of(province.getId());
 			Marker polygonMarker = bordersLayer.registeredMarkers().get(markerKey);
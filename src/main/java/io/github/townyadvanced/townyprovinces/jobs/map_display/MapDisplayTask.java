@@ -1,6 +1,8 @@
 package io.github.townyadvanced.townyprovinces.jobs.map_display;
 
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
+import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import org.bukkit.scheduler.BukkitRunnable;
 
 
@@ -18,13 +20,15 @@ public class MapDisplayTask extends BukkitRunnable {
 			} else {
 				jobRunning = true;
 			}
+			/*
+			 * Province data is read from the published snapshot,
+			 * so there is no need to wait for regeneration or price recalculation jobs.
+			 * One snapshot is used for the whole pass, so borders, neighbours and styles all come from the same version.
+			 */
 			synchronized (TownyProvinces.MAP_DISPLAY_JOB_LOCK) {
-				synchronized (TownyProvinces.REGION_REGENERATION_JOB_LOCK) {
-					synchronized (TownyProvinces.PRICE_RECALCULATION_JOB_LOCK) {
-						for (DisplayProvincesOnMapAction mapDisplayAction : MapDisplayTaskController.getMapDisplayActions()) {
-							mapDisplayAction.executeAction(MapDisplayTaskController.getFullProvinceColoursRefreshRequested(), MapDisplayTaskController.getFullHomeBlockIconsRefreshRequest());
-						}
-					}
+				ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+				for (DisplayProvincesOnMapAction mapDisplayAction : MapDisplayTaskController.getMapDisplayActions()) {
+					mapDisplayAction.executeAction(snapshot, MapDisplayTaskController.getFullProvinceColoursRefreshRequested(), MapDisplayTaskController.getFullHomeBlockIconsRefreshRequest());
 				}
 			}
 		} finally {
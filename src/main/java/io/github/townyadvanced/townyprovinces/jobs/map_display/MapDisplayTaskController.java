@@ -29,12 +29,8 @@ public class MapDisplayTaskController {
 		
 		mapDisplayTask.cancel();
 		synchronized (TownyProvinces.MAP_DISPLAY_JOB_LOCK) {
-			synchronized (TownyProvinces.REGION_REGENERATION_JOB_LOCK) {
-				synchronized (TownyProvinces.PRICE_RECALCULATION_JOB_LOCK) {
-					for (DisplayProvincesOnMapAction mapDisplayAction : getMapDisplayActions()) {
-						mapDisplayAction.reloadAction();
-					}
-				}
+			for (DisplayProvincesOnMapAction mapDisplayAction : getMapDisplayActions()) {
+				mapDisplayAction.reloadAction();
 			}
 		}
 		requestFullMapRefresh();
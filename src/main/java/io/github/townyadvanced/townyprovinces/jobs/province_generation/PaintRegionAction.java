@@ -2,6 +2,9 @@ package io.github.townyadvanced.townyprovinces.jobs.province_generation;
 
 import com.palmergames.bukkit.towny.object.Coord;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.CoordSet;
+import io.github.townyadvanced.townyprovinces.data.ProvinceCoords;
+import io.github.townyadvanced.townyprovinces.data.ProvinceOccupancyMap;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.messaging.Messaging;
 import io.github.townyadvanced.townyprovinces.objects.Province;
@@ -9,46 +12,87 @@ import io.github.townyadvanced.townyprovinces.objects.ProvinceClaimBrush;
 import io.github.townyadvanced.townyprovinces.objects.Region;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
-import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
 import io.github.townyadvanced.townyprovinces.util.TownyProvincesMathUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 /**
  * This class is used to paint a single region
  */
 public class PaintRegionAction {
 	private final Region region;
-	private final Map<TPCoord, TPCoord> unclaimedCoordsMap;
+	private final CoordSet unclaimedCoords;
 	private final int mapMinXCoord;
 	private final int mapMaxXCoord;
 	private final int mapMinZCoord;
 	private final int mapMaxZCoord;
+	private ProvinceOccupancyMap occupancyMap;  //Built after existing provinces are deleted. Kept up to date as chunks are claimed
+	@Nullable
+	private final RegionPaintingArea paintingArea;  //If not null, painting is kept inside this area, as other regions may be being painted at the same time
+	private final List<Province> createdProvinces = new ArrayList<>();
+	private final long generationSeed;
+	private final SplittableRandom random;  //Places provinces, and gives each brush its own random number generator
+	private final boolean parallelChunkClaimCompetitionEnabled;  //Never used with a painting area, as that is already painted alongside other regions
 	public final static double CHUNK_AREA_IN_SQUARE_METRES = Math.pow(TownyProvincesSettings.getChunkSideLength(), 2);
-	public final TPFreeCoord searchCoord;
+	private final static int[] CARDINAL_OFFSETS_X = new int[]{0, 0, 1, -1};
+	private final static int[] CARDINAL_OFFSETS_Z = new int[]{-1, 1, 0, 0};
+	private final static int[] DIAGONAL_OFFSETS_X = new int[]{-1, 1, 1, -1};
+	private final static int[] DIAGONAL_OFFSETS_Z = new int[]{-1, -1, 1, 1};
+	final static Comparator<Province> HOME_BLOCK_ORDER = Comparator.comparingInt((Province province) -> province.getHomeBlock().getX()).thenComparingInt(province -> province.getHomeBlock().getZ());
+
+	public PaintRegionAction(Region region, CoordSet unclaimedCoords) {
+		this(region, unclaimedCoords, TownyProvincesSettings.isParallelChunkClaimCompetitionEnabled());
+	}
+
+	/**
+	 * @param parallelChunkClaimCompetitionEnabled true to move the brushes in parallel tiles
+	 */
+	PaintRegionAction(Region region, CoordSet unclaimedCoords, boolean parallelChunkClaimCompetitionEnabled) {
+		this(region, unclaimedCoords, null, parallelChunkClaimCompetitionEnabled);
+	}
 
-	public PaintRegionAction(Region region, Map<TPCoord, TPCoord> unclaimedCoordsMap) {
+	/**
+	 * Paint a region, keeping inside the given area, so that other regions can be painted at the same time
+	 * 
+	 * @param paintingArea the area
+	 * @param unclaimedCoordsInArea the unclaimed coords in the area. Only these can be claimed
+	 */
+	PaintRegionAction(RegionPaintingArea paintingArea, CoordSet unclaimedCoordsInArea) {
+		this(paintingArea.getRegion(), unclaimedCoordsInArea, paintingArea, false);
+	}
+
+	private PaintRegionAction(Region region, CoordSet unclaimedCoords, @Nullable RegionPaintingArea paintingArea, boolean parallelChunkClaimCompetitionEnabled) {
 		this.region = region;
-		this.unclaimedCoordsMap = unclaimedCoordsMap;
+		this.unclaimedCoords = unclaimedCoords;
+		this.paintingArea = paintingArea;
+		this.parallelChunkClaimCompetitionEnabled = parallelChunkClaimCompetitionEnabled;
+		//Without a seed in the region definition, each regeneration is different
+		this.generationSeed = region.getGenerationSeed() != null ? region.getGenerationSeed() : new SplittableRandom().nextLong();
+		this.random = new SplittableRandom(generationSeed);
 		this.mapMinXCoord = TownyProvincesSettings.getFirstRegion().getTopLeftRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
 		this.mapMaxXCoord = TownyProvincesSettings.getFirstRegion().getBottomRightRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
 		this.mapMinZCoord = TownyProvincesSettings.getFirstRegion().getTopLeftRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
 		this.mapMaxZCoord = TownyProvincesSettings.getFirstRegion().getBottomRightRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
-		this.searchCoord = new TPFreeCoord(0, 0);
 	}
 	
 	boolean executeAction(boolean deleteExistingProvincesInRegion) {
 		TownyProvinces.info("-------------------------------");
 		TownyProvinces.info("Now Painting Provinces In Region: " + region.getName());
+		TownyProvinces.info("Generation Seed: " + generationSeed);
 
 		//Delete most provinces in the region, except those which are mostly outside
 		if(deleteExistingProvincesInRegion) {
@@ -57,6 +101,8 @@ public class PaintRegionAction {
 			}
 		}
 
+		occupancyMap = ProvinceOccupancyMap.build(TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex());
+
 		/*
 		 * Create provinces including the initial claimed area
 		 */
@@ -85,26 +131,26 @@ public class PaintRegionAction {
 		return true;
 	}
 
+	/**
+	 * Assign the unclaimed coords to the provinces already on the map, without generating or painting any provinces
+	 * e.g. for tests
+	 */
+	boolean executeUnclaimedCoordAssignment() {
+		occupancyMap = ProvinceOccupancyMap.build(TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex());
+		return assignUnclaimedCoordsToProvinces();
+	}
+
 	private boolean deleteExistingProvincesWhichAreMostlyInSpecifiedArea() {
 		TownyProvinces.info("Now deleting provinces which are mostly in the specified area.");
 		int numProvincesDeleted = 0;
-		int minX = region.getTopLeftRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
-		int maxX = region.getBottomRightRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
-		int minZ = region.getTopLeftRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
-		int maxZ = region.getBottomRightRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
-		for (Province province : new HashSet<>(TownyProvincesDataHolder.getInstance().getProvincesSet())) {
-			List<TPCoord> coordsInProvince = province.getListOfCoordsInProvince();
-			int numProvinceBlocksInSpecifiedArea = 0;
-			for (TPCoord coordInProvince : coordsInProvince) {
-				if (coordInProvince.getX() < minX || coordInProvince.getX() > maxX || coordInProvince.getZ() < minZ || coordInProvince.getZ() > maxZ) {
-					continue;
-				}
-				numProvinceBlocksInSpecifiedArea++;
-			}
-			if (numProvinceBlocksInSpecifiedArea > (coordsInProvince.size() / 2)) {
-				TownyProvincesDataHolder.getInstance().deleteProvince(province, unclaimedCoordsMap);
-				numProvincesDeleted++;
+		//If painting in an area, the provinces were found along with the area, before any region started painting
+		List<Province> provincesToDelete = paintingArea != null ? paintingArea.getProvincesToDelete() : RegionPaintingArea.findProvincesMostlyInRegion(region);
+		TownyProvincesDataHolder dataHolder = TownyProvincesDataHolder.getInstance();
+		for (Province province : provincesToDelete) {
+			synchronized (dataHolder) {
+				dataHolder.deleteProvince(province, unclaimedCoords);
 			}
+			numProvincesDeleted++;
 		}
 		TownyProvinces.info("" + numProvincesDeleted + " provinces deleted.");
 		return true;
@@ -130,7 +176,7 @@ public class PaintRegionAction {
 				TownyProvinces.severe("Could not generate province at protected location: " + mapEntry.getKey());
 				return false;
 			} else {
-				TownyProvincesDataHolder.getInstance().addProvince(province);
+				addProvince(province);
 				provincesCreated++;
 			}
 		}
@@ -139,7 +185,7 @@ public class PaintRegionAction {
 			if (province == null) {
 				break;
 			} else {
-				TownyProvincesDataHolder.getInstance().addProvince(province);
+				addProvince(province);
 				provincesCreated++;
 			}
 		}
@@ -147,6 +193,26 @@ public class PaintRegionAction {
 		return true;
 	}
 
+	private void addProvince(Province province) {
+		TownyProvincesDataHolder dataHolder = TownyProvincesDataHolder.getInstance();
+		synchronized (dataHolder) {
+			dataHolder.addProvince(province);
+		}
+		createdProvinces.add(province);
+	}
+
+	/**
+	 * Claim a coord for a province
+	 * The data holder is locked while doing so, as other regions may be being painted at the same time
+	 */
+	private void claimCoord(int x, int z, Province province) {
+		TownyProvincesDataHolder dataHolder = TownyProvincesDataHolder.getInstance();
+		synchronized (dataHolder) {
+			dataHolder.claimCoordForProvince(x, z, province);
+		}
+		occupancyMap.setClaimed(x, z, province);
+	}
+
 	private int calculateMaxNumberOfProvinces() {
 		double regionAreaSquareMetres = calculateRegionAreaSquareMetres();
 		int maxNumProvinces = (int) (regionAreaSquareMetres / region.getAverageProvinceSize());
@@ -169,11 +235,11 @@ public class PaintRegionAction {
 	 */
 	private Province generateProtectedProvince(Location location) {
 		Coord coord = Coord.parseCoord(location);
-		TPCoord homeBlockCoord = new TPFinalCoord(coord.getX(), coord.getZ());
+		TPCoord homeBlockCoord = TPFinalCoord.of(coord.getX(), coord.getZ());
 		Province province = new Province(homeBlockCoord);
 		if (validateBrushPosition(homeBlockCoord.getX(), homeBlockCoord.getZ(), province)) {
-			ProvinceClaimBrush brush = new ProvinceClaimBrush(province);
-			claimChunksCoveredByBrush(brush);
+			ProvinceClaimBrush brush = new ProvinceClaimBrush(province, random);
+			claimChunksCoveredByBrush(brush, null);
 			return province;
 		} else {
 			return null;
@@ -191,16 +257,16 @@ public class PaintRegionAction {
 		double zLowest = region.getRegionMinZ() + region.getBrushSquareRadiusInChunks() + 3;
 		double zHighest = region.getRegionMaxZ() - region.getBrushSquareRadiusInChunks() - 3;
 		for (int i = 0; i < 100; i++) {
-			double x = xLowest + (Math.random() * (xHighest - xLowest));
-			double z = zLowest + (Math.random() * (zHighest - zLowest));
+			double x = xLowest + (random.nextDouble() * (xHighest - xLowest));
+			double z = zLowest + (random.nextDouble() * (zHighest - zLowest));
 			Coord coord = Coord.parseCoord((int) x, (int) z);
 			int xCoord = coord.getX();
 			int zCoord = coord.getZ();
-			TPCoord homeBlockCoord = new TPFinalCoord(xCoord, zCoord);
+			TPCoord homeBlockCoord = TPFinalCoord.of(xCoord, zCoord);
 			Province province = new Province(homeBlockCoord);
 			if (validateBrushPosition(homeBlockCoord.getX(), homeBlockCoord.getZ(), province)) {
-				ProvinceClaimBrush brush = new ProvinceClaimBrush(province);
-				claimChunksCoveredByBrush(brush);
+				ProvinceClaimBrush brush = new ProvinceClaimBrush(province, random);
+				claimChunksCoveredByBrush(brush, null);
 				return province;
 			}
 		}
@@ -210,51 +276,144 @@ public class PaintRegionAction {
 	private boolean executeChunkClaimCompetition() {
 		TownyProvinces.info("Chunk Claim Competition Started");
 
+		List<Province> provincesToPaint = new ArrayList<>();
+		TownyProvincesDataHolder dataHolder = TownyProvincesDataHolder.getInstance();
+		synchronized (dataHolder) {
+			for (Province province : dataHolder.getWorkingProvincesSet()) {
+				//If painting in an area, provinces based outside it are only painted if they are neighbours (see below)
+				if (paintingArea == null || paintingArea.contains(province.getHomeBlock().getX(), province.getHomeBlock().getZ())) {
+					provincesToPaint.add(province);
+				}
+			}
+		}
+		if (paintingArea != null) {
+			//Found before any region in the wave started painting, so the list does not depend on the other regions' progress
+			provincesToPaint.addAll(paintingArea.getNeighbouringProvinces());
+		}
+		//Sorted, so that a given seed always gives each province's brush the same random number generator
+		provincesToPaint.sort(HOME_BLOCK_ORDER);
 		List<ProvinceClaimBrush> provinceClaimBrushes = new ArrayList<>();
-		for (Province province : TownyProvincesDataHolder.getInstance().getProvincesSet()) {
-			provinceClaimBrushes.add(new ProvinceClaimBrush(province));
+		for (Province province : provincesToPaint) {
+			provinceClaimBrushes.add(new ProvinceClaimBrush(province, random.split()));
 		}
 
 		for (ProvinceClaimBrush provinceClaimBrush : provinceClaimBrushes) {
-			claimChunksCoveredByBrush(provinceClaimBrush);
+			claimChunksCoveredByBrush(provinceClaimBrush, null);
 		}
 
-		int moveDeltaX;
-		int moveDeltaZ;
-		int newX;
-		int newZ;
+		boolean paintInParallel = parallelChunkClaimCompetitionEnabled
+			&& TownyProvincesDataHolder.getInstance().startConcurrentClaims();
+		if (paintInParallel) {
+			TownyProvinces.info("Painting in parallel, in tiles of " + getParallelPaintingTileSideLength() + " chunks");
+		}
 		for (int i = 0; i < region.getMaxBrushMoves(); i++) {
 			TownyProvinces.info("Painting Cycle: " + i + " / " + region.getMaxBrushMoves());
-			for (ProvinceClaimBrush provinceClaimBrush : provinceClaimBrushes) {
-				if (!provinceClaimBrush.isActive())
-					continue;
-				moveDeltaX = TownyProvincesMathUtil.generateRandomInteger(-region.getMaxBrushMoveAmountInChunks(), region.getMaxBrushMoveAmountInChunks());
-				moveDeltaZ = TownyProvincesMathUtil.generateRandomInteger(-region.getMaxBrushMoveAmountInChunks(), region.getMaxBrushMoveAmountInChunks());
-				moveDeltaX = moveDeltaX > 0 ? Math.max(moveDeltaX, region.getMinBrushMoveAmountInChunks()) : Math.min(moveDeltaX, -region.getMinBrushMoveAmountInChunks());
-				moveDeltaZ = moveDeltaZ > 0 ? Math.max(moveDeltaZ, region.getMinBrushMoveAmountInChunks()) : Math.min(moveDeltaZ, -region.getMinBrushMoveAmountInChunks());
-				newX = provinceClaimBrush.getCurrentPosition().getX() + moveDeltaX;
-				newZ = provinceClaimBrush.getCurrentPosition().getZ() + moveDeltaZ;
-
-				if (validateBrushPosition(newX, newZ, provinceClaimBrush.getProvince())) {
-					provinceClaimBrush.moveBrushTo(newX, newZ);
-					claimChunksCoveredByBrush(provinceClaimBrush);
-					if (hasBrushHitClaimLimit(provinceClaimBrush)) {
-						provinceClaimBrush.setActive(false);
+			if (paintInParallel) {
+				moveBrushesInParallel(provinceClaimBrushes);
+			} else {
+				for (ProvinceClaimBrush provinceClaimBrush : provinceClaimBrushes) {
+					if (provinceClaimBrush.isActive()) {
+						moveBrush(provinceClaimBrush, null);
 					}
 				}
 			}
 		}
 		TownyProvinces.info("Chunk Claim Competition Complete.");
-		TownyProvinces.info("Num Chunks Claimed: " + TownyProvincesDataHolder.getInstance().getCoordProvinceMap().size());
-		TownyProvinces.info("Num Chunks Unclaimed: " + unclaimedCoordsMap.size());
+		TownyProvinces.info("Num Chunks Claimed: " + TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex().getNumClaimedCells());
+		TownyProvinces.info("Num Chunks Unclaimed: " + unclaimedCoords.size());
 		return true;
 	}
+
+	/**
+	 * Move the brush a random amount, then claim the chunks it covers, if the new position is valid
+	 *
+	 * @param provinceClaimBrush the brush
+	 * @param concurrentClaims if not null, the brush is being moved on one of several threads,
+	 *                         and the chunks it claims are added here, to be recorded later by the caller
+	 */
+	private void moveBrush(ProvinceClaimBrush provinceClaimBrush, @Nullable ProvinceCoords concurrentClaims) {
+		int moveDeltaX = TownyProvincesMathUtil.generateRandomInteger(-region.getMaxBrushMoveAmountInChunks(), region.getMaxBrushMoveAmountInChunks(), provinceClaimBrush.getRandom());
+		int moveDeltaZ = TownyProvincesMathUtil.generateRandomInteger(-region.getMaxBrushMoveAmountInChunks(), region.getMaxBrushMoveAmountInChunks(), provinceClaimBrush.getRandom());
+		moveDeltaX = moveDeltaX > 0 ? Math.max(moveDeltaX, region.getMinBrushMoveAmountInChunks()) : Math.min(moveDeltaX, -region.getMinBrushMoveAmountInChunks());
+		moveDeltaZ = moveDeltaZ > 0 ? Math.max(moveDeltaZ, region.getMinBrushMoveAmountInChunks()) : Math.min(moveDeltaZ, -region.getMinBrushMoveAmountInChunks());
+		int newX = provinceClaimBrush.getCurrentPosition().getX() + moveDeltaX;
+		int newZ = provinceClaimBrush.getCurrentPosition().getZ() + moveDeltaZ;
+
+		if (validateBrushPosition(newX, newZ, provinceClaimBrush.getProvince())) {
+			provinceClaimBrush.moveBrushTo(newX, newZ);
+			claimChunksCoveredByBrush(provinceClaimBrush, concurrentClaims);
+			if (hasBrushHitClaimLimit(provinceClaimBrush)) {
+				provinceClaimBrush.setActive(false);
+			}
+		}
+	}
+
+	/**
+	 * Tiles are wide enough that a brush moving from inside one tile
+	 * cannot touch (or check) any chunk that a brush moving from inside the next-but-one tile can
+	 */
+	private int getParallelPaintingTileSideLength() {
+		int maxMoveAmount = Math.max(region.getMaxBrushMoveAmountInChunks(), region.getMinBrushMoveAmountInChunks());
+		return 2 * (maxMoveAmount + region.getBrushSquareRadiusInChunks() + 1);
+	}
+
+	/**
+	 * Move each active brush once, on several threads
+	 * 
+	 * The brushes are grouped into square tiles, by position.
+	 * The tiles are then processed in 4 checkerboard phases, e.g. first all tiles with even x and even z.
+	 * In each phase, the tiles are moved in parallel, and the brushes in each tile one after another.
+	 * Tiles in the same phase are a whole tile apart, so their brushes never contend for chunks.
+	 * After each phase, the claimed chunks are recorded on this thread, in tile order.
+	 * As each brush has its own random number generator, the result does not depend on how the threads are scheduled.
+	 */
+	private void moveBrushesInParallel(List<ProvinceClaimBrush> provinceClaimBrushes) {
+		int tileSideLength = getParallelPaintingTileSideLength();
+		List<Map<Long, List<ProvinceClaimBrush>>> tilesByPhase = new ArrayList<>();
+		for (int phase = 0; phase < 4; phase++) {
+			tilesByPhase.add(new TreeMap<>());
+		}
+		int tileX;
+		int tileZ;
+		for (ProvinceClaimBrush provinceClaimBrush : provinceClaimBrushes) {
+			if (!provinceClaimBrush.isActive())
+				continue;
+			tileX = Math.floorDiv(provinceClaimBrush.getCurrentPosition().getX() - mapMinXCoord, tileSideLength);
+			tileZ = Math.floorDiv(provinceClaimBrush.getCurrentPosition().getZ() - mapMinZCoord, tileSideLength);
+			tilesByPhase.get(Math.floorMod(tileX, 2) + (2 * Math.floorMod(tileZ, 2)))
+				.computeIfAbsent(CoordUtil.packCoord(tileX, tileZ), k -> new ArrayList<>())
+				.add(provinceClaimBrush);
+		}
+		for (Map<Long, List<ProvinceClaimBrush>> tiles : tilesByPhase) {
+			List<List<ProvinceClaimBrush>> brushesByTile = new ArrayList<>(tiles.values());
+			List<List<ProvinceCoords>> claimsByTile = brushesByTile.parallelStream().map(brushesInTile -> {
+				List<ProvinceCoords> claimsInTile = new ArrayList<>(brushesInTile.size());
+				for (ProvinceClaimBrush provinceClaimBrush : brushesInTile) {
+					ProvinceCoords claims = new ProvinceCoords();
+					moveBrush(provinceClaimBrush, claims);
+					claimsInTile.add(claims);
+				}
+				return claimsInTile;
+			}).collect(Collectors.toList());
+			//Record the claims
+			for (int tileIndex = 0; tileIndex < brushesByTile.size(); tileIndex++) {
+				for (int brushIndex = 0; brushIndex < brushesByTile.get(tileIndex).size(); brushIndex++) {
+					ProvinceCoords claims = claimsByTile.get(tileIndex).get(brushIndex);
+					TownyProvincesDataHolder.getInstance().finishConcurrentClaims(brushesByTile.get(tileIndex).get(brushIndex).getProvince(), claims);
+					for (int i = 0; i < claims.size(); i++) {
+						unclaimedCoords.remove(claims.getX(i), claims.getZ(i));
+					}
+				}
+			}
+		}
+	}
 	
 	/**
 	 * Validate that it is ok to put the brush at the given coord.
 	 * It is not ok if:
 	 * - It would paint off the map
 	 * - It would paint on another province
+	 * - It would paint, or check, outside the painting area (if there is one)
 	 *
 	 * @return true if it's ok
 	 */
@@ -265,16 +424,10 @@ public class PaintRegionAction {
 		int brushMaxCoordX = brushPositionCoordX + region.getBrushSquareRadiusInChunks();
 		int brushMinCoordZ = brushPositionCoordZ - region.getBrushSquareRadiusInChunks();
 		int brushMaxCoordZ = brushPositionCoordZ + region.getBrushSquareRadiusInChunks();
-		Province province;
-		for (int x = brushMinCoordX - 1; x <= (brushMaxCoordX + 1); x++) {
-			for (int z = brushMinCoordZ - 1; z <= (brushMaxCoordZ + 1); z++) {
-				province = TownyProvincesDataHolder.getInstance().getProvinceAtCoord(x, z);
-				if (province != null && province != provinceBeingPainted) {
-					return false;
-				}
-			}
-		}
-		return true;
+		if (paintingArea != null && !paintingArea.containsArea(brushMinCoordX - 1, brushMaxCoordX + 1, brushMinCoordZ - 1, brushMaxCoordZ + 1))
+			return false;
+		return !occupancyMap.hasOtherProvinceInArea(brushMinCoordX - 1, brushMaxCoordX + 1, brushMinCoordZ - 1, brushMaxCoordZ + 1,
+			provinceBeingPainted, TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex());
 	}
 
 	/**
@@ -283,8 +436,10 @@ public class PaintRegionAction {
 	 * and the edge of the map, have already been done
 	 *
 	 * @param brush the brush
+	 * @param concurrentClaims if not null, the brush is being moved on one of several threads.
+	 *                         Only the index is updated, and the claimed chunks are added here
 	 */
-	private void claimChunksCoveredByBrush(ProvinceClaimBrush brush) {
+	private void claimChunksCoveredByBrush(ProvinceClaimBrush brush, @Nullable ProvinceCoords concurrentClaims) {
 		if (!validateBrushPosition(brush.getCurrentPosition().getX(), brush.getCurrentPosition().getZ(), brush.getProvince()))
 			return;
 
@@ -292,13 +447,25 @@ public class PaintRegionAction {
 		int endX = brush.getCurrentPosition().getX() + region.getBrushSquareRadiusInChunks();
 		int startZ = brush.getCurrentPosition().getZ() - region.getBrushSquareRadiusInChunks();
 		int endZ = brush.getCurrentPosition().getZ() + region.getBrushSquareRadiusInChunks();
+		if (concurrentClaims != null) {
+			//The unclaimed coords set cannot be modified here, so also check the index for chunks claimed since the phase started
+			for (int x = startX; x <= endX; x++) {
+				for (int z = startZ; z <= endZ; z++) {
+					if (unclaimedCoords.contains(x, z) && TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(x, z) == null) {
+						TownyProvincesDataHolder.getInstance().claimCoordConcurrently(x, z, brush.getProvince());
+						occupancyMap.setClaimed(x, z, brush.getProvince());
+						concurrentClaims.add(x, z);
+						brush.registerChunkClaimed();
+					}
+				}
+			}
+			return;
+		}
 		for (int x = startX; x <= endX; x++) {
 			for (int z = startZ; z <= endZ; z++) {
-				searchCoord.setValues(x, z);
-				if (unclaimedCoordsMap.containsKey(searchCoord)) {
-					TownyProvincesDataHolder.getInstance().claimCoordForProvince(unclaimedCoordsMap.get(searchCoord), brush.getProvince());
+				if (unclaimedCoords.remove(x, z)) {
+					claimCoord(x, z, brush.getProvince());
 					brush.registerChunkClaimed();
-					unclaimedCoordsMap.remove(searchCoord);
 				}
 			}
 		}
@@ -311,46 +478,78 @@ public class PaintRegionAction {
 	
 	/**
 	 * Assign unclaimed coords to provinces, until you can assign no more
+	 * 
+	 * Works outwards from the claimed areas, one step at a time.
+	 * The first step checks every unclaimed coord.
+	 * After that, a coord can only change eligibility when one of its 8 neighbours is claimed,
+	 * so each step only checks the unclaimed neighbours of the coords claimed in the previous step.
+	 * Within a step, eligibility is decided before any of the step's coords are claimed,
+	 * and re-checked just before each claim.
+	 * The coords of a step are processed in packed coord order, so that conflicts within a step
+	 * are settled the same way whatever the layout of the coord sets.
 	 */
 	private boolean assignUnclaimedCoordsToProvinces() {
 		TownyProvinces.info("Now assigning unclaimed chunks to provinces.");
-		Map<TPCoord, Province> pendingCoordProvinceAssignments = new HashMap<>();
+		long[] frontierCoords = unclaimedCoords.toPackedArray(new long[unclaimedCoords.size()]);
+		int numFrontierCoords = unclaimedCoords.size();
+		CoordSet nextFrontier = new CoordSet();
+		long[] pendingCoords = new long[numFrontierCoords];
+		Province[] pendingProvinces = new Province[numFrontierCoords];
+		int numPendingAssignments;
 		double totalChunksOnMap = (mapMaxXCoord - mapMinXCoord) * (mapMaxZCoord - mapMinZCoord);
-		while (true) {
-			rebuildPendingCoordProvinceAssignmentMap(pendingCoordProvinceAssignments);
-			double totalClaimedChunks = totalChunksOnMap - unclaimedCoordsMap.size();
+		while (numFrontierCoords > 0) {
+			//Find the frontier coords which are now eligible
+			Arrays.sort(frontierCoords, 0, numFrontierCoords);
+			numPendingAssignments = 0;
+			for (int i = 0; i < numFrontierCoords; i++) {
+				long packedCoord = frontierCoords[i];
+				int x = CoordUtil.unpackX(packedCoord);
+				int z = CoordUtil.unpackZ(packedCoord);
+				if (!unclaimedCoords.contains(x, z))
+					continue;
+				Province province = getProvinceIfUnclaimedCoordIsEligibleForProvinceAssignment(x, z);
+				if (province != null) {
+					pendingCoords[numPendingAssignments] = packedCoord;
+					pendingProvinces[numPendingAssignments] = province;
+					numPendingAssignments++;
+				}
+			}
+			double totalClaimedChunks = totalChunksOnMap - unclaimedCoords.size();
 			int percentageChunksClaimed = (int) ((totalClaimedChunks / totalChunksOnMap) * 100);
 			TownyProvinces.info("Assigning Unclaimed Chunks. Progress: " + percentageChunksClaimed + "%");
-			if (pendingCoordProvinceAssignments.size() == 0) {
-				break;
-			}
-			for (Map.Entry<TPCoord, Province> mapEntry : pendingCoordProvinceAssignments.entrySet()) {
-				if (verifyCoordEligibilityForProvinceAssignment(mapEntry.getKey())) {
-					TownyProvincesDataHolder.getInstance().claimCoordForProvince(mapEntry.getKey(), mapEntry.getValue());
-					unclaimedCoordsMap.remove(mapEntry.getKey());
+			//Claim them, and collect the unclaimed neighbours of each claimed coord for the next step
+			nextFrontier.clear();
+			for (int i = 0; i < numPendingAssignments; i++) {
+				int x = CoordUtil.unpackX(pendingCoords[i]);
+				int z = CoordUtil.unpackZ(pendingCoords[i]);
+				if (verifyCoordEligibilityForProvinceAssignment(x, z)) {
+					claimCoord(x, z, pendingProvinces[i]);
+					unclaimedCoords.remove(x, z);
+					addUnclaimedNeighboursToFrontier(x, z, nextFrontier);
 				}
+				pendingProvinces[i] = null;
 			}
+			numFrontierCoords = nextFrontier.size();
+			frontierCoords = nextFrontier.toPackedArray(frontierCoords);
 		}
 		TownyProvinces.info("Assigning Unclaimed Chunks. Progress: 100%");
 		TownyProvinces.info("Finished assigning unclaimed chunks to provinces.");
 		return true;
 	}
 
-	/**
-	 * Some coords may now be eligible. Some may be ineligible. Rebuild
-	 */
-	private void rebuildPendingCoordProvinceAssignmentMap(Map<TPCoord, Province> pendingCoordProvinceAssignmentMap) {
-		pendingCoordProvinceAssignmentMap.clear();
-		for (TPCoord unclaimedCoord : unclaimedCoordsMap.values()) {
-			Province province = getProvinceIfUnclaimedCoordIsEligibleForProvinceAssignment(unclaimedCoord);
-			if (province != null) {
-				pendingCoordProvinceAssignmentMap.put(unclaimedCoord, province);
+	private void addUnclaimedNeighboursToFrontier(int x, int z, CoordSet frontier) {
+		for (int i = 0; i < 4; i++) {
+			if (unclaimedCoords.contains(x + CARDINAL_OFFSETS_X[i], z + CARDINAL_OFFSETS_Z[i])) {
+				frontier.add(x + CARDINAL_OFFSETS_X[i], z + CARDINAL_OFFSETS_Z[i]);
+			}
+			if (unclaimedCoords.contains(x + DIAGONAL_OFFSETS_X[i], z + DIAGONAL_OFFSETS_Z[i])) {
+				frontier.add(x + DIAGONAL_OFFSETS_X[i], z + DIAGONAL_OFFSETS_Z[i]);
 			}
 		}
 	}
 
-	private boolean verifyCoordEligibilityForProvinceAssignment(TPCoord coord) {
-		Province province = getProvinceIfUnclaimedCoordIsEligibleForProvinceAssignment(coord);
+	private boolean verifyCoordEligibilityForProvinceAssignment(int x, int z) {
+		Province province = getProvinceIfUnclaimedCoordIsEligibleForProvinceAssignment(x, z);
 		return province != null;
 	}
 
@@ -359,19 +558,18 @@ public class PaintRegionAction {
 	 * 1. At least one claimed chunk must be found cardinally
 	 * 2. If any adjacent claimed chunks are found, they must all belong to the same province.
 	 *
-	 * @param unclaimedCoord the unclaimed coord
+	 * @param unclaimedCoordX x of the unclaimed coord
+	 * @param unclaimedCoordZ z of the unclaimed coord
 	 * @return the province to assign it to
 	 */
-	private Province getProvinceIfUnclaimedCoordIsEligibleForProvinceAssignment(TPCoord unclaimedCoord) {
-		if (unclaimedCoord.getX() < mapMinXCoord || unclaimedCoord.getX() > mapMaxXCoord || unclaimedCoord.getZ() < mapMinZCoord || unclaimedCoord.getZ() > mapMaxZCoord)
+	private Province getProvinceIfUnclaimedCoordIsEligibleForProvinceAssignment(int unclaimedCoordX, int unclaimedCoordZ) {
+		if (unclaimedCoordX < mapMinXCoord || unclaimedCoordX > mapMaxXCoord || unclaimedCoordZ < mapMinZCoord || unclaimedCoordZ > mapMaxZCoord)
 			return null;
 
 		Province result = null;
 		Province province;
-		int[] x = new int[]{0, 0, 1, -1};
-		int[] z = new int[]{-1, 1, 0, 0};
 		for (int i = 0; i < 4; i++) {
-			province = TownyProvincesDataHolder.getInstance().getProvinceAtCoord(unclaimedCoord.getX() + x[i], unclaimedCoord.getZ() + z[i]);
+			province = TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(unclaimedCoordX + CARDINAL_OFFSETS_X[i], unclaimedCoordZ + CARDINAL_OFFSETS_Z[i]);
 			if (province != null) {
 				if (result == null) {
 					result = province;
@@ -384,10 +582,8 @@ public class PaintRegionAction {
 		if (result == null)
 			return null;
 
-		x = new int[]{-1, 1, 1, -1};
-		z = new int[]{-1, -1, 1, 1};
 		for (int i = 0; i < 4; i++) {
-			province = TownyProvincesDataHolder.getInstance().getProvinceAtCoord(unclaimedCoord.getX() + x[i], unclaimedCoord.getZ() + z[i]);
+			province = TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(unclaimedCoordX + DIAGONAL_OFFSETS_X[i], unclaimedCoordZ + DIAGONAL_OFFSETS_Z[i]);
 			if (province != null && province != result) {
 				return null;
 			}
@@ -398,9 +594,11 @@ public class PaintRegionAction {
 	private boolean deleteEmptyProvinces() {
 		TownyProvinces.info("Now Deleting Empty Provinces.");
 		Set<Province> provincesToDelete = new HashSet<>();
+		TownyProvincesDataHolder dataHolder = TownyProvincesDataHolder.getInstance();
 
 		try {
-			Set<Province> provincesSet = TownyProvincesDataHolder.getInstance().getProvincesSet();
+			//If painting in an area, only the provinces created here are checked, as other regions may be being painted
+			Set<Province> provincesSet = paintingArea != null ? new HashSet<>(createdProvinces) : dataHolder.getWorkingProvincesSet();
 			TownyProvinces.info("Total number of provinces: " + provincesSet.size());
 
 			int totalProvinces = provincesSet.size();
@@ -408,8 +606,10 @@ public class PaintRegionAction {
 			int lastLoggedPercentage = 0;
 
 			for (Province province : provincesSet) {
-				if (province.getListOfCoordsInProvince().isEmpty()) {
-					provincesToDelete.add(province);
+				synchronized (dataHolder) {
+					if (dataHolder.getWorkingCoordsInProvince(province).isEmpty()) {
+						provincesToDelete.add(province);
+					}
 				}
 				processedProvinces++;
 				int currentPercentage = (processedProvinces * 100) / totalProvinces;
@@ -424,7 +624,9 @@ public class PaintRegionAction {
 			for (Province province : provincesToDelete) {
 				try {
 					TownyProvinces.info("Attempting to delete Province: " + province.getId());
-					TownyProvincesDataHolder.getInstance().deleteProvince(province, unclaimedCoordsMap);
+					synchronized (dataHolder) {
+						dataHolder.deleteProvince(province, unclaimedCoords);
+					}
 					TownyProvinces.info("Province Deleted: " + province.getId());
 				} catch (Exception e) {
 					TownyProvinces.info("Error deleting Province: " + province.getId() + e);
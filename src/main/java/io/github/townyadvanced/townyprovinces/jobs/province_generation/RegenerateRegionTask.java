@@ -2,42 +2,60 @@ package io.github.townyadvanced.townyprovinces.jobs.province_generation;
 
 import com.palmergames.bukkit.towny.object.Translatable;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.CoordSet;
 import io.github.townyadvanced.townyprovinces.data.DataHandlerUtil;
+import io.github.townyadvanced.townyprovinces.data.ProvinceGenerations;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.jobs.map_display.MapDisplayTaskController;
+import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.Region;
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
-import io.github.townyadvanced.townyprovinces.objects.TPFreeCoord;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
 import io.github.townyadvanced.townyprovinces.util.MoneyUtil;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 public class RegenerateRegionTask extends BukkitRunnable {
 	
 	/**
-	 * Map of currently unclaimed coords
+	 * Set of currently unclaimed coords
 	 * When this is filled,
 	 * it essentially becomes the "queue" for the job.
 	 * 
 	 * Anything which the job does not claim, will later be implicitly considered to be a border
 	 * 
-	 * NOTE: Both the key and value are always the same object
-	 * The allows us to easily retrieve the original coord object,
-	 * something which would be difficult if this was a set
+	 * NOTE: Coords are stored as primitives, so no coord objects are created until a coord is claimed.
 	 **/
-	private Map<TPCoord, TPCoord> unclaimedCoordsMap;
+	private CoordSet unclaimedCoords;
 	private final String givenRegionName;  //This will either be the case correct name of a real region, or "All"
-	public final TPCoord searchCoord;
+	private final boolean parallelChunkClaimCompetitionEnabled;
+	private final boolean concurrentRegionPaintingEnabled;
 	
 	public RegenerateRegionTask(String givenRegionName) {
+		this(givenRegionName, TownyProvincesSettings.isParallelChunkClaimCompetitionEnabled(), TownyProvincesSettings.isConcurrentRegionPaintingEnabled());
+	}
+
+	/**
+	 * @param givenRegionName the case correct name of a real region, or "All"
+	 * @param parallelChunkClaimCompetitionEnabled true to move the brushes of a region in parallel tiles
+	 * @param concurrentRegionPaintingEnabled true to paint regions which are far enough apart at the same time
+	 */
+	RegenerateRegionTask(String givenRegionName, boolean parallelChunkClaimCompetitionEnabled, boolean concurrentRegionPaintingEnabled) {
 		this.givenRegionName = givenRegionName;
-		this.searchCoord = new TPFreeCoord(0,0);
+		this.parallelChunkClaimCompetitionEnabled = parallelChunkClaimCompetitionEnabled;
+		this.concurrentRegionPaintingEnabled = concurrentRegionPaintingEnabled;
 	}
 	
 	@Override
@@ -45,13 +63,12 @@ public class RegenerateRegionTask extends BukkitRunnable {
 		try {
 			TownyProvinces.info("Regeneration Job Started");
 			TownyProvinces.info("Regeneration Job: Getting synch locks");
+			//The map display job reads the published snapshot, so it does not need to be locked out
 			synchronized (TownyProvinces.LAND_VALIDATION_JOB_LOCK) {
-				synchronized (TownyProvinces.MAP_DISPLAY_JOB_LOCK) {
-					synchronized (TownyProvinces.REGION_REGENERATION_JOB_LOCK) {
-						synchronized (TownyProvinces.PRICE_RECALCULATION_JOB_LOCK) {
-							TownyProvinces.info("Regeneration Job: Synch locks acquired");
-							executeRegionRegenerationJob();
-						}
+				synchronized (TownyProvinces.REGION_REGENERATION_JOB_LOCK) {
+					synchronized (TownyProvinces.PRICE_RECALCULATION_JOB_LOCK) {
+						TownyProvinces.info("Regeneration Job: Synch locks acquired");
+						executeRegionRegenerationJob();
 					}
 				}
 			}
@@ -62,30 +79,40 @@ public class RegenerateRegionTask extends BukkitRunnable {
 	}
 	
 	public void executeRegionRegenerationJob() {
+		//Save the current province map as a generation, so this regeneration can be rolled back
+		//Pin one snapshot for the whole save. Handles are never reused, so it keeps resolving while later versions are published
+		ProvinceMapSnapshot generationSnapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		if(ProvinceGenerations.createGeneration(generationSnapshot, "Before regenerating " + givenRegionName) == ProvinceGenerations.GENERATION_FAILED) {
+			TownyProvinces.severe("The current province map could not be saved as a generation, so the regeneration was cancelled. "
+				+ "Fix the problem above, or set data_storage.generations_to_keep to 0 to regenerate without saving generations.");
+			return;
+		}
 		//Paint region(s)
 		boolean paintingSuccess;
 		if(givenRegionName.equalsIgnoreCase("ALL")) {
 			//Initialize the unclaimed coords map
 			//Create a new local map of soon-to-be-unclaimed coords
-			Map<TPCoord, TPCoord> soonToBeUnclaimedCoords = TownyProvincesDataHolder.getInstance().getAllCoordsOnMap();
+			CoordSet soonToBeUnclaimedCoords = TownyProvincesDataHolder.getInstance().getAllCoordsOnMap();
 			//Clear the data maps 
-			TownyProvincesDataHolder.getInstance().getProvincesSet().clear();
-			TownyProvincesDataHolder.getInstance().getCoordProvinceMap().clear();
-			//Initialize the unclaimed coords map
-			unclaimedCoordsMap = soonToBeUnclaimedCoords;
+			TownyProvincesDataHolder.getInstance().clearAllProvinces();
 			//Paint all regions
-			paintingSuccess = paintAllRegions();
+			paintingSuccess = paintAllRegions(TownyProvincesSettings.getOrderedRegionsList(), soonToBeUnclaimedCoords);
 		} else {
+			//Ensure the coord-province grid matches the current map dimensions
+			TownyProvincesDataHolder.getInstance().refreshMapDimensions();
 			//Initialize the unclaimed coords map
-			unclaimedCoordsMap = TownyProvincesDataHolder.getInstance().getAllUnclaimedCoordsOnMap();
+			unclaimedCoords = TownyProvincesDataHolder.getInstance().getAllUnclaimedCoordsOnMap();
 			//Paint one region
 			Region region = TownyProvincesSettings.getRegion(givenRegionName);
 			paintingSuccess = paintOneRegion(region, true);
 		}
 		if(!paintingSuccess) {
 			TownyProvinces.info("Problem Painting Regions");
+			TownyProvincesDataHolder.getInstance().discardUnpublishedChanges();
 			return;
 		}
+		//Publish the new province map to readers
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
 		//Recalculated all prices
 		MoneyUtil.recalculateProvincePrices();
 		//Save data and request full map refresh
@@ -100,28 +127,140 @@ public class RegenerateRegionTask extends BukkitRunnable {
 		TownyProvinces.info("Region regeneration Job Complete"); //TODO - maybe global message?
 	}
 
-	public boolean paintAllRegions() {
-		//Paint all Regions
-		boolean firstRegionProcessed = false;
-		for (Region region: TownyProvincesSettings.getOrderedRegionsList()) {
-			if(!firstRegionProcessed) {
-				firstRegionProcessed = true;
-				//Paint region
-				if(!paintOneRegion(region, false)) {
+	/**
+	 * Paint all regions, into a data holder with no provinces
+	 * 
+	 * @param regions the regions, in order. The first covers the whole map
+	 * @param allUnclaimedCoords all coords on the map. Becomes the set of unclaimed coords of the job
+	 * @return true if painting was successful
+	 */
+	boolean paintAllRegions(List<Region> regions, CoordSet allUnclaimedCoords) {
+		unclaimedCoords = allUnclaimedCoords;
+		//Paint region 1 first. It covers the whole map
+		if(!paintOneRegion(regions.get(0), false)) {
+			return false;
+		}
+		List<Region> remainingRegions = new ArrayList<>(regions.subList(1, regions.size()));
+		if(concurrentRegionPaintingEnabled && TownyProvincesDataHolder.getInstance().startConcurrentClaims()) {
+			return paintRegionsConcurrently(remainingRegions);
+		}
+		//Paint the other regions, one after another
+		for (Region region: remainingRegions) {
+			if(!paintOneRegion(region, true)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Paint the given regions, painting those which are far enough apart at the same time
+	 * 
+	 * The regions are painted in waves, see findNextWave().
+	 * Each region in a wave is painted in its own area, with its own set of unclaimed coords,
+	 * which are merged back into the main set once the wave is finished.
+	 */
+	private boolean paintRegionsConcurrently(List<Region> regions) {
+		List<Region> remainingRegions = new ArrayList<>(regions);
+		/*
+		 * Painting a region takes a long time, so the regions get their own threads,
+		 * rather than blocking the common pool, which the server and the parallel tile phases also use
+		 */
+		int numThreads = Math.max(1, Math.min(regions.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService regionPainters = Executors.newFixedThreadPool(numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "TownyProvinces-RegionPainter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			while(!remainingRegions.isEmpty()) {
+				List<RegionPaintingArea> wave = findNextWave(remainingRegions);
+				TownyProvinces.info("-------------------------------");
+				TownyProvinces.info("Now Painting " + wave.size() + " Regions At The Same Time: " 
+					+ wave.stream().map(area -> area.getRegion().getName()).collect(Collectors.joining(", ")));
+				//Provinces deleted by any region in the wave cannot be grown by the others
+				Set<Province> paintableProvinces = new HashSet<>(TownyProvincesDataHolder.getInstance().getWorkingProvincesSet());
+				for(RegionPaintingArea area: wave) {
+					area.getProvincesToDelete().forEach(paintableProvinces::remove);
+				}
+				List<CoordSet> unclaimedCoordsInAreas = new ArrayList<>();
+				List<Future<Boolean>> results = new ArrayList<>();
+				for(RegionPaintingArea area: wave) {
+					area.findNeighbouringProvinces(paintableProvinces);
+					CoordSet unclaimedCoordsInArea = area.getUnclaimedCoordsInArea(unclaimedCoords);
+					unclaimedCoordsInAreas.add(unclaimedCoordsInArea);
+					results.add(regionPainters.submit(() -> new PaintRegionAction(area, unclaimedCoordsInArea).executeAction(true)));
+				}
+				boolean waveSuccess = true;
+				for(Future<Boolean> result: results) {
+					waveSuccess &= getPaintingResult(result);
+				}
+				for(int i = 0; i < wave.size(); i++) {
+					wave.get(i).mergeUnclaimedCoords(unclaimedCoords, unclaimedCoordsInAreas.get(i));
+					remainingRegions.remove(wave.get(i).getRegion());
+				}
+				if(!waveSuccess) {
 					return false;
 				}
+			}
+			return true;
+		} finally {
+			regionPainters.shutdownNow();
+		}
+	}
+
+	/**
+	 * Wait for a region painted by paintRegionsConcurrently() to finish
+	 * 
+	 * @return the result of the painting action. False if it failed, or the wait was interrupted
+	 */
+	private static boolean getPaintingResult(Future<Boolean> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			TownyProvinces.severe("Interrupted while painting regions");
+			return false;
+		} catch (ExecutionException e) {
+			TownyProvinces.severe("Problem painting region: " + e.getCause());
+			e.getCause().printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Find the regions which can be painted now, at the same time
+	 * 
+	 * Goes through the remaining regions in order. A region joins the wave,
+	 * unless its area is near the area of an earlier remaining region.
+	 * A region which is left out may be changed by the regions it is near,
+	 * so later regions are checked against the area covering it and them.
+	 * Thus a region is never painted before, or alongside, an earlier region which could affect it,
+	 * and overlapping regions are painted in the same order as usual.
+	 *
+	 * @param remainingRegions the regions which are not painted yet, in order
+	 * @return the painting areas of the regions in the wave. Always includes the first remaining region
+	 */
+	private List<RegionPaintingArea> findNextWave(List<Region> remainingRegions) {
+		List<RegionPaintingArea> wave = new ArrayList<>();
+		List<RegionPaintingArea> earlierAreas = new ArrayList<>();
+		for(Region region: remainingRegions) {
+			RegionPaintingArea area = RegionPaintingArea.find(region);
+			List<RegionPaintingArea> nearbyEarlierAreas = earlierAreas.stream().filter(area::isNear).collect(Collectors.toList());
+			if(nearbyEarlierAreas.isEmpty()) {
+				wave.add(area);
 			} else {
-				//Paint region
-				if(!paintOneRegion(region, true)) {
-					return false;
+				for(RegionPaintingArea nearbyEarlierArea: nearbyEarlierAreas) {
+					area.extendToCover(nearbyEarlierArea);
 				}
 			}
+			earlierAreas.add(area);
 		}
-		return true;
+		return wave;
 	}
-	
+
 	private boolean paintOneRegion(Region region, boolean deleteExistingProvincesInRegion) {
-		PaintRegionAction regionPaintTask = new PaintRegionAction(region, unclaimedCoordsMap);
+		PaintRegionAction regionPaintTask = new PaintRegionAction(region, unclaimedCoords, parallelChunkClaimCompetitionEnabled);
 		return regionPaintTask.executeAction(deleteExistingProvincesInRegion);
 	}
 
@@ -130,7 +269,7 @@ public class RegenerateRegionTask extends BukkitRunnable {
 		int[] x = new int[]{-1,0,1,-1,1,-1,0,1};
 		int[] z = new int[]{-1,-1,-1,0,0,1,1,1};
 		for(int i = 0; i < 8; i++) {
-			result.add(new TPFinalCoord(targetCoord.getX() + x[i], targetCoord.getZ() + z[i]));
+			result.add(TPFinalCoord.of(targetCoord.getX() + x[i], targetCoord.getZ() + z[i]));
 		}
 		return result;
 	}
@@ -4,10 +4,11 @@ import com.palmergames.bukkit.towny.object.Translatable;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
 import io.github.townyadvanced.townyprovinces.messaging.Messaging;
 import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
 
 public class RegenerateRegionTaskController {
 
-	private static RegenerateRegionTask regenerateRegionTask = null;
+	private static BukkitRunnable regenerateRegionTask = null;  //A regeneration or a rollback. Only one can run at a time
 	
 	public static boolean startTask(CommandSender sender, String caseCorrectRegionName) {
 		if (regenerateRegionTask != null) {
@@ -22,6 +23,19 @@ public class RegenerateRegionTaskController {
 		}
 	}
 
+	public static boolean startRollbackTask(CommandSender sender, int generationNumber) {
+		if (regenerateRegionTask != null) {
+			Messaging.sendMsg(sender, Translatable.of("msg_err_regeneration_job_already_started"));
+			return false;
+		} else {
+			TownyProvinces.info("Rollback Job Starting");
+			regenerateRegionTask = new RollbackGenerationTask(generationNumber);
+			regenerateRegionTask.runTaskAsynchronously(TownyProvinces.getPlugin());
+			Messaging.sendMsg(sender, Translatable.of("msg_generation_rollback_job_started", generationNumber));
+			return true;
+		}
+	}
+
 	public static void endTask() {
 		if(regenerateRegionTask != null) {
 			regenerateRegionTask.cancel();
@@ -0,0 +1,205 @@
+package io.github.townyadvanced.townyprovinces.jobs.province_generation;
+
+import com.palmergames.bukkit.towny.object.Coord;
+import io.github.townyadvanced.townyprovinces.data.CoordSet;
+import io.github.townyadvanced.townyprovinces.data.ProvinceCoords;
+import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.Region;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The chunks which painting a region can change, used to paint several regions at the same time
+ *
+ * This is the region itself, plus the full extent of the provinces which will be deleted because they are mostly in the region.
+ * When a region is painted in its area:
+ * - Brushes stay far enough inside the area that they only check and claim chunks inside it
+ * - Only unclaimed chunks inside the area are assigned to provinces, which means checking chunks up to 1 outside it
+ * So two regions can be painted at the same time if their areas are not near each other (see isNear).
+ *
+ * Provinces based outside the area only get brushes if they are within one brush move of it (see findNeighbouringProvinces).
+ * Their brushes can grow them into the area, but not outside it.
+ */
+class RegionPaintingArea {
+
+	private final Region region;
+	private final List<Province> provincesToDelete;
+	private List<Province> neighbouringProvinces = Collections.emptyList();
+	private int minX;
+	private int maxX;
+	private int minZ;
+	private int maxZ;
+
+	private RegionPaintingArea(Region region, List<Province> provincesToDelete) {
+		this.region = region;
+		this.provincesToDelete = provincesToDelete;
+		int chunkSideLength = TownyProvincesSettings.getChunkSideLength();
+		this.minX = Math.min(region.getRegionMinXCoord(), region.getTopLeftRegionCorner().getBlockX() / chunkSideLength);
+		this.maxX = Math.max(region.getRegionMaxXCoord(), region.getBottomRightRegionCorner().getBlockX() / chunkSideLength);
+		this.minZ = Math.min(region.getRegionMinZCoord(), region.getTopLeftRegionCorner().getBlockZ() / chunkSideLength);
+		this.maxZ = Math.max(region.getRegionMaxZCoord(), region.getBottomRightRegionCorner().getBlockZ() / chunkSideLength);
+		for (Location protectedLocation : region.getProtectedLocations().values()) {
+			Coord coord = Coord.parseCoord(protectedLocation);
+			extend(coord.getX(), coord.getX(), coord.getZ(), coord.getZ());
+		}
+		for (Province province : provincesToDelete) {
+			//Working coord lists do not keep their bounds
+			ProvinceCoords coordsInProvince = TownyProvincesDataHolder.getInstance().getWorkingCoordsInProvince(province);
+			for (int i = 0; i < coordsInProvince.size(); i++) {
+				extend(coordsInProvince.getX(i), coordsInProvince.getX(i), coordsInProvince.getZ(i), coordsInProvince.getZ(i));
+			}
+		}
+	}
+
+	/**
+	 * Find the area which painting the given region would change, in the current working province map
+	 * Call on the job thread, while no regions are being painted.
+	 */
+	static RegionPaintingArea find(Region region) {
+		return new RegionPaintingArea(region, findProvincesMostlyInRegion(region));
+	}
+
+	/**
+	 * Find the provinces which have more than half of their chunks in the given region.
+	 * These are deleted before the region is painted.
+	 *
+	 * @return the provinces, in home block order
+	 */
+	static List<Province> findProvincesMostlyInRegion(Region region) {
+		List<Province> result = new ArrayList<>();
+		int minX = region.getTopLeftRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
+		int maxX = region.getBottomRightRegionCorner().getBlockX() / TownyProvincesSettings.getChunkSideLength();
+		int minZ = region.getTopLeftRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
+		int maxZ = region.getBottomRightRegionCorner().getBlockZ() / TownyProvincesSettings.getChunkSideLength();
+		for (Province province : new HashSet<>(TownyProvincesDataHolder.getInstance().getWorkingProvincesSet())) {
+			ProvinceCoords coordsInProvince = TownyProvincesDataHolder.getInstance().getWorkingCoordsInProvince(province);
+			int numProvinceBlocksInSpecifiedArea = 0;
+			int x;
+			int z;
+			for (int i = 0; i < coordsInProvince.size(); i++) {
+				x = coordsInProvince.getX(i);
+				z = coordsInProvince.getZ(i);
+				if (x < minX || x > maxX || z < minZ || z > maxZ) {
+					continue;
+				}
+				numProvinceBlocksInSpecifiedArea++;
+			}
+			if (numProvinceBlocksInSpecifiedArea > (coordsInProvince.size() / 2)) {
+				result.add(province);
+			}
+		}
+		result.sort(PaintRegionAction.HOME_BLOCK_ORDER);
+		return result;
+	}
+
+	private void extend(int otherMinX, int otherMaxX, int otherMinZ, int otherMaxZ) {
+		minX = Math.min(minX, otherMinX);
+		maxX = Math.max(maxX, otherMaxX);
+		minZ = Math.min(minZ, otherMinZ);
+		maxZ = Math.max(maxZ, otherMaxZ);
+	}
+
+	/**
+	 * Extend this area to cover the given one too
+	 */
+	void extendToCover(RegionPaintingArea other) {
+		extend(other.minX, other.maxX, other.minZ, other.maxZ);
+	}
+
+	/**
+	 * Find the provinces based outside this area, whose brushes could move into it when the region is painted.
+	 * A brush only moves to positions inside the area, so it must start within one move of the area.
+	 * Call on the job thread, before the region is painted.
+	 *
+	 * @param provinces the provinces which can be painted, i.e. excluding any which are being deleted
+	 */
+	void findNeighbouringProvinces(Collection<Province> provinces) {
+		int reach = region.getMaxBrushMoveAmountInChunks();
+		List<Province> result = new ArrayList<>();
+		int x;
+		int z;
+		for (Province province : provinces) {
+			x = province.getHomeBlock().getX();
+			z = province.getHomeBlock().getZ();
+			if (!contains(x, z) && x >= minX - reach && x <= maxX + reach && z >= minZ - reach && z <= maxZ + reach) {
+				result.add(province);
+			}
+		}
+		result.sort(PaintRegionAction.HOME_BLOCK_ORDER);
+		neighbouringProvinces = result;
+	}
+
+	Region getRegion() {
+		return region;
+	}
+
+	List<Province> getProvincesToDelete() {
+		return provincesToDelete;
+	}
+
+	List<Province> getNeighbouringProvinces() {
+		return neighbouringProvinces;
+	}
+
+	boolean contains(int x, int z) {
+		return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+	}
+
+	boolean containsArea(int areaMinX, int areaMaxX, int areaMinZ, int areaMaxZ) {
+		return areaMinX >= minX && areaMaxX <= maxX && areaMinZ >= minZ && areaMaxZ <= maxZ;
+	}
+
+	/**
+	 * @return true if the areas overlap, or are close enough that painting one can check chunks changed by painting the other
+	 */
+	boolean isNear(RegionPaintingArea other) {
+		return minX - 1 <= other.maxX && other.minX <= maxX + 1
+			&& minZ - 1 <= other.maxZ && other.minZ <= maxZ + 1;
+	}
+
+	/**
+	 * @return the given unclaimed coords which are in this area
+	 */
+	CoordSet getUnclaimedCoordsInArea(CoordSet unclaimedCoords) {
+		CoordSet result = new CoordSet();
+		long[] packedCoords = unclaimedCoords.toPackedArray(new long[unclaimedCoords.size()]);
+		int x;
+		int z;
+		for (int i = 0; i < unclaimedCoords.size(); i++) {
+			x = CoordUtil.unpackX(packedCoords[i]);
+			z = CoordUtil.unpackZ(packedCoords[i]);
+			if (contains(x, z)) {
+				result.add(x, z);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replace the unclaimed coords in this area with the given ones
+	 *
+	 * @param unclaimedCoords all the unclaimed coords. Updated
+	 * @param unclaimedCoordsInArea the unclaimed coords in this area, after it was painted
+	 */
+	void mergeUnclaimedCoords(CoordSet unclaimedCoords, CoordSet unclaimedCoordsInArea) {
+		long[] packedCoords = unclaimedCoords.toPackedArray(new long[unclaimedCoords.size()]);
+		int numCoords = unclaimedCoords.size();
+		for (int i = 0; i < numCoords; i++) {
+			if (contains(CoordUtil.unpackX(packedCoords[i]), CoordUtil.unpackZ(packedCoords[i]))) {
+				unclaimedCoords.remove(CoordUtil.unpackX(packedCoords[i]), CoordUtil.unpackZ(packedCoords[i]));
+			}
+		}
+		packedCoords = unclaimedCoordsInArea.toPackedArray(packedCoords);
+		for (int i = 0; i < unclaimedCoordsInArea.size(); i++) {
+			unclaimedCoords.add(CoordUtil.unpackX(packedCoords[i]), CoordUtil.unpackZ(packedCoords[i]));
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package io.github.townyadvanced.townyprovinces.jobs.province_generation;
+
+import com.palmergames.bukkit.towny.object.Translatable;
+import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.ProvinceGenerations;
+import io.github.townyadvanced.townyprovinces.jobs.map_display.MapDisplayTaskController;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Locale;
+
+public class RollbackGenerationTask extends BukkitRunnable {
+
+	private final int generationNumber;
+
+	public RollbackGenerationTask(int generationNumber) {
+		this.generationNumber = generationNumber;
+	}
+
+	@Override
+	public void run() {
+		try {
+			TownyProvinces.info("Rollback Job Started");
+			TownyProvinces.info("Rollback Job: Getting synch locks");
+			synchronized (TownyProvinces.LAND_VALIDATION_JOB_LOCK) {
+				synchronized (TownyProvinces.REGION_REGENERATION_JOB_LOCK) {
+					synchronized (TownyProvinces.PRICE_RECALCULATION_JOB_LOCK) {
+						TownyProvinces.info("Rollback Job: Synch locks acquired");
+						executeRollbackJob();
+					}
+				}
+			}
+		} finally {
+			RegenerateRegionTaskController.endTask();
+			TownyProvinces.info("Rollback Job Completed");
+		}
+	}
+
+	private void executeRollbackJob() {
+		if(!ProvinceGenerations.rollBackToGeneration(generationNumber)) {
+			TownyProvinces.info(Translatable.of("msg_problem_rolling_back_generation", generationNumber).translate(Locale.ROOT));
+			return;
+		}
+		MapDisplayTaskController.requestFullMapRefresh();
+		TownyProvinces.info(Translatable.of("msg_successfully_rolled_back_generation", generationNumber).translate(Locale.ROOT));
+	}
+}
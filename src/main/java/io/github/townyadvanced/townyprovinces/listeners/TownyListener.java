@@ -16,9 +16,9 @@ import com.palmergames.bukkit.towny.object.Translation;
 import com.palmergames.bukkit.towny.object.TranslationLoader;
 import com.palmergames.bukkit.towny.object.WorldCoord;
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
+import io.github.townyadvanced.townyprovinces.data.ProvinceCoords;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.objects.Province;
-import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
 import org.bukkit.World;
 import org.bukkit.event.EventHandler;
@@ -199,8 +199,9 @@ public class TownyListener implements Listener {
 	private boolean doesProvinceContainTown(Province province) {
 		String worldName = TownyProvincesSettings.getWorldName();
 		WorldCoord worldCoord;
-		for(TPCoord coord: province.getListOfCoordsInProvince()) {
-			worldCoord = new WorldCoord(worldName, coord.getX(), coord.getZ());
+		ProvinceCoords coordsInProvince = province.getCoordsInProvince();
+		for(int i = 0; i < coordsInProvince.size(); i++) {
+			worldCoord = new WorldCoord(worldName, coordsInProvince.getX(i), coordsInProvince.getZ(i));
 			if(!TownyAPI.getInstance().isWilderness(worldCoord)) {
 				return true;
 			}
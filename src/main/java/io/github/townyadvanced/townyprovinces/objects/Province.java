@@ -3,32 +3,45 @@ package io.github.townyadvanced.townyprovinces.objects;
 import com.palmergames.bukkit.towny.TownyAPI;
 import com.palmergames.bukkit.towny.object.Town;
 import io.github.townyadvanced.townyprovinces.data.DataHandlerUtil;
+import io.github.townyadvanced.townyprovinces.data.ProvinceCoords;
 import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
 
-import java.util.List;
 import java.util.Set;
 
+/**
+ * A province
+ * 
+ * The home block is fixed.
+ * The other fields are volatile, because they can be changed by commands and jobs
+ * while readers on other threads are using the published province map snapshot.
+ */
 public class Province {
 	
 	private final TPCoord homeBlock;
-	private double newTownCost;  //The base cost, not adjusted by biome
-	private double upkeepTownCost;  //The base cost, not adjusted by biome
-	private ProvinceType type;  //Civilized, Sea, Wasteland
+	private volatile int handle;  //Dense int handle, given by the province registry. In memory only. 0 until registered
+	private volatile double newTownCost;  //The base cost, not adjusted by biome
+	private volatile double upkeepTownCost;  //The base cost, not adjusted by biome
+	private volatile ProvinceType type;  //Civilized, Sea, Wasteland
 	private final String id; //convenience variable. In memory only. Used for dynmap and file operations
-	private double fillOpacity; //Convenience Var, in memory only
-	private int fillColour; //Convenience Var, in memory only
-	private boolean landValidationRequested;
-	private double estimatedProportionOfGoodLand;
-	private double estimatedProportionOfWater;
-	private double estimatedProportionOfHotLand;
-	private double estimatedProportionOfColdLand;
+	private volatile double fillOpacity; //Convenience Var, in memory only
+	private volatile int fillColour; //Convenience Var, in memory only
+	private volatile boolean landValidationRequested;
+	private volatile double estimatedProportionOfGoodLand;
+	private volatile double estimatedProportionOfWater;
+	private volatile double estimatedProportionOfHotLand;
+	private volatile double estimatedProportionOfColdLand;
+	private volatile boolean metadataDirty;  //True if the metadata has changed since it was last saved. In memory only
 	
 	public boolean equals(Object object) {
 		if(!(object instanceof Province))
 			return false;
 		return homeBlock.equals(((Province)object).getHomeBlock());
 	}
+
+	public int hashCode() {
+		return homeBlock.hashCode();
+	}
 	
 	public Province(TPCoord homeBlock) {
 		this.homeBlock = homeBlock;
@@ -43,11 +56,20 @@ public class Province {
 		this.estimatedProportionOfWater = 0;
 		this.estimatedProportionOfHotLand = 0;
 		this.estimatedProportionOfColdLand = 0;
+		this.metadataDirty = true;
 	}
 
 	public String getId() {
 		return id;
 	}
+
+	public int getHandle() {
+		return handle;
+	}
+
+	public void setHandle(int handle) {
+		this.handle = handle;
+	}
 	
 	public TPCoord getHomeBlock() {
 		return homeBlock;
@@ -55,10 +77,12 @@ public class Province {
 	
 	public void setNewTownCost(double d) {
 		this.newTownCost = d;
+		this.metadataDirty = true;
 	}
 
 	public void setUpkeepTownCost(double d) {
 		this.upkeepTownCost = d;
+		this.metadataDirty = true;
 	}
 
 	public double getNewTownCost() { return newTownCost; }
@@ -89,10 +113,30 @@ public class Province {
 	
 	public void setType(ProvinceType p) {
 		this.type = p;
+		this.metadataDirty = true;
+	}
+
+	public ProvinceCoords getCoordsInProvince() {
+		return TownyProvincesDataHolder.getInstance().getCoordsInProvince(this);
 	}
 
-	public List<TPCoord> getListOfCoordsInProvince() {
-		return TownyProvincesDataHolder.getInstance().getListOfCoordsInProvince(this);
+	public ProvinceCoords getBorderCoords() {
+		return TownyProvincesDataHolder.getInstance().getBorderCoords(this);
+	}
+
+	public Set<Province> getNeighbouringProvinces() {
+		return TownyProvincesDataHolder.getInstance().getNeighbouringProvinces(this);
+	}
+
+	/**
+	 * @return true if the type, costs, or other saved fields have changed since the province was last saved
+	 */
+	public boolean isMetadataDirty() {
+		return metadataDirty;
+	}
+
+	public void setMetadataDirty(boolean metadataDirty) {
+		this.metadataDirty = metadataDirty;
 	}
 
 	public void saveData() {
@@ -105,18 +149,24 @@ public class Province {
 
 	public void setLandValidationRequested(boolean landValidationRequested) {
 		this.landValidationRequested = landValidationRequested;
+		this.metadataDirty = true;
 	}
 
 	public Set<TPCoord> getAdjacentBorderCoords(TPCoord targetCoord) {
 		return TownyProvincesDataHolder.getInstance().findAdjacentBorderCoords(targetCoord);
 	}
 
+	public Set<TPCoord> getAdjacentBorderCoords(int targetX, int targetZ) {
+		return TownyProvincesDataHolder.getInstance().findAdjacentBorderCoords(targetX, targetZ);
+	}
+
 	public double getEstimatedProportionOfGoodLand() {
 		return estimatedProportionOfGoodLand;
 	}
 
 	public void setEstimatedProportionOfGoodLand(double estimatedProportionOfGoodLand) {
 		this.estimatedProportionOfGoodLand = estimatedProportionOfGoodLand;
+		this.metadataDirty = true;
 	}
 
 	public double getEstimatedProportionOfWater() {
@@ -125,6 +175,7 @@ public class Province {
 
 	public void setEstimatedProportionOfWater(double estimatedProportionOfWater) {
 		this.estimatedProportionOfWater = estimatedProportionOfWater;
+		this.metadataDirty = true;
 	}
 
 	public double getEstimatedProportionOfHotLand() {
@@ -133,6 +184,7 @@ public class Province {
 
 	public void setEstimatedProportionOfHotLand(double estimatedProportionOfHotLand) {
 		this.estimatedProportionOfHotLand = estimatedProportionOfHotLand;
+		this.metadataDirty = true;
 	}
 
 	public double getEstimatedProportionOfColdLand() {
@@ -141,6 +193,7 @@ public class Province {
 
 	public void setEstimatedProportionOfColdLand(double estimatedProportionOfColdLand) {
 		this.estimatedProportionOfColdLand = estimatedProportionOfColdLand;
+		this.metadataDirty = true;
 	}
 
 	public Town getTownOrNull() {
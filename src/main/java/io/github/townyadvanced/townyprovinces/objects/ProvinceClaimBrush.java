@@ -1,14 +1,18 @@
 package io.github.townyadvanced.townyprovinces.objects;
 
+import java.util.SplittableRandom;
+
 public class ProvinceClaimBrush {
 	
 	private final TPFreeCoord currentPosition;
 	private final Province province;
+	private final SplittableRandom random;  //Used for this brush's moves only, so the moves do not depend on the order brushes are moved in
 	private boolean active;
 	private int numChunksClaimed;
 	
-	public ProvinceClaimBrush(Province province) {
+	public ProvinceClaimBrush(Province province, SplittableRandom random) {
 		this.province = province;
+		this.random = random;
 		this.currentPosition = new TPFreeCoord(province.getHomeBlock().getX(), province.getHomeBlock().getZ());
 		this.active = true;
 		this.numChunksClaimed = 0;
@@ -26,6 +30,10 @@ public class ProvinceClaimBrush {
 		return province;
 	}
 
+	public SplittableRandom getRandom() {
+		return random;
+	}
+
 	public boolean isActive() {
 		return active;
 	}
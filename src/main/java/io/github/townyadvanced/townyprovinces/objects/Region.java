@@ -4,7 +4,9 @@ import com.palmergames.bukkit.towny.object.Coord;
 import com.palmergames.util.FileMgmt;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
 import org.bukkit.Location;
+import org.bukkit.World;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.HashSet;
 import java.util.Map;
@@ -33,18 +35,26 @@ public class Region {
 	private final Map<String, Location> protectedLocations;
 	private final double newTownCostPerChunk;
 	private final double upkeepTownCostPerChunk;
+	private final Long generationSeed;  //Null if not set, in which case each regeneration is different
 	private Set<Province> provinces; //Set of provinces. Assigned when required
 	
 	public Region(File regionDefinitionFile) {
-		Map<String, String> regionDefinitions = FileMgmt.loadFileIntoHashMap(regionDefinitionFile);
+		this(FileMgmt.loadFileIntoHashMap(regionDefinitionFile), TownyProvincesSettings.getWorld());
+	}
+
+	/**
+	 * @param regionDefinitions the definitions, as read from a region definition file
+	 * @param world the world of the region corners and protected locations
+	 */
+	public Region(Map<String, String> regionDefinitions, @Nullable World world) {
 		this.name = TownyProvincesSettings.getRegionName(regionDefinitions);
 		this.brushSquareRadiusInChunks = TownyProvincesSettings.getBrushSquareRadiusInChunks(regionDefinitions);
 		this.provinceSquareRadius = TownyProvincesSettings.calculateProvinceSquareRadius(regionDefinitions);
 		this.minBrushMoveAmountInChunks = TownyProvincesSettings.getMinBrushMoveInChunks(regionDefinitions);
 		this.maxBrushMoveAmountInChunks = TownyProvincesSettings.getMaxBrushMoveInChunks(regionDefinitions);
 		this.claimAreaLimitInSquareMetres = (int)((double)TownyProvincesSettings.getAverageProvinceSize(regionDefinitions) * 1.1);
-		this.topLeftRegionCorner = TownyProvincesSettings.getTopLeftCornerLocation(regionDefinitions);
-		this.bottomRightRegionCorner = TownyProvincesSettings.getBottomRightCornerLocation(regionDefinitions);
+		this.topLeftRegionCorner = TownyProvincesSettings.getTopLeftCornerLocation(regionDefinitions, world);
+		this.bottomRightRegionCorner = TownyProvincesSettings.getBottomRightCornerLocation(regionDefinitions, world);
 		this.regionMinX = this.topLeftRegionCorner.getBlockX();
 		this.regionMaxX = this.bottomRightRegionCorner.getBlockX();
 		this.regionMinZ = this.topLeftRegionCorner.getBlockZ();
@@ -57,9 +67,10 @@ public class Region {
 		this.regionMaxZCoord = bottomRightCoord.getZ();
 		this.averageProvinceSize = TownyProvincesSettings.getAverageProvinceSize(regionDefinitions);
 		this.maxBrushMoves = TownyProvincesSettings.getMaxBrushMoves(regionDefinitions);
-		this.protectedLocations = TownyProvincesSettings.getProtectedLocations(regionDefinitions);
+		this.protectedLocations = TownyProvincesSettings.getProtectedLocations(regionDefinitions, world);
 		this.newTownCostPerChunk = TownyProvincesSettings.getNewTownCostPerChunk(regionDefinitions);
 		this.upkeepTownCostPerChunk = TownyProvincesSettings.getUpkeepTownCostPerChunk(regionDefinitions);
+		this.generationSeed = TownyProvincesSettings.getGenerationSeed(regionDefinitions);
 		this.provinces = new HashSet<>();
 	}
 
@@ -123,6 +134,10 @@ public class Region {
 		return protectedLocations;
 	}
 
+	public @Nullable Long getGenerationSeed() {
+		return generationSeed;
+	}
+
 	public double getNewTownCostPerChunk() {
 		return newTownCostPerChunk;
 	}
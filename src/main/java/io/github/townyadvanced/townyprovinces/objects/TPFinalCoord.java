@@ -1,7 +1,18 @@
 package io.github.townyadvanced.townyprovinces.objects;
 
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+
 public class TPFinalCoord implements TPCoord{
 
+	/*
+	 * Bounded intern cache of coords, keyed by packed (x,z)
+	 * 
+	 * Each slot holds one coord. A new coord simply replaces the old one in its slot.
+	 * Unsynchronized access is safe, because coords are immutable and their fields are final.
+	 */
+	private static final int CACHE_SIZE = 1 << 16;
+	private static final TPFinalCoord[] cache = new TPFinalCoord[CACHE_SIZE];
+
 	final int x;
 	final int z;
 
@@ -10,6 +21,20 @@ public class TPFinalCoord implements TPCoord{
 		this.z = z;
 	}
 
+	/**
+	 * Get a coord with the given values.
+	 * Where possible, a canonical shared instance is returned, instead of a new one.
+	 */
+	public static TPFinalCoord of(int x, int z) {
+		int slot = CoordUtil.hashPackedCoord(CoordUtil.packCoord(x, z)) & (CACHE_SIZE - 1);
+		TPFinalCoord coord = cache[slot];
+		if (coord == null || coord.x != x || coord.z != z) {
+			coord = new TPFinalCoord(x, z);
+			cache[slot] = coord;
+		}
+		return coord;
+	}
+
 	public int getX() {
 		return x;
 	}
@@ -26,7 +51,9 @@ public class TPFinalCoord implements TPCoord{
 	}
 
 	public boolean equals(Object o) {
-		if (o instanceof TPFinalCoord
+		if (o == this) {
+			return true;
+		} else if (o instanceof TPFinalCoord
 				&& ((TPFinalCoord) o).getX() == this.x
 				&& ((TPFinalCoord) o).getZ() == this.z) {
 			return true;
@@ -296,7 +296,105 @@ public enum ConfigNodes {
 		"map_integration.pl3xmap.town_costs_layer.zindex",
 		"250",
 		"",
-		"# You can decrease this value to blend the town costs layer with the map more.");
+		"# You can decrease this value to blend the town costs layer with the map more."),
+	PROVINCE_GENERATION(
+		"province_generation",
+		"",
+		"",
+		"",
+		"############################################################",
+		"# +------------------------------------------------------+ #",
+		"# |                  PROVINCE GENERATION                 | #",
+		"# +------------------------------------------------------+ #",
+		"############################################################",
+		""),
+	PROVINCE_GENERATION_PARALLEL_CHUNK_CLAIM_COMPETITION(
+		"province_generation.parallel_chunk_claim_competition",
+		"false",
+		"",
+		"# If true, the claim brushes of a region are moved on all available cores, instead of one.",
+		"# The region is split into tiles, which are painted in 4 alternating (checkerboard) phases,",
+		"# so brushes being moved at the same time are always too far apart to touch each other's chunks.",
+		"# This makes regenerating large regions much faster. The resulting maps are equally valid,",
+		"# but brushes move in a different order than with the single-core method.",
+		"# So a region's generation_seed gives the same map each time with this on, but not the same map as with this off.",
+		"# Only used if data_storage.coord_province_index is grid."),
+	PROVINCE_GENERATION_CONCURRENT_REGION_PAINTING(
+		"province_generation.concurrent_region_painting",
+		"false",
+		"",
+		"# If true, when all regions are regenerated, regions which are far enough apart are painted at the same time.",
+		"# Region 1 is always painted first. After that, a region is only painted alongside earlier regions",
+		"# if neither it, nor the provinces it replaces, come within 2 chunks of theirs.",
+		"# Overlapping regions are still painted one after another, in the usual order.",
+		"# While painted this way, a region's brushes stay inside its area. Provinces based outside the area only grow into it",
+		"# if they are within one brush move of it, and no province grows outside it while the region is painted.",
+		"# In sequential painting, provinces from earlier regions can keep growing anywhere on the map,",
+		"# so the map produced this way is different, even if the regions do not overlap.",
+		"# Generation seeds still give the same map each time, as long as this setting is not changed.",
+		"# Only used if data_storage.coord_province_index is grid."),
+	DATA_STORAGE(
+		"data_storage",
+		"",
+		"",
+		"",
+		"############################################################",
+		"# +------------------------------------------------------+ #",
+		"# |                     DATA STORAGE                     | #",
+		"# +------------------------------------------------------+ #",
+		"############################################################",
+		""),
+	DATA_STORAGE_COORD_PROVINCE_INDEX(
+		"data_storage.coord_province_index",
+		"grid",
+		"",
+		"# Determines how the in-memory coord-province index is stored.",
+		"# grid: One entry for every chunk on the map. Fastest. Best if most of the map is painted.",
+		"# hash: One entry for every claimed chunk. Uses less memory if your regions have large unpainted gaps.",
+		"# A server restart is recommended after changing this value."),
+	DATA_STORAGE_MEMORY_MAPPED_GRID_LOADING(
+		"data_storage.memory_mapped_grid_loading",
+		"true",
+		"",
+		"# If true, the chunk-province grid is also saved to a dense binary file (data/province_grid.dat),",
+		"# and at startup this file is memory-mapped and copied straight into memory,",
+		"# instead of decoding the coords of every province.",
+		"# This makes startup much faster on large maps, at the cost of some extra disk space.",
+		"# If the grid file is missing or out of date, the normal loading method is used."),
+	DATA_STORAGE_LAZY_PROVINCE_GEOMETRY_LOADING(
+		"data_storage.lazy_province_geometry_loading",
+		"false",
+		"",
+		"# If true, and the grid file is up to date, startup only loads the chunk-province grid and the province details.",
+		"# The coord list, borders and neighbours of each province are then built in the background,",
+		"# or straight away if they are needed first (e.g. by a map refresh).",
+		"# This gets the server running sooner on large maps."),
+	DATA_STORAGE_SAVE_DELAY_MILLISECONDS(
+		"data_storage.save_delay_milliseconds",
+		"2000",
+		"",
+		"# Province saves are written on a separate thread, after this delay.",
+		"# All save requests made during the delay are written together, in one batch."),
+	DATA_STORAGE_SHUTDOWN_SAVE_TIMEOUT_SECONDS(
+		"data_storage.shutdown_save_timeout_seconds",
+		"60",
+		"",
+		"# On shutdown, the maximum time to wait for queued province saves to be written."),
+	DATA_STORAGE_REGION_SHARD_FILES(
+		"data_storage.region_shard_files",
+		"true",
+		"",
+		"# If true, a compressed copy of the provinces is also saved in data/province_shards, one file per region.",
+		"# Each file has a checksum. Only the files of regions which have changed are rewritten.",
+		"# If data/provinces.dat is missing or unreadable at startup, the provinces are loaded from these files instead.",
+		"# Damaged or out-of-date files are rebuilt after startup."),
+	DATA_STORAGE_GENERATIONS_TO_KEEP(
+		"data_storage.generations_to_keep",
+		"3",
+		"",
+		"# Before each region regeneration, the province map is saved as a generation, in data/generations.",
+		"# This is the number of generations to keep. Older ones are deleted. 0 disables generations.",
+		"# To undo a regeneration, roll back to a generation with: /tpra generation rollback <number>");
 
 	private final String Root;
 	private final String Default;
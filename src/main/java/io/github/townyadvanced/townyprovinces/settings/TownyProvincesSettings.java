@@ -84,16 +84,16 @@ public class TownyProvincesSettings {
 		return regionDefinitions.get("region_name");
 	}
 
-	public static Location getTopLeftCornerLocation(Map<String, String> regionDefinitions) {
+	public static Location getTopLeftCornerLocation(Map<String, String> regionDefinitions, @Nullable World world) {
 		String locationString = regionDefinitions.get("top_left_corner_location");
 		String[] locationArray = locationString.split(",");
-		return new Location(getWorld(), Integer.parseInt(locationArray[0].trim()), 0, Integer.parseInt(locationArray[1].trim()));
+		return new Location(world, Integer.parseInt(locationArray[0].trim()), 0, Integer.parseInt(locationArray[1].trim()));
 	}
 
-	public static Location getBottomRightCornerLocation(Map<String, String> regionDefinitions) {
+	public static Location getBottomRightCornerLocation(Map<String, String> regionDefinitions, @Nullable World world) {
 		String locationString = regionDefinitions.get("bottom_right_corner_location");
 		String[] locationArray = locationString.split(",");
-		return new Location(getWorld(), Integer.parseInt(locationArray[0].trim()), 0, Integer.parseInt(locationArray[1].trim()));
+		return new Location(world, Integer.parseInt(locationArray[0].trim()), 0, Integer.parseInt(locationArray[1].trim()));
 	}
 
 	public static int getAverageProvinceSize(Map<String, String> regionDefinitions) {
@@ -167,11 +167,20 @@ public class TownyProvincesSettings {
 		return Double.parseDouble(numberString);
 	}
 
-	public static Map<String,Location> getProtectedLocations(Map<String, String> regionDefinitions) {
+	/**
+	 * @return the generation seed, or null if the region does not have one
+	 */
+	public static @Nullable Long getGenerationSeed(Map<String, String> regionDefinitions) {
+		String numString = regionDefinitions.get("generation_seed");
+		if(numString == null || numString.trim().isEmpty())
+			return null;
+		return Long.parseLong(numString.trim());
+	}
+
+	public static Map<String,Location> getProtectedLocations(Map<String, String> regionDefinitions, @Nullable World world) {
 		Map<String, Location> result = new HashMap<>();
 		String locationsString = regionDefinitions.get("protected_locations");
 		if(locationsString != null) {
-			World world = getWorld();
 			String[] locationsArray = locationsString.split("\\|");
 			String[] singleLocationArray;
 			Location location;
@@ -346,6 +355,42 @@ public class TownyProvincesSettings {
 	public static double getProvinceCostLimitProportion() {
 		return Settings.getDouble(ConfigNodes.PROVINCE_COST_LIMIT_PROPORTION);
 	}
+
+	public static String getCoordProvinceIndexType() {
+		return Settings.getString(ConfigNodes.DATA_STORAGE_COORD_PROVINCE_INDEX);
+	}
+
+	public static boolean isParallelChunkClaimCompetitionEnabled() {
+		return Settings.getBoolean(ConfigNodes.PROVINCE_GENERATION_PARALLEL_CHUNK_CLAIM_COMPETITION);
+	}
+
+	public static boolean isConcurrentRegionPaintingEnabled() {
+		return Settings.getBoolean(ConfigNodes.PROVINCE_GENERATION_CONCURRENT_REGION_PAINTING);
+	}
+
+	public static boolean isMemoryMappedGridLoadingEnabled() {
+		return Settings.getBoolean(ConfigNodes.DATA_STORAGE_MEMORY_MAPPED_GRID_LOADING);
+	}
+
+	public static boolean isLazyProvinceGeometryLoadingEnabled() {
+		return Settings.getBoolean(ConfigNodes.DATA_STORAGE_LAZY_PROVINCE_GEOMETRY_LOADING);
+	}
+
+	public static int getSaveDelayMilliseconds() {
+		return Settings.getInt(ConfigNodes.DATA_STORAGE_SAVE_DELAY_MILLISECONDS);
+	}
+
+	public static int getShutdownSaveTimeoutSeconds() {
+		return Settings.getInt(ConfigNodes.DATA_STORAGE_SHUTDOWN_SAVE_TIMEOUT_SECONDS);
+	}
+
+	public static boolean isRegionShardFilesEnabled() {
+		return Settings.getBoolean(ConfigNodes.DATA_STORAGE_REGION_SHARD_FILES);
+	}
+
+	public static int getNumGenerationsToKeep() {
+		return Settings.getInt(ConfigNodes.DATA_STORAGE_GENERATIONS_TO_KEEP);
+	}
 	
 	public static void recalculateProvincesInRegions() {
 		//Clear provinces
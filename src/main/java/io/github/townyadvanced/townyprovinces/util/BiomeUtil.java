@@ -16,8 +16,12 @@ public class BiomeUtil {
 	}
 
 	public static BiomeType getBiomeType(World world, TPCoord coordToTest) {
-		int x = (coordToTest.getX() * TownyProvincesSettings.getChunkSideLength()) + 8;
-		int z = (coordToTest.getZ() * TownyProvincesSettings.getChunkSideLength()) + 8;
+		return getBiomeType(world, coordToTest.getX(), coordToTest.getZ());
+	}
+
+	public static BiomeType getBiomeType(World world, int chunkX, int chunkZ) {
+		int x = (chunkX * TownyProvincesSettings.getChunkSideLength()) + 8;
+		int z = (chunkZ * TownyProvincesSettings.getChunkSideLength()) + 8;
 		Material material = world.getHighestBlockAt(x,z).getType();
 		try {
 			Thread.sleep(TownyProvincesSettings.getPauseMillisecondsBetweenBiomeLookups()); //Sleep because the biome lookup can be hard on processor
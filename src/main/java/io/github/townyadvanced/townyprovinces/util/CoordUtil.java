@@ -0,0 +1,34 @@
+package io.github.townyadvanced.townyprovinces.util;
+
+/**
+ * Helpers for working with coords packed into a single long
+ * 
+ * x is stored in the high 32 bits, and z in the low 32 bits.
+ * This lets primitive collections store coords without creating any objects.
+ */
+public class CoordUtil {
+
+	public static long packCoord(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+
+	public static int unpackX(long packedCoord) {
+		return (int) (packedCoord >> 32);
+	}
+
+	public static int unpackZ(long packedCoord) {
+		return (int) packedCoord;
+	}
+
+	/**
+	 * Spread the bits of a packed coord,
+	 * so that nearby coords do not end up in nearby hash table slots
+	 * 
+	 * @param packedCoord the packed coord
+	 * @return the hash
+	 */
+	public static int hashPackedCoord(long packedCoord) {
+		long hash = packedCoord * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
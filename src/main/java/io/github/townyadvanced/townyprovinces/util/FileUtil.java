@@ -7,7 +7,10 @@ import org.bukkit.Bukkit;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -18,7 +21,12 @@ public class FileUtil {
 
 	public static final String DATA_FOLDER_PATH = "data";
 	public static final String REGION_DEFINITIONS_FOLDER_PATH = "region_definitions";
-	public static final String PROVINCES_FOLDER_PATH = "data/provinces";
+	public static final String PROVINCES_FOLDER_PATH = "data/provinces";  //Legacy YAML province files. Only read for migration
+	public static final String LEGACY_PROVINCES_BACKUP_FOLDER_PATH = "data/provinces_yaml_backup";
+	public static final String PROVINCE_SHARDS_FOLDER_PATH = "data/province_shards";
+	public static final String GENERATIONS_FOLDER_PATH = "data/generations";
+	public static final String TEMP_FILE_EXTENSION = ".tmp";
+	public static final String DAMAGED_FILE_EXTENSION = ".corrupt";
 
 	public static boolean setupPluginDataFoldersIfRequired() {
 		try {
@@ -58,20 +66,56 @@ public class FileUtil {
 		saveListIntoFile(linesToWrite, filePath);
 	}
 
+	/**
+	 * Save the given lines into the given file
+	 * 
+	 * The lines are written to a temporary file, which then replaces the target file,
+	 * so the target file is never left partly written.
+	 */
 	public static void saveListIntoFile(List<String> linesToWrite, String filePath) {
 		try {
 			File file = new File(filePath);
-			if(file.exists()) {
-				file.delete();
-			}
-			file.createNewFile();
-			FileMgmt.listToFile(linesToWrite, filePath);
+			File tempFile = getTempFile(file);
+			FileMgmt.listToFile(linesToWrite, tempFile.getPath());
+			replaceFileAtomically(tempFile, file);
 		} catch (IOException e) {
 			TownyProvinces.severe("Problem Saving Hash Map to File." + e.getMessage());
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * @return the temporary file to write, before replacing the given file
+	 */
+	public static File getTempFile(File file) {
+		return new File(file.getPath() + TEMP_FILE_EXTENSION);
+	}
+
+	/**
+	 * Replace the target file with the source file, in one step if the file system allows it
+	 * 
+	 * Readers, and the plugin after a crash, see either the whole old file or the whole new file.
+	 */
+	public static void replaceFileAtomically(File sourceFile, File targetFile) throws IOException {
+		try {
+			Files.move(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Rename a damaged file, so it is kept for inspection or repair, instead of being overwritten by the next save
+	 * Any file previously moved aside with the same name is replaced.
+	 * 
+	 * @return the file it was moved to
+	 */
+	public static File moveDamagedFileAside(File file) throws IOException {
+		File damagedFile = new File(file.getPath() + DAMAGED_FILE_EXTENSION);
+		Files.move(file.toPath(), damagedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return damagedFile;
+	}
+
 	public static List<File> readRegionDefinitionFiles() {
 		return readListOfFiles(REGION_DEFINITIONS_FOLDER_PATH);
 	}
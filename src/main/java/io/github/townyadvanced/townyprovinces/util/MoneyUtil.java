@@ -2,6 +2,7 @@ package io.github.townyadvanced.townyprovinces.util;
 
 import io.github.townyadvanced.townyprovinces.TownyProvinces;
 import io.github.townyadvanced.townyprovinces.data.DataHandlerUtil;
+import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
 import io.github.townyadvanced.townyprovinces.objects.Province;
 import io.github.townyadvanced.townyprovinces.objects.Region;
 import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
@@ -29,7 +30,7 @@ public class MoneyUtil {
 		for(Region region: TownyProvincesSettings.getOrderedRegionsList()) {
 			//Set standard costs
 			for(Province province: region.getProvinces()) {
-				numCoordsInProvince = province.getListOfCoordsInProvince().size();
+				numCoordsInProvince = province.getCoordsInProvince().size();
 				townNewCost = region.getNewTownCostPerChunk() * numCoordsInProvince;
 				townUpkeepCost = region.getUpkeepTownCostPerChunk() * numCoordsInProvince;
 				province.setNewTownCost(townNewCost);
@@ -43,6 +44,8 @@ public class MoneyUtil {
 				province.setUpkeepTownCost(Math.min(province.getUpkeepTownCost(), townUpkeepCostLimit));
 			}
 		}
+		//Publish the new prices to readers
+		TownyProvincesDataHolder.getInstance().publishMetadataChanges();
 		//Save data
 		DataHandlerUtil.saveAllData();
 		TownyProvinces.info("Province Prices Recalculated");
@@ -2,6 +2,8 @@ package io.github.townyadvanced.townyprovinces.util;
 
 import io.github.townyadvanced.townyprovinces.objects.TPCoord;
 
+import java.util.SplittableRandom;
+
 public class TownyProvincesMathUtil {
 	
 	/**
@@ -13,13 +15,11 @@ public class TownyProvincesMathUtil {
 	 * 
 	 * @param lowest the lowest possible result
 	 * @param highest the highest possible result
+	 * @param random the random number generator to use
 	 * @return the result
 	 */
-	public static int generateRandomInteger(int lowest, int highest) {
-		int range = (highest - lowest) + 1;
-		int randomPart = (int)(Math.random() * range);
-		int result = lowest + randomPart;
-		return result;
+	public static int generateRandomInteger(int lowest, int highest, SplittableRandom random) {
+		return random.nextInt(lowest, highest + 1);
 	}
 
 	/**
@@ -0,0 +1,195 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.ProvinceType;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryProvinceFileTest {
+
+	@TempDir
+	Path tempFolder;
+
+	private File provincesFile;
+	private Province squareProvince;
+	private Province seaProvince;
+
+	/**
+	 * Create a 10 x 10 map with two provinces, and publish it
+	 * The square province has a hole, so some of its columns have two runs of coords.
+	 */
+	@BeforeEach
+	void setUp() {
+		provincesFile = tempFolder.resolve(BinaryProvinceFile.FILE_NAME).toFile();
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		squareProvince = new Province(TPFinalCoord.of(0, 0));
+		squareProvince.setNewTownCost(10);
+		TownyProvincesDataHolder.getInstance().addProvince(squareProvince);
+		claimArea(squareProvince, 0, 4, 0, 1);
+		claimArea(squareProvince, 0, 0, 2, 2);
+		claimArea(squareProvince, 4, 4, 2, 2);
+		claimArea(squareProvince, 0, 4, 3, 4);
+		seaProvince = new Province(TPFinalCoord.of(7, 7));
+		seaProvince.setType(ProvinceType.SEA);
+		seaProvince.setUpkeepTownCost(7.5);
+		seaProvince.setLandValidationRequested(true);
+		seaProvince.setEstimatedProportionOfWater(0.25);
+		TownyProvincesDataHolder.getInstance().addProvince(seaProvince);
+		claimArea(seaProvince, 5, 9, 5, 9);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+	}
+
+	private static void claimArea(Province province, int minX, int maxX, int minZ, int maxZ) {
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, province);
+			}
+		}
+	}
+
+	private BinaryProvinceFile.Layout writeProvinces() throws IOException {
+		List<Province> provinces = Arrays.asList(squareProvince, seaProvince);
+		return BinaryProvinceFile.writeProvinces(provincesFile, provinces, TownyProvincesDataHolder.getInstance().getSnapshot(), 123);
+	}
+
+	/**
+	 * Read the province file into an empty 10 x 10 map
+	 */
+	private BinaryProvinceFile.ReadResult readProvinces(boolean loadCoords) throws IOException {
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		return BinaryProvinceFile.readProvinces(provincesFile, loadCoords);
+	}
+
+	@Test
+	void writtenMetadataReadsBack() throws IOException {
+		writeProvinces();
+
+		BinaryProvinceFile.ReadResult readResult = readProvinces(true);
+
+		assertEquals(123, readResult.geometryId);
+		assertNotNull(readResult.layout);
+		assertEquals(2, readResult.provinces.size());
+		Province loadedSquareProvince = readResult.provinces.get(0);
+		assertEquals(squareProvince.getId(), loadedSquareProvince.getId());
+		assertEquals(ProvinceType.CIVILIZED, loadedSquareProvince.getType());
+		assertEquals(10.0, loadedSquareProvince.getNewTownCost());
+		Province loadedSeaProvince = readResult.provinces.get(1);
+		assertEquals(seaProvince.getId(), loadedSeaProvince.getId());
+		assertEquals(ProvinceType.SEA, loadedSeaProvince.getType());
+		assertEquals(7.5, loadedSeaProvince.getUpkeepTownCost());
+		assertTrue(loadedSeaProvince.isLandValidationRequested());
+		assertEquals(0.25, loadedSeaProvince.getEstimatedProportionOfWater());
+		for (Province province : readResult.provinces) {
+			assertFalse(province.isMetadataDirty());
+		}
+	}
+
+	@Test
+	void writtenCoordsReadBack() throws IOException {
+		writeProvinces();
+
+		BinaryProvinceFile.ReadResult readResult = readProvinces(true);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+
+		assertTrue(readResult.coordsLoaded);
+		assertEquals(0, readResult.numCoordsOutsideMap);
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		Province loadedSquareProvince = readResult.provinces.get(0);
+		assertEquals(22, snapshot.getCoordsInProvince(loadedSquareProvince).size());
+		//Either side of the hole
+		assertSame(loadedSquareProvince, snapshot.getProvinceAtCoord(2, 1));
+		assertNull(snapshot.getProvinceAtCoord(2, 2));
+		assertSame(loadedSquareProvince, snapshot.getProvinceAtCoord(2, 3));
+		assertEquals(25, snapshot.getCoordsInProvince(readResult.provinces.get(1)).size());
+		assertSame(readResult.provinces.get(1), snapshot.getProvinceAtCoord(9, 9));
+	}
+
+	@Test
+	void coordsAreSkippedWhenNotRequested() throws IOException {
+		writeProvinces();
+
+		BinaryProvinceFile.ReadResult readResult = readProvinces(false);
+
+		assertFalse(readResult.coordsLoaded);
+		assertEquals(2, readResult.provinces.size());
+		assertEquals(0, TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex().getNumClaimedCells());
+	}
+
+	@Test
+	void updateBatchSavesChangedMetadataAndCoords() throws IOException {
+		BinaryProvinceFile.Layout layout = writeProvinces();
+		//Change the metadata of one province, and fill the hole in the other
+		seaProvince.setNewTownCost(99);
+		claimArea(squareProvince, 1, 3, 2, 2);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		List<Integer> provincesWithChangedCoords = layout.findProvincesWithChangedCoords(snapshot);
+		assertEquals(1, provincesWithChangedCoords.size());
+
+		BinaryProvinceFile.createUpdateBatch(layout, snapshot, provincesWithChangedCoords, 456).applyTo(provincesFile);
+
+		BinaryProvinceFile.ReadResult readResult = readProvinces(true);
+		assertEquals(456, readResult.geometryId);
+		assertEquals(layout.fileId, BinaryProvinceFile.readFileId(provincesFile));
+		assertEquals(99.0, readResult.provinces.get(1).getNewTownCost());
+		assertSame(readResult.provinces.get(0), TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(2, 2));
+		assertEquals(25, TownyProvincesDataHolder.getInstance().getWorkingCoordsInProvince(readResult.provinces.get(0)).size());
+	}
+
+	@Test
+	void fullRewriteChangesFileId() throws IOException {
+		long firstFileId = writeProvinces().fileId;
+		long secondFileId = writeProvinces().fileId;
+
+		assertTrue(firstFileId != secondFileId);
+		assertEquals(secondFileId, BinaryProvinceFile.readFileId(provincesFile));
+	}
+
+	@Test
+	void truncatedFileIsRejected() throws IOException {
+		writeProvinces();
+		try (RandomAccessFile file = new RandomAccessFile(provincesFile, "rw")) {
+			file.setLength(file.length() - 5);
+		}
+
+		assertThrows(IOException.class, () -> readProvinces(true));
+	}
+
+	@Test
+	void otherFilesAreRejected() throws IOException {
+		Files.write(provincesFile.toPath(), "not a province file".getBytes());
+
+		assertThrows(IOException.class, () -> readProvinces(true));
+		assertEquals(BinaryProvinceFile.NO_FILE_ID, BinaryProvinceFile.readFileId(provincesFile));
+	}
+
+	@Test
+	void coordsOutsideTheMapAreCounted() throws IOException {
+		writeProvinces();
+
+		//Load into a map one column narrower. The sea province has 5 coords in the last column
+		TownyProvincesDataHolder.initializeForMap(0, 8, 0, 9);
+		BinaryProvinceFile.ReadResult readResult = BinaryProvinceFile.readProvinces(provincesFile, true);
+
+		assertEquals(5, readResult.numCoordsOutsideMap);
+		assertEquals(2, readResult.provinces.size());
+	}
+}
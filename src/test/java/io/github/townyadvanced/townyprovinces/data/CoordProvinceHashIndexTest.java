@@ -0,0 +1,124 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CoordProvinceHashIndexTest {
+
+	//The table starts with 1024 slots, and is rebuilt when it would be more than half full
+	private static final int MIN_X = -50;
+	private static final int MAX_X = 49;
+	private static final int MIN_Z = -50;
+	private static final int MAX_Z = 49;
+
+	private CoordProvinceHashIndex index;
+	private Province[] provinces;
+	private List<long[]> shuffledCoords;
+
+	@BeforeEach
+	void setUp() {
+		index = new CoordProvinceHashIndex(MIN_X, MAX_X, MIN_Z, MAX_Z, new ProvinceRegistry());
+		provinces = new Province[]{new Province(TPFinalCoord.of(0, 0)), new Province(TPFinalCoord.of(1, 0)), new Province(TPFinalCoord.of(2, 0))};
+		shuffledCoords = new ArrayList<>();
+		for (int x = MIN_X; x <= MAX_X; x++) {
+			for (int z = MIN_Z; z <= MAX_Z; z++) {
+				shuffledCoords.add(new long[]{x, z});
+			}
+		}
+		Collections.shuffle(shuffledCoords, new Random(7));
+	}
+
+	/**
+	 * The province each coord is given by claimCoords()
+	 */
+	private Province getExpectedProvince(int x, int z) {
+		return provinces[Math.floorMod(x * 31 + z, provinces.length)];
+	}
+
+	/**
+	 * Claim the first given number of shuffled coords
+	 */
+	private void claimCoords(int numCoords) {
+		for (long[] coord : shuffledCoords.subList(0, numCoords)) {
+			index.setProvince((int) coord[0], (int) coord[1], getExpectedProvince((int) coord[0], (int) coord[1]));
+		}
+	}
+
+	/**
+	 * Check every cell of the given index. Only the given coords are claimed, each by its expected province
+	 */
+	private void assertIndexHolds(CoordProvinceIndex index, List<long[]> claimedCoords) {
+		boolean[][] claimed = new boolean[MAX_X - MIN_X + 1][MAX_Z - MIN_Z + 1];
+		for (long[] coord : claimedCoords) {
+			claimed[(int) coord[0] - MIN_X][(int) coord[1] - MIN_Z] = true;
+		}
+		for (int x = MIN_X; x <= MAX_X; x++) {
+			for (int z = MIN_Z; z <= MAX_Z; z++) {
+				if (claimed[x - MIN_X][z - MIN_Z]) {
+					assertSame(getExpectedProvince(x, z), index.getProvince(x, z), "Coord " + x + "," + z);
+				} else {
+					assertNull(index.getProvince(x, z), "Coord " + x + "," + z);
+				}
+			}
+		}
+		assertEquals(claimedCoords.size(), index.getNumClaimedCells());
+	}
+
+	@Test
+	void claimsCanBeFoundAfterTheTableIsRebuiltOnFill() {
+		//Enough to rebuild the table several times
+		claimCoords(6000);
+
+		assertIndexHolds(index, shuffledCoords.subList(0, 6000));
+	}
+
+	@Test
+	void clearedCellsStayUnclaimedAfterTheTableIsRebuilt() {
+		claimCoords(500);
+		List<long[]> claimedCoords = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			long[] coord = shuffledCoords.get(i);
+			if (i % 2 == 0) {
+				index.clearCell((int) coord[0], (int) coord[1]);
+			} else {
+				claimedCoords.add(coord);
+			}
+		}
+		//Fill the table past the point where it is rebuilt, which drops the cleared cells
+		for (long[] coord : shuffledCoords.subList(500, 2000)) {
+			index.setProvince((int) coord[0], (int) coord[1], getExpectedProvince((int) coord[0], (int) coord[1]));
+			claimedCoords.add(coord);
+		}
+
+		assertIndexHolds(index, claimedCoords);
+		//Cleared cells can be claimed again
+		long[] clearedCoord = shuffledCoords.get(0);
+		index.setProvince((int) clearedCoord[0], (int) clearedCoord[1], getExpectedProvince((int) clearedCoord[0], (int) clearedCoord[1]));
+		claimedCoords.add(clearedCoord);
+		assertIndexHolds(index, claimedCoords);
+	}
+
+	@Test
+	void copyIsRebuiltWithTheSameClaims() {
+		claimCoords(3000);
+
+		CoordProvinceIndex copy = index.copy();
+		long[] changedCoord = shuffledCoords.get(0);
+		index.clearCell((int) changedCoord[0], (int) changedCoord[1]);
+
+		assertIndexHolds(copy, shuffledCoords.subList(0, 3000));
+		assertFalse(index.isClaimed((int) changedCoord[0], (int) changedCoord[1]));
+	}
+}
@@ -0,0 +1,128 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoordSetTest {
+
+	//A set created for one coord has 16 slots, and grows once it holds more than 8 coords
+	private static final int NUM_SLOTS = 16;
+
+	/**
+	 * Find coords on row z=0 which hash to the given slot of a 16-slot set, skipping the given number of them
+	 */
+	private static int findX(int idealSlot, int numToSkip) {
+		for (int x = 0; ; x++) {
+			if ((CoordUtil.hashPackedCoord(CoordUtil.packCoord(x, 0)) & (NUM_SLOTS - 1)) == idealSlot && numToSkip-- == 0)
+				return x;
+		}
+	}
+
+	/**
+	 * @return the x of coords forming one cluster which wraps from the end of the table to the start.
+	 *         Three hash to slot 14, two to slot 15, one to slot 0 and one to slot 1, so they fill slots 14 to 4.
+	 */
+	private static List<Integer> createWrappedCluster() {
+		List<Integer> result = new ArrayList<>();
+		result.add(findX(14, 0));
+		result.add(findX(14, 1));
+		result.add(findX(14, 2));
+		result.add(findX(15, 0));
+		result.add(findX(15, 1));
+		result.add(findX(0, 0));
+		result.add(findX(1, 0));
+		return result;
+	}
+
+	private static CoordSet createSet(List<Integer> xs) {
+		CoordSet result = new CoordSet(1);
+		for (int x : xs) {
+			assertTrue(result.add(x, 0));
+		}
+		return result;
+	}
+
+	@Test
+	void removingFromAWrappedClusterKeepsTheRestFindable() {
+		List<Integer> cluster = createWrappedCluster();
+		for (int removedX : cluster) {
+			CoordSet coordSet = createSet(cluster);
+
+			assertTrue(coordSet.remove(removedX, 0));
+
+			assertFalse(coordSet.contains(removedX, 0));
+			assertFalse(coordSet.remove(removedX, 0));
+			assertEquals(cluster.size() - 1, coordSet.size());
+			for (int x : cluster) {
+				if (x != removedX) {
+					assertTrue(coordSet.contains(x, 0), "Lost " + x + " after removing " + removedX);
+				}
+			}
+		}
+	}
+
+	@Test
+	void wrappedClusterCanBeEmptiedInAnyOrder() {
+		List<Integer> cluster = createWrappedCluster();
+		Random random = new Random(5);
+		for (int i = 0; i < 50; i++) {
+			CoordSet coordSet = createSet(cluster);
+			List<Integer> remaining = new ArrayList<>(cluster);
+			Collections.shuffle(remaining, random);
+			while (!remaining.isEmpty()) {
+				assertTrue(coordSet.remove(remaining.remove(0), 0));
+				for (int x : remaining) {
+					assertTrue(coordSet.contains(x, 0));
+				}
+			}
+			assertTrue(coordSet.isEmpty());
+			//Slots freed by the removals can be used again
+			for (int x : cluster) {
+				assertTrue(coordSet.add(x, 0));
+			}
+			assertEquals(cluster.size(), coordSet.size());
+		}
+	}
+
+	@Test
+	void coordMissingFromAWrappedClusterIsNotFound() {
+		CoordSet coordSet = createSet(createWrappedCluster());
+		int missingX = findX(14, 3);
+
+		assertFalse(coordSet.contains(missingX, 0));
+		assertFalse(coordSet.remove(missingX, 0));
+	}
+
+	@Test
+	void setMatchesAHashSetAcrossGrowthAndRemoval() {
+		CoordSet coordSet = new CoordSet(1);
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(11);
+		for (int i = 0; i < 20000; i++) {
+			int x = random.nextInt(64) - 32;
+			int z = random.nextInt(64) - 32;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(CoordUtil.packCoord(x, z)), coordSet.remove(x, z));
+			} else {
+				assertEquals(expected.add(CoordUtil.packCoord(x, z)), coordSet.add(x, z));
+			}
+		}
+		assertEquals(expected.size(), coordSet.size());
+		for (int x = -32; x < 32; x++) {
+			for (int z = -32; z < 32; z++) {
+				assertEquals(expected.contains(CoordUtil.packCoord(x, z)), coordSet.contains(x, z));
+			}
+		}
+	}
+}
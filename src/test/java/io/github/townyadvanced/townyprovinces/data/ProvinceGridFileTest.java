@@ -0,0 +1,164 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProvinceGridFileTest {
+
+	private static final long GEOMETRY_ID = 123;
+
+	@TempDir
+	Path tempFolder;
+
+	private File gridFile;
+
+	@BeforeEach
+	void setUp() {
+		gridFile = tempFolder.resolve(ProvinceGridFile.FILE_NAME).toFile();
+	}
+
+	/**
+	 * Replace the data holder with an empty 10 x 8 map, holding two provinces with no coords, as the loader does
+	 *
+	 * @return the provinces, in province file order
+	 */
+	private static List<Province> createProvinces() {
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 7);
+		List<Province> result = Arrays.asList(new Province(TPFinalCoord.of(1, 1)), new Province(TPFinalCoord.of(7, 5)));
+		for (Province province : result) {
+			TownyProvincesDataHolder.getInstance().addProvince(province);
+		}
+		return result;
+	}
+
+	private static void claimArea(Province province, int minX, int maxX, int minZ, int maxZ) {
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, province);
+			}
+		}
+	}
+
+	/**
+	 * Create a map whose left half is the first province, and whose bottom right quarter is the second,
+	 * and save it to the grid file
+	 *
+	 * @return the provinces
+	 */
+	private List<Province> saveMap() throws IOException {
+		List<Province> provinces = createProvinces();
+		claimArea(provinces.get(0), 0, 4, 0, 7);
+		claimArea(provinces.get(1), 5, 9, 4, 7);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		ProvinceGridFile.writeGrid(gridFile, TownyProvincesDataHolder.getInstance().getSnapshot().getCoordProvinceIndex(), provinces, GEOMETRY_ID);
+		return provinces;
+	}
+
+	/**
+	 * Check the map saved by saveMap() was loaded into the given provinces
+	 */
+	private static void assertSavedMapLoaded(List<Province> loadedProvinces) {
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		assertSame(loadedProvinces.get(0), snapshot.getProvinceAtCoord(4, 7));
+		assertSame(loadedProvinces.get(1), snapshot.getProvinceAtCoord(5, 4));
+		assertNull(snapshot.getProvinceAtCoord(5, 3));
+		assertEquals(40, snapshot.getCoordsInProvince(loadedProvinces.get(0)).size());
+		assertEquals(20, snapshot.getCoordsInProvince(loadedProvinces.get(1)).size());
+	}
+
+	@Test
+	void savedGridLoadsBack() throws IOException {
+		saveMap();
+
+		List<Province> loadedProvinces = createProvinces();
+		assertEquals(0, ProvinceGridFile.loadGrid(gridFile, loadedProvinces, GEOMETRY_ID, false));
+		assertSavedMapLoaded(loadedProvinces);
+	}
+
+	@Test
+	void savedGridLoadsBackWithLazyCoordLists() throws IOException {
+		saveMap();
+
+		List<Province> loadedProvinces = createProvinces();
+		assertEquals(0, ProvinceGridFile.loadGrid(gridFile, loadedProvinces, GEOMETRY_ID, true));
+		assertSavedMapLoaded(loadedProvinces);
+	}
+
+	@Test
+	void gridWithStaleGeometryIdIsNotLoaded() throws IOException {
+		saveMap();
+
+		List<Province> loadedProvinces = createProvinces();
+		assertEquals(ProvinceGridFile.GRID_OUT_OF_DATE, ProvinceGridFile.loadGrid(gridFile, loadedProvinces, GEOMETRY_ID + 1, false));
+		assertEquals(ProvinceGridFile.GRID_OUT_OF_DATE, ProvinceGridFile.loadGrid(gridFile, loadedProvinces, BinaryProvinceFile.NO_GEOMETRY_ID, false));
+		assertEquals(0, TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex().getNumClaimedCells());
+	}
+
+	@Test
+	void truncatedGridIsNotLoaded() throws IOException {
+		saveMap();
+		try (RandomAccessFile file = new RandomAccessFile(gridFile, "rw")) {
+			file.setLength(file.length() - 4);
+		}
+
+		assertEquals(ProvinceGridFile.GRID_OUT_OF_DATE, ProvinceGridFile.loadGrid(gridFile, createProvinces(), GEOMETRY_ID, false));
+	}
+
+	@Test
+	void gridWithDifferentProvinceCountIsNotLoaded() throws IOException {
+		saveMap();
+
+		List<Province> loadedProvinces = createProvinces();
+		assertEquals(ProvinceGridFile.GRID_OUT_OF_DATE, ProvinceGridFile.loadGrid(gridFile, loadedProvinces.subList(1, 2), GEOMETRY_ID, false));
+	}
+
+	@Test
+	void updatedGridLoadsBackAsTheChangedMap() throws IOException {
+		List<Province> provinces = saveMap();
+		//Grow the second province by two rows
+		ProvinceCoords oldCoords = TownyProvincesDataHolder.getInstance().getSnapshot().getCoordsInProvince(provinces.get(1));
+		claimArea(provinces.get(1), 5, 9, 2, 3);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		List<ProvinceCoords> changedAreas = Arrays.asList(oldCoords, snapshot.getCoordsInProvince(provinces.get(1)));
+
+		assertTrue(ProvinceGridFile.updateGrid(gridFile, snapshot.getCoordProvinceIndex(), provinces, GEOMETRY_ID + 1, changedAreas));
+		assertEquals(ProvinceGridFile.GRID_OUT_OF_DATE, ProvinceGridFile.loadGrid(gridFile, createProvinces(), GEOMETRY_ID, false));
+		List<Province> loadedProvinces = createProvinces();
+		assertEquals(0, ProvinceGridFile.loadGrid(gridFile, loadedProvinces, GEOMETRY_ID + 1, false));
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		assertSame(loadedProvinces.get(1), TownyProvincesDataHolder.getInstance().getSnapshot().getProvinceAtCoord(5, 2));
+		assertNull(TownyProvincesDataHolder.getInstance().getSnapshot().getProvinceAtCoord(5, 1));
+		assertEquals(30, TownyProvincesDataHolder.getInstance().getSnapshot().getCoordsInProvince(loadedProvinces.get(1)).size());
+	}
+
+	@Test
+	void gridWithOtherProvincesIsNotUpdated() throws IOException {
+		List<Province> provinces = saveMap();
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+
+		assertFalse(ProvinceGridFile.updateGrid(gridFile, snapshot.getCoordProvinceIndex(), provinces.subList(1, 2), GEOMETRY_ID + 1, Collections.emptyList()));
+		//The file is left as it was
+		List<Province> loadedProvinces = createProvinces();
+		assertEquals(0, ProvinceGridFile.loadGrid(gridFile, loadedProvinces, GEOMETRY_ID, false));
+		assertSavedMapLoaded(loadedProvinces);
+	}
+}
@@ -0,0 +1,204 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProvinceJournalTest {
+
+	private static final long FILE_ID = 0x1234_5678_9abcL;
+
+	@TempDir
+	Path tempFolder;
+
+	private File journalFile;
+	private File targetFile;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		journalFile = tempFolder.resolve(ProvinceJournal.FILE_NAME).toFile();
+		targetFile = tempFolder.resolve("target.dat").toFile();
+		Files.write(targetFile.toPath(), new byte[64]);
+	}
+
+	private static ProvinceJournal.Batch createBatch(long position, int... values) {
+		ProvinceJournal.Batch batch = new ProvinceJournal.Batch();
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		batch.add(position, bytes);
+		return batch;
+	}
+
+	private static byte[] expectedTargetBytes(int[][] writes) {
+		byte[] result = new byte[64];
+		for (int[] write : writes) {
+			for (int i = 1; i < write.length; i++) {
+				result[write[0] + i - 1] = (byte) write[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Save a 10 x 10 map, whose left half is one province, to a province file.
+	 * Then give the province a new upkeep cost and the next column of the map, and create the batch which saves that.
+	 *
+	 * @return the batch
+	 */
+	private static ProvinceJournal.Batch saveMapAndCreateUpdateBatch(File provincesFile) throws IOException {
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		Province province = new Province(TPFinalCoord.of(2, 3));
+		province.setUpkeepTownCost(1);
+		TownyProvincesDataHolder.getInstance().addProvince(province);
+		claimColumns(province, 0, 4);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		BinaryProvinceFile.Layout layout = BinaryProvinceFile.writeProvinces(provincesFile, Collections.singletonList(province), TownyProvincesDataHolder.getInstance().getSnapshot(), 123);
+		province.setUpkeepTownCost(3);
+		claimColumns(province, 5, 5);
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		return BinaryProvinceFile.createUpdateBatch(layout, snapshot, layout.findProvincesWithChangedCoords(snapshot), 456);
+	}
+
+	private static void claimColumns(Province province, int minX, int maxX) {
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = 0; z <= 9; z++) {
+				TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, province);
+			}
+		}
+	}
+
+	@Test
+	void completeBatchesAreApplied() throws IOException {
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(4, 1, 2, 3));
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(40, 9, 8));
+
+		assertEquals(2, ProvinceJournal.replay(journalFile, targetFile, FILE_ID));
+		assertArrayEquals(expectedTargetBytes(new int[][]{{4, 1, 2, 3}, {40, 9, 8}}), Files.readAllBytes(targetFile.toPath()));
+		assertEquals(0, journalFile.length());
+	}
+
+	@Test
+	void replayingAnAppliedBatchChangesNothing() throws IOException {
+		ProvinceJournal.Batch batch = createBatch(10, 5, 6, 7);
+		ProvinceJournal.append(journalFile, FILE_ID, batch);
+		batch.applyTo(targetFile);
+
+		assertEquals(1, ProvinceJournal.replay(journalFile, targetFile, FILE_ID));
+		assertArrayEquals(expectedTargetBytes(new int[][]{{10, 5, 6, 7}}), Files.readAllBytes(targetFile.toPath()));
+	}
+
+	@Test
+	void tornBatchIsIgnored() throws IOException {
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(4, 1, 2, 3));
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(40, 9, 8));
+		//The second batch was not completely written before the crash
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		assertEquals(1, ProvinceJournal.replay(journalFile, targetFile, FILE_ID));
+		assertArrayEquals(expectedTargetBytes(new int[][]{{4, 1, 2, 3}}), Files.readAllBytes(targetFile.toPath()));
+		assertEquals(0, journalFile.length());
+	}
+
+	@Test
+	void batchWithChecksumMismatchIsIgnored() throws IOException {
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(4, 1, 2, 3));
+		long secondBatchPosition = journalFile.length();
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(40, 9, 8));
+		//Damage the last content byte of the second batch
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			long position = file.length() - 8 - 1;
+			assertTrue(position > secondBatchPosition);
+			file.seek(position);
+			int value = file.read();
+			file.seek(position);
+			file.write(value ^ 0x5a);
+		}
+
+		assertEquals(1, ProvinceJournal.replay(journalFile, targetFile, FILE_ID));
+		assertArrayEquals(expectedTargetBytes(new int[][]{{4, 1, 2, 3}}), Files.readAllBytes(targetFile.toPath()));
+	}
+
+	@Test
+	void journalOfAnotherFileIsNotApplied() throws IOException {
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(4, 1, 2, 3));
+
+		assertEquals(0, ProvinceJournal.replay(journalFile, targetFile, FILE_ID + 1));
+		assertArrayEquals(new byte[64], Files.readAllBytes(targetFile.toPath()));
+		assertEquals(0, journalFile.length());
+	}
+
+	@Test
+	void appendingForAnotherFileStartsTheJournalAgain() throws IOException {
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(4, 1, 2, 3));
+		ProvinceJournal.append(journalFile, FILE_ID + 1, createBatch(40, 9, 8));
+
+		assertEquals(1, ProvinceJournal.replay(journalFile, targetFile, FILE_ID + 1));
+		assertArrayEquals(expectedTargetBytes(new int[][]{{40, 9, 8}}), Files.readAllBytes(targetFile.toPath()));
+	}
+
+	@Test
+	void tornHeaderIsIgnored() throws IOException {
+		ProvinceJournal.append(journalFile, FILE_ID, createBatch(4, 1, 2, 3));
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			file.setLength(10);
+		}
+
+		assertEquals(0, ProvinceJournal.replay(journalFile, targetFile, FILE_ID));
+		assertArrayEquals(new byte[64], Files.readAllBytes(targetFile.toPath()));
+		assertEquals(0, journalFile.length());
+	}
+
+	@Test
+	void replayRecoversSaveInterruptedAfterJournaling() throws IOException {
+		File provincesFile = tempFolder.resolve(BinaryProvinceFile.FILE_NAME).toFile();
+		ProvinceJournal.Batch batch = saveMapAndCreateUpdateBatch(provincesFile);
+		//Crash after the batch is journaled, before it is applied
+		ProvinceJournal.append(journalFile, BinaryProvinceFile.readFileId(provincesFile), batch);
+
+		assertEquals(1, ProvinceJournal.replay(journalFile, provincesFile, BinaryProvinceFile.readFileId(provincesFile)));
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		BinaryProvinceFile.ReadResult readResult = BinaryProvinceFile.readProvinces(provincesFile, true);
+		assertEquals(456, readResult.geometryId);
+		assertEquals(3.0, readResult.provinces.get(0).getUpkeepTownCost());
+		assertSame(readResult.provinces.get(0), TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(5, 9));
+	}
+
+	@Test
+	void tornBatchLeavesFileAsBeforeTheSave() throws IOException {
+		File provincesFile = tempFolder.resolve(BinaryProvinceFile.FILE_NAME).toFile();
+		ProvinceJournal.Batch batch = saveMapAndCreateUpdateBatch(provincesFile);
+		//Crash while the batch is being journaled
+		ProvinceJournal.append(journalFile, BinaryProvinceFile.readFileId(provincesFile), batch);
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			file.setLength(file.length() / 2);
+		}
+
+		assertEquals(0, ProvinceJournal.replay(journalFile, provincesFile, BinaryProvinceFile.readFileId(provincesFile)));
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		BinaryProvinceFile.ReadResult readResult = BinaryProvinceFile.readProvinces(provincesFile, true);
+		assertEquals(123, readResult.geometryId);
+		assertEquals(1.0, readResult.provinces.get(0).getUpkeepTownCost());
+		assertSame(readResult.provinces.get(0), TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(4, 9));
+		assertNull(TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(5, 9));
+	}
+}
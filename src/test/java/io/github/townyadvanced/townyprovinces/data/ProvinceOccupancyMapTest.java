@@ -0,0 +1,149 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProvinceOccupancyMapTest {
+
+	//200 chunks wide, so each row has three full words and part of a fourth. Words start at x = -70, -6, 58 and 122
+	private static final int MIN_X = -70;
+	private static final int MAX_X = 129;
+	private static final int MIN_Z = 0;
+	private static final int MAX_Z = 9;
+
+	//The rectangle which most tests check. It crosses the word boundaries at x = -6 and x = 58
+	private static final int AREA_MIN_X = -20;
+	private static final int AREA_MAX_X = 70;
+	private static final int AREA_MIN_Z = 2;
+	private static final int AREA_MAX_Z = 7;
+
+	private ProvinceOccupancyMap occupancyMap;
+
+	/**
+	 * Create an empty map, with an occupancy map which is kept up to date by claimArea(), as the painter does
+	 */
+	@BeforeEach
+	void setUp() {
+		TownyProvincesDataHolder.initializeForMap(MIN_X, MAX_X, MIN_Z, MAX_Z);
+		occupancyMap = ProvinceOccupancyMap.build(getIndex());
+	}
+
+	private static CoordProvinceIndex getIndex() {
+		return TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex();
+	}
+
+	private static Province addProvince(int homeBlockX, int homeBlockZ) {
+		Province province = new Province(TPFinalCoord.of(homeBlockX, homeBlockZ));
+		TownyProvincesDataHolder.getInstance().addProvince(province);
+		return province;
+	}
+
+	private void claimArea(Province province, int minX, int maxX, int minZ, int maxZ) {
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, province);
+				occupancyMap.setClaimed(x, z, province);
+			}
+		}
+	}
+
+	/**
+	 * Check the rectangle against both the occupancy map kept up to date by claimArea(), and one built from the index
+	 */
+	private boolean hasOtherProvinceInArea(int minX, int maxX, int minZ, int maxZ, Province province) {
+		boolean result = occupancyMap.hasOtherProvinceInArea(minX, maxX, minZ, maxZ, province, getIndex());
+		boolean resultFromBuiltMap = ProvinceOccupancyMap.build(getIndex()).hasOtherProvinceInArea(minX, maxX, minZ, maxZ, province, getIndex());
+		if (result != resultFromBuiltMap)
+			throw new AssertionError("The built occupancy map disagrees with the one kept up to date");
+		return result;
+	}
+
+	@Test
+	void unclaimedAreaHasNoOtherProvince() {
+		Province province = addProvince(0, 0);
+
+		assertFalse(hasOtherProvinceInArea(MIN_X, MAX_X, MIN_Z, MAX_Z, province));
+	}
+
+	@Test
+	void areaClaimedOnlyByTheProvinceHasNoOtherProvince() {
+		Province province = addProvince(0, 5);
+		claimArea(province, AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z);
+
+		assertFalse(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z, province));
+		assertFalse(hasOtherProvinceInArea(MIN_X, MAX_X, MIN_Z, MAX_Z, province));
+		//Any claimed chunk belongs to another province, for a province which is not registered yet
+		assertTrue(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z, new Province(TPFinalCoord.of(0, 5))));
+	}
+
+	@Test
+	void foreignChunkAtEachCornerIsFound() {
+		int[][] corners = {{AREA_MIN_X, AREA_MIN_Z}, {AREA_MAX_X, AREA_MIN_Z}, {AREA_MIN_X, AREA_MAX_Z}, {AREA_MAX_X, AREA_MAX_Z}};
+		for (int[] corner : corners) {
+			setUp();
+			Province province = addProvince(0, 5);
+			Province otherProvince = addProvince(corner[0], corner[1]);
+			claimArea(province, AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z);
+			claimArea(otherProvince, corner[0], corner[0], corner[1], corner[1]);
+
+			assertTrue(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z, province), "Corner " + corner[0] + "," + corner[1]);
+			assertTrue(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z, otherProvince), "Corner " + corner[0] + "," + corner[1]);
+			//The corner alone
+			assertTrue(hasOtherProvinceInArea(corner[0], corner[0], corner[1], corner[1], province), "Corner " + corner[0] + "," + corner[1]);
+			assertFalse(hasOtherProvinceInArea(corner[0], corner[0], corner[1], corner[1], otherProvince), "Corner " + corner[0] + "," + corner[1]);
+		}
+	}
+
+	@Test
+	void otherProvincesJustOutsideTheAreaAreIgnored() {
+		Province province = addProvince(0, 5);
+		Province leftProvince = addProvince(AREA_MIN_X - 1, 5);
+		Province rightProvince = addProvince(AREA_MAX_X + 1, 5);
+		claimArea(province, AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z);
+		//In the same words as the edges of the area, and in the rows above and below it
+		claimArea(leftProvince, MIN_X, AREA_MIN_X - 1, MIN_Z, MAX_Z);
+		claimArea(rightProvince, AREA_MAX_X + 1, MAX_X, MIN_Z, MAX_Z);
+		claimArea(leftProvince, AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z - 1, AREA_MIN_Z - 1);
+		claimArea(rightProvince, AREA_MIN_X, AREA_MAX_X, AREA_MAX_Z + 1, AREA_MAX_Z + 1);
+
+		assertFalse(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z, province));
+		assertTrue(hasOtherProvinceInArea(AREA_MIN_X - 1, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z, province));
+		assertTrue(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X + 1, AREA_MIN_Z, AREA_MAX_Z, province));
+		assertTrue(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z - 1, AREA_MAX_Z, province));
+		assertTrue(hasOtherProvinceInArea(AREA_MIN_X, AREA_MAX_X, AREA_MIN_Z, AREA_MAX_Z + 1, province));
+	}
+
+	@Test
+	void provinceWithHandleBetweenOthersIsNotMistakenForThem() {
+		//The province's handle is between the handles of the other two, which share words with it
+		Province lowerProvince = addProvince(-30, 5);
+		Province province = addProvince(0, 5);
+		Province higherProvince = addProvince(30, 5);
+		claimArea(lowerProvince, -40, -31, AREA_MIN_Z, AREA_MAX_Z);
+		claimArea(province, -30, 29, AREA_MIN_Z, AREA_MAX_Z);
+		claimArea(higherProvince, 30, 40, AREA_MIN_Z, AREA_MAX_Z);
+
+		assertFalse(hasOtherProvinceInArea(-30, 29, AREA_MIN_Z, AREA_MAX_Z, province));
+		assertTrue(hasOtherProvinceInArea(-30, 30, AREA_MIN_Z, AREA_MAX_Z, province));
+		assertTrue(hasOtherProvinceInArea(-31, 29, AREA_MIN_Z, AREA_MAX_Z, province));
+		//A word holding only the other two provinces
+		assertTrue(hasOtherProvinceInArea(-40, -31, AREA_MIN_Z, AREA_MAX_Z, province));
+	}
+
+	@Test
+	void areaPartlyOutsideTheMapIsClipped() {
+		Province province = addProvince(MAX_X, MAX_Z);
+		Province otherProvince = addProvince(MIN_X, MIN_Z);
+		claimArea(province, MAX_X - 5, MAX_X, MAX_Z - 5, MAX_Z);
+		claimArea(otherProvince, MIN_X, MIN_X, MIN_Z, MIN_Z);
+
+		assertFalse(hasOtherProvinceInArea(MAX_X - 5, MAX_X + 100, MAX_Z - 5, MAX_Z + 100, province));
+		assertTrue(hasOtherProvinceInArea(MIN_X - 100, MIN_X, MIN_Z - 100, MIN_Z, province));
+		assertFalse(hasOtherProvinceInArea(MAX_X + 1, MAX_X + 100, MIN_Z, MAX_Z, otherProvince));
+	}
+}
@@ -0,0 +1,216 @@
+package io.github.townyadvanced.townyprovinces.data;
+
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import io.github.townyadvanced.townyprovinces.util.FileUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProvinceShardFileTest {
+
+	//Position of the payload checksum in the header of the unassigned shard, which has an empty region name
+	private static final long PAYLOAD_CHECKSUM_POSITION = 4 + 4 + 2 + 4;
+
+	@TempDir
+	Path tempFolder;
+
+	private File shardsFolder;
+	private Province province;
+
+	/**
+	 * Create a 10 x 10 map, whose left half is one province
+	 */
+	@BeforeEach
+	void setUp() {
+		shardsFolder = tempFolder.toFile();
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		province = new Province(TPFinalCoord.of(2, 3));
+		province.setNewTownCost(12.5);
+		TownyProvincesDataHolder.getInstance().addProvince(province);
+		for (int x = 0; x <= 4; x++) {
+			for (int z = 0; z <= 9; z++) {
+				TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, province);
+			}
+		}
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+	}
+
+	/**
+	 * With no regions, every province goes into the unassigned shard
+	 */
+	private static ProvinceShardFile.Shard createShard() throws IOException {
+		Map<String, ProvinceShardFile.Shard> shards = ProvinceShardFile.createShards(TownyProvincesDataHolder.getInstance().getSnapshot(), Collections.emptyList());
+		assertEquals(1, shards.size());
+		return shards.values().iterator().next();
+	}
+
+	private static void damageByte(File file, long position) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.seek(position);
+			int value = randomAccessFile.read();
+			randomAccessFile.seek(position);
+			randomAccessFile.write(value ^ 0x5a);
+		}
+	}
+
+	@Test
+	void writtenShardReadsBack() throws IOException {
+		ProvinceShardFile.writeShard(shardsFolder, createShard());
+
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		ProvinceShardFile.ReadResult readResult = ProvinceShardFile.readShards(shardsFolder);
+
+		assertTrue(readResult.corruptShardFileNames.isEmpty());
+		assertEquals(1, readResult.provinces.size());
+		Province loadedProvince = readResult.provinces.get(0);
+		assertEquals(province.getId(), loadedProvince.getId());
+		assertEquals(12.5, loadedProvince.getNewTownCost());
+		assertEquals(50, TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex().getNumClaimedCells());
+		assertSame(loadedProvince, TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(4, 9));
+		assertNull(TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(5, 0));
+	}
+
+	@Test
+	void compressedPayloadWithWrongChecksumIsRejected() throws IOException {
+		ProvinceShardFile.Shard shard = createShard();
+		ProvinceShardFile.writeShard(shardsFolder, shard);
+		File shardFile = new File(shardsFolder, shard.fileName);
+		damageByte(shardFile, shardFile.length() - 1);
+
+		assertFalse(ProvinceShardFile.isShardFileUpToDate(shardsFolder, shard, ProvinceShardFile.encodePayload(shard)));
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		ProvinceShardFile.ReadResult readResult = ProvinceShardFile.readShards(shardsFolder);
+		assertEquals(Collections.singletonList(shard.fileName), readResult.corruptShardFileNames);
+		assertTrue(readResult.provinces.isEmpty());
+		assertTrue(TownyProvincesDataHolder.getInstance().getWorkingProvincesSet().isEmpty());
+	}
+
+	@Test
+	void payloadWithWrongChecksumIsRejected() throws IOException {
+		ProvinceShardFile.Shard shard = createShard();
+		ProvinceShardFile.writeShard(shardsFolder, shard);
+		//The compressed bytes are intact, but do not match the checksum of the payload
+		damageByte(new File(shardsFolder, shard.fileName), PAYLOAD_CHECKSUM_POSITION + 7);
+
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		assertEquals(Collections.singletonList(shard.fileName), ProvinceShardFile.readShards(shardsFolder).corruptShardFileNames);
+	}
+
+	@Test
+	void truncatedShardIsRejected() throws IOException {
+		ProvinceShardFile.Shard shard = createShard();
+		ProvinceShardFile.writeShard(shardsFolder, shard);
+		try (RandomAccessFile file = new RandomAccessFile(new File(shardsFolder, shard.fileName), "rw")) {
+			file.setLength(file.length() / 2);
+		}
+
+		assertFalse(ProvinceShardFile.isShardFileUpToDate(shardsFolder, shard, ProvinceShardFile.encodePayload(shard)));
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		assertEquals(Collections.singletonList(shard.fileName), ProvinceShardFile.readShards(shardsFolder).corruptShardFileNames);
+	}
+
+	@Test
+	void shardFileIsUpToDateOnlyWithTheSameContents() throws IOException {
+		ProvinceShardFile.Shard savedShard = createShard();
+		ProvinceShardFile.writeShard(shardsFolder, savedShard);
+		assertTrue(ProvinceShardFile.isShardFileUpToDate(shardsFolder, savedShard, ProvinceShardFile.encodePayload(savedShard)));
+
+		//Publishing without changes gives a shard with the same contents
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+		ProvinceShardFile.Shard unchangedShard = createShard();
+		assertTrue(unchangedShard.hasSameContents(savedShard));
+		assertTrue(ProvinceShardFile.isShardFileUpToDate(shardsFolder, unchangedShard, ProvinceShardFile.encodePayload(unchangedShard)));
+
+		province.setNewTownCost(1);
+		TownyProvincesDataHolder.getInstance().publishMetadataChanges();
+		ProvinceShardFile.Shard changedShard = createShard();
+		assertFalse(changedShard.hasSameContents(savedShard));
+		assertFalse(ProvinceShardFile.isShardFileUpToDate(shardsFolder, changedShard, ProvinceShardFile.encodePayload(changedShard)));
+	}
+
+	@Test
+	void version1ShardIsReadButNeedsRewriting() throws IOException {
+		ProvinceShardFile.Shard shard = createShard();
+		byte[] payload = ProvinceShardFile.encodePayload(shard);
+		//Version 1 has no checksum of the compressed payload
+		Deflater deflater = new Deflater();
+		deflater.setInput(payload);
+		deflater.finish();
+		ByteArrayOutputStream compressedPayload = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			compressedPayload.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(new File(shardsFolder, shard.fileName)))) {
+			output.writeInt(0x54505348);
+			output.writeInt(1);
+			output.writeUTF(shard.regionName);
+			output.writeInt(payload.length);
+			output.writeLong(crc.getValue());
+			output.writeInt(compressedPayload.size());
+			compressedPayload.writeTo(output);
+		}
+
+		assertFalse(ProvinceShardFile.isShardFileUpToDate(shardsFolder, shard, payload));
+		TownyProvincesDataHolder.initializeForMap(0, 9, 0, 9);
+		ProvinceShardFile.ReadResult readResult = ProvinceShardFile.readShards(shardsFolder);
+		assertTrue(readResult.corruptShardFileNames.isEmpty());
+		assertEquals(1, readResult.provinces.size());
+		assertEquals(50, TownyProvincesDataHolder.getInstance().getWorkingCoordProvinceIndex().getNumClaimedCells());
+	}
+
+	@Test
+	void damagedShardMovedAsideIsListedUntilRewritten() throws IOException {
+		ProvinceShardFile.Shard shard = createShard();
+		ProvinceShardFile.writeShard(shardsFolder, shard);
+		File shardFile = new File(shardsFolder, shard.fileName);
+		damageByte(shardFile, shardFile.length() - 1);
+
+		File movedFile = FileUtil.moveDamagedFileAside(shardFile);
+		assertFalse(shardFile.exists());
+		assertTrue(movedFile.exists());
+		assertTrue(ProvinceShardFile.hasShardFiles(shardsFolder));
+		assertEquals(Collections.singletonList(shard.fileName), ProvinceShardFile.findDamagedShardFileNames(shardsFolder));
+		//The damaged file is no longer read
+		assertTrue(ProvinceShardFile.readShards(shardsFolder).corruptShardFileNames.isEmpty());
+
+		ProvinceShardFile.writeShard(shardsFolder, shard);
+		assertTrue(ProvinceShardFile.findDamagedShardFileNames(shardsFolder).isEmpty());
+	}
+
+	@Test
+	void shardFilesOfRemovedRegionsAreDeleted() throws IOException {
+		File keptShardFile = new File(shardsFolder, "region_kept.shard");
+		File oldShardFile = new File(shardsFolder, "region_removed.shard");
+		Files.write(keptShardFile.toPath(), new byte[1]);
+		Files.write(oldShardFile.toPath(), new byte[1]);
+
+		ProvinceShardFile.deleteOtherShardFiles(shardsFolder, Collections.singleton(keptShardFile.getName()));
+
+		assertFalse(oldShardFile.exists());
+		assertTrue(keptShardFile.exists());
+	}
+}
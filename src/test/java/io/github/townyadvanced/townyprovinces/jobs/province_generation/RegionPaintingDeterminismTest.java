@@ -0,0 +1,108 @@
+package io.github.townyadvanced.townyprovinces.jobs.province_generation;
+
+import io.github.townyadvanced.townyprovinces.data.CoordSet;
+import io.github.townyadvanced.townyprovinces.data.ProvinceMapSnapshot;
+import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.Region;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Painting all regions twice with the same generation seeds must give the same map, in each painting mode
+ */
+class RegionPaintingDeterminismTest {
+
+	//The map is 100 x 80 chunks. The two smaller regions are in opposite corners, far enough apart to be painted at the same time
+	private static final int MAP_MIN_X = -50;
+	private static final int MAP_MAX_X = 49;
+	private static final int MAP_MIN_Z = -40;
+	private static final int MAP_MAX_Z = 39;
+
+	@BeforeEach
+	void setUp() {
+		addRegion("Map", -800, -640, 799, 639, 40000, 17);
+		addRegion("NorthWest", -800, -640, -321, -161, 10000, 23);
+		addRegion("SouthEast", 320, 160, 799, 639, 10000, 29);
+	}
+
+	@AfterEach
+	void tearDown() {
+		TownyProvincesSettings.getRegions().clear();
+		TownyProvincesSettings.getOrderedRegionsList().clear();
+	}
+
+	private static void addRegion(String name, int minX, int minZ, int maxX, int maxZ, int averageProvinceSize, long generationSeed) {
+		Map<String, String> regionDefinitions = new HashMap<>();
+		regionDefinitions.put("region_name", name);
+		regionDefinitions.put("top_left_corner_location", minX + "," + minZ);
+		regionDefinitions.put("bottom_right_corner_location", maxX + "," + maxZ);
+		regionDefinitions.put("average_province_size", Integer.toString(averageProvinceSize));
+		regionDefinitions.put("brush_square_radius_as_percentage_of_province_square_radius", "50");
+		regionDefinitions.put("brush_max_move_as_percentage_of_brush_square_radius", "50");
+		regionDefinitions.put("brush_min_move_as_percentage_of_brush_max_move", "50");
+		regionDefinitions.put("max_brush_moves", "30");
+		regionDefinitions.put("new_town_cost_per_chunk", "1");
+		regionDefinitions.put("upkeep_town_cost_per_chunk", "0.1");
+		regionDefinitions.put("generation_seed", Long.toString(generationSeed));
+		Region region = new Region(regionDefinitions, null);
+		TownyProvincesSettings.getRegions().put(name, region);
+		TownyProvincesSettings.getOrderedRegionsList().add(region);
+	}
+
+	/**
+	 * Paint all regions on an empty map
+	 *
+	 * @return the home block of the province at each coord, packed, or 0 for unclaimed coords
+	 */
+	private static long[] paintAllRegions(boolean parallelChunkClaimCompetitionEnabled, boolean concurrentRegionPaintingEnabled) {
+		TownyProvincesDataHolder.initializeForMap(MAP_MIN_X, MAP_MAX_X, MAP_MIN_Z, MAP_MAX_Z);
+		List<Region> regions = TownyProvincesSettings.getOrderedRegionsList();
+		CoordSet allCoords = TownyProvincesDataHolder.getInstance().getAllCoordsOnMap();
+		RegenerateRegionTask task = new RegenerateRegionTask("All", parallelChunkClaimCompetitionEnabled, concurrentRegionPaintingEnabled);
+		assertTrue(task.paintAllRegions(regions, allCoords));
+		TownyProvincesDataHolder.getInstance().publishSnapshot();
+
+		ProvinceMapSnapshot snapshot = TownyProvincesDataHolder.getInstance().getSnapshot();
+		long[] result = new long[(MAP_MAX_X - MAP_MIN_X + 1) * (MAP_MAX_Z - MAP_MIN_Z + 1)];
+		int numClaimedCoords = 0;
+		int i = 0;
+		for (int x = MAP_MIN_X; x <= MAP_MAX_X; x++) {
+			for (int z = MAP_MIN_Z; z <= MAP_MAX_Z; z++) {
+				Province province = snapshot.getProvinceAtCoord(x, z);
+				if (province != null) {
+					result[i] = ((long) province.getHomeBlock().getX() << 32) | (province.getHomeBlock().getZ() & 0xffffffffL);
+					numClaimedCoords++;
+				}
+				i++;
+			}
+		}
+		//Most of the map is claimed, the rest being borders
+		assertTrue(numClaimedCoords > result.length / 2, "Only " + numClaimedCoords + " coords were claimed");
+		return result;
+	}
+
+	@Test
+	void sequentialPaintingIsReproducible() {
+		assertArrayEquals(paintAllRegions(false, false), paintAllRegions(false, false));
+	}
+
+	@Test
+	void paintingInParallelTilesIsReproducible() {
+		assertArrayEquals(paintAllRegions(true, false), paintAllRegions(true, false));
+	}
+
+	@Test
+	void paintingRegionsConcurrentlyIsReproducible() {
+		assertArrayEquals(paintAllRegions(false, true), paintAllRegions(false, true));
+	}
+}
@@ -0,0 +1,236 @@
+package io.github.townyadvanced.townyprovinces.jobs.province_generation;
+
+import io.github.townyadvanced.townyprovinces.data.CoordSet;
+import io.github.townyadvanced.townyprovinces.data.TownyProvincesDataHolder;
+import io.github.townyadvanced.townyprovinces.objects.Province;
+import io.github.townyadvanced.townyprovinces.objects.Region;
+import io.github.townyadvanced.townyprovinces.objects.TPFinalCoord;
+import io.github.townyadvanced.townyprovinces.settings.TownyProvincesSettings;
+import io.github.townyadvanced.townyprovinces.util.CoordUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The frontier assignment of unclaimed coords must give the same map as the old loop,
+ * which rescanned every unclaimed coord until no more could be assigned
+ */
+class UnclaimedCoordAssignmentTest {
+
+	//The map is 40 x 30 chunks
+	private static final int MAP_MIN_X = 0;
+	private static final int MAP_MAX_X = 39;
+	private static final int MAP_MIN_Z = 0;
+	private static final int MAP_MAX_Z = 29;
+	private static final int NUM_LAYOUTS = 20;
+	private static final long UNCLAIMED = -1;  //Not a packed home block, as the map has no negative coords
+
+	private static final int[] CARDINAL_OFFSETS_X = new int[]{0, 0, 1, -1};
+	private static final int[] CARDINAL_OFFSETS_Z = new int[]{-1, 1, 0, 0};
+	private static final int[] DIAGONAL_OFFSETS_X = new int[]{-1, 1, 1, -1};
+	private static final int[] DIAGONAL_OFFSETS_Z = new int[]{-1, -1, 1, 1};
+
+	private Region region;
+
+	@BeforeEach
+	void setUp() {
+		Map<String, String> regionDefinitions = new HashMap<>();
+		regionDefinitions.put("region_name", "Map");
+		regionDefinitions.put("top_left_corner_location", "0,0");
+		regionDefinitions.put("bottom_right_corner_location", "639,479");
+		regionDefinitions.put("average_province_size", "40000");
+		regionDefinitions.put("brush_square_radius_as_percentage_of_province_square_radius", "50");
+		regionDefinitions.put("brush_max_move_as_percentage_of_brush_square_radius", "50");
+		regionDefinitions.put("brush_min_move_as_percentage_of_brush_max_move", "50");
+		regionDefinitions.put("max_brush_moves", "30");
+		regionDefinitions.put("new_town_cost_per_chunk", "1");
+		regionDefinitions.put("upkeep_town_cost_per_chunk", "0.1");
+		region = new Region(regionDefinitions, null);
+		TownyProvincesSettings.getRegions().put("Map", region);
+		TownyProvincesSettings.getOrderedRegionsList().add(region);
+	}
+
+	@AfterEach
+	void tearDown() {
+		TownyProvincesSettings.getRegions().clear();
+		TownyProvincesSettings.getOrderedRegionsList().clear();
+	}
+
+	/**
+	 * Replace the data holder with a map holding randomly placed provinces,
+	 * each claiming a rectangle around its home block. The rectangles may touch, so some coords become borders.
+	 *
+	 * @param seed chooses the layout
+	 * @param unclaimedCoords filled with the coords left unclaimed
+	 */
+	private static void createLayout(long seed, CoordSet unclaimedCoords) {
+		TownyProvincesDataHolder.initializeForMap(MAP_MIN_X, MAP_MAX_X, MAP_MIN_Z, MAP_MAX_Z);
+		Random random = new Random(seed);
+		int numProvinces = 3 + random.nextInt(10);
+		for (int i = 0; i < numProvinces; i++) {
+			int homeBlockX = MAP_MIN_X + random.nextInt(MAP_MAX_X - MAP_MIN_X + 1);
+			int homeBlockZ = MAP_MIN_Z + random.nextInt(MAP_MAX_Z - MAP_MIN_Z + 1);
+			int radius = random.nextInt(4);
+			if (TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(homeBlockX, homeBlockZ) != null)
+				continue;
+			Province province = new Province(TPFinalCoord.of(homeBlockX, homeBlockZ));
+			TownyProvincesDataHolder.getInstance().addProvince(province);
+			for (int x = homeBlockX - radius; x <= homeBlockX + radius; x++) {
+				for (int z = homeBlockZ - radius; z <= homeBlockZ + radius; z++) {
+					if (TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(x, z) == null) {
+						TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, province);
+					}
+				}
+			}
+		}
+		for (int x = MAP_MIN_X; x <= MAP_MAX_X; x++) {
+			for (int z = MAP_MIN_Z; z <= MAP_MAX_Z; z++) {
+				if (TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(x, z) == null) {
+					unclaimedCoords.add(x, z);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The old loop. Each pass checks every unclaimed coord, then claims the eligible ones, re-checking each just before
+	 * its claim, until a pass finds none. Coords are processed in packed coord order, as the frontier assignment does.
+	 */
+	private static void assignWithRescanLoop(CoordSet unclaimedCoords) {
+		while (true) {
+			long[] coords = unclaimedCoords.toPackedArray(new long[unclaimedCoords.size()]);
+			Arrays.sort(coords, 0, unclaimedCoords.size());
+			long[] pendingCoords = new long[coords.length];
+			Province[] pendingProvinces = new Province[coords.length];
+			int numPendingAssignments = 0;
+			for (int i = 0; i < unclaimedCoords.size(); i++) {
+				Province province = getProvinceIfEligible(CoordUtil.unpackX(coords[i]), CoordUtil.unpackZ(coords[i]));
+				if (province != null) {
+					pendingCoords[numPendingAssignments] = coords[i];
+					pendingProvinces[numPendingAssignments] = province;
+					numPendingAssignments++;
+				}
+			}
+			if (numPendingAssignments == 0)
+				return;
+			for (int i = 0; i < numPendingAssignments; i++) {
+				int x = CoordUtil.unpackX(pendingCoords[i]);
+				int z = CoordUtil.unpackZ(pendingCoords[i]);
+				if (getProvinceIfEligible(x, z) != null) {
+					TownyProvincesDataHolder.getInstance().claimCoordForProvince(x, z, pendingProvinces[i]);
+					unclaimedCoords.remove(x, z);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The eligibility rules of the painter: on the map, with a claimed cardinal neighbour,
+	 * and with every claimed neighbour in the same province
+	 */
+	private static Province getProvinceIfEligible(int x, int z) {
+		if (x < MAP_MIN_X || x > MAP_MAX_X || z < MAP_MIN_Z || z > MAP_MAX_Z)
+			return null;
+		Province result = null;
+		for (int i = 0; i < 4; i++) {
+			Province province = TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(x + CARDINAL_OFFSETS_X[i], z + CARDINAL_OFFSETS_Z[i]);
+			if (province != null) {
+				if (result != null && province != result)
+					return null;
+				result = province;
+			}
+		}
+		if (result == null)
+			return null;
+		for (int i = 0; i < 4; i++) {
+			Province province = TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(x + DIAGONAL_OFFSETS_X[i], z + DIAGONAL_OFFSETS_Z[i]);
+			if (province != null && province != result)
+				return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the home block of the province at each coord, packed, or UNCLAIMED
+	 */
+	private static long[] getMap() {
+		long[] result = new long[(MAP_MAX_X - MAP_MIN_X + 1) * (MAP_MAX_Z - MAP_MIN_Z + 1)];
+		int i = 0;
+		for (int x = MAP_MIN_X; x <= MAP_MAX_X; x++) {
+			for (int z = MAP_MIN_Z; z <= MAP_MAX_Z; z++) {
+				Province province = TownyProvincesDataHolder.getInstance().getWorkingProvinceAtCoord(x, z);
+				result[i] = province != null ? CoordUtil.packCoord(province.getHomeBlock().getX(), province.getHomeBlock().getZ()) : UNCLAIMED;
+				i++;
+			}
+		}
+		return result;
+	}
+
+	private static int countUnclaimedCoords(long[] map) {
+		int result = 0;
+		for (long homeBlock : map) {
+			if (homeBlock == UNCLAIMED)
+				result++;
+		}
+		return result;
+	}
+
+	private long[] assignWithFrontier(CoordSet unclaimedCoords) {
+		assertTrue(new PaintRegionAction(region, unclaimedCoords, false).executeUnclaimedCoordAssignment());
+		return getMap();
+	}
+
+	@Test
+	void frontierAssignmentMatchesRescanLoop() {
+		int numLayoutsWithBorders = 0;
+		for (int seed = 0; seed < NUM_LAYOUTS; seed++) {
+			CoordSet unclaimedCoords = new CoordSet();
+			createLayout(seed, unclaimedCoords);
+			int numInitiallyUnclaimedCoords = unclaimedCoords.size();
+			assignWithRescanLoop(unclaimedCoords);
+			long[] expectedMap = getMap();
+
+			unclaimedCoords = new CoordSet();
+			createLayout(seed, unclaimedCoords);
+			long[] map = assignWithFrontier(unclaimedCoords);
+
+			assertArrayEquals(expectedMap, map, "Layout " + seed);
+			int numUnclaimedCoords = countUnclaimedCoords(map);
+			assertTrue(numUnclaimedCoords < numInitiallyUnclaimedCoords, "Layout " + seed + " assigned nothing");
+			assertEquals(numUnclaimedCoords, unclaimedCoords.size(), "Layout " + seed);
+			if (numUnclaimedCoords > 0)
+				numLayoutsWithBorders++;
+		}
+		//Most layouts have provinces meeting each other, leaving borders between them
+		assertTrue(numLayoutsWithBorders > NUM_LAYOUTS / 2, "Only " + numLayoutsWithBorders + " layouts had borders");
+	}
+
+	@Test
+	void frontierAssignmentDoesNotDependOnTheSetLayout() {
+		for (int seed = 0; seed < NUM_LAYOUTS; seed++) {
+			CoordSet unclaimedCoords = new CoordSet();
+			createLayout(seed, unclaimedCoords);
+			long[] expectedMap = assignWithFrontier(unclaimedCoords);
+
+			//A set with many more slots iterates its coords in a different order
+			unclaimedCoords = new CoordSet();
+			createLayout(seed, unclaimedCoords);
+			CoordSet otherUnclaimedCoords = new CoordSet(unclaimedCoords.size() * 16);
+			long[] coords = unclaimedCoords.toPackedArray(new long[unclaimedCoords.size()]);
+			for (int i = 0; i < unclaimedCoords.size(); i++) {
+				otherUnclaimedCoords.add(CoordUtil.unpackX(coords[i]), CoordUtil.unpackZ(coords[i]));
+			}
+
+			assertArrayEquals(expectedMap, assignWithFrontier(otherUnclaimedCoords), "Layout " + seed);
+		}
+	}
+}